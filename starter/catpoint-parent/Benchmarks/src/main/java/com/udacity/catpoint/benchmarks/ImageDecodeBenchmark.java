@@ -0,0 +1,64 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.camera.ImageDecodeService;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a 12 megapixel camera snapshot: the full resolution {@link ImageIO#read} the image panel
+ * used to do against {@link ImageDecodeService#read} at the panel's size and at the analysis
+ * resolution. Run with {@code -prof gc} to compare the bytes allocated per decode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageDecodeBenchmark {
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        BufferedImage snapshot = new BufferedImage(4000, 3000, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = snapshot.createGraphics();
+        Random random = new Random(1);
+        for (int i = 0; i < 3000; i++) {
+            g.setColor(new Color(random.nextInt()));
+            g.fillOval(random.nextInt(4000), random.nextInt(3000), 200, 150);
+        }
+        g.dispose();
+        file = Files.createTempFile("catpoint-snapshot", ".jpg");
+        ImageIO.write(snapshot, "jpg", file.toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public BufferedImage fullResolution() throws IOException {
+        return ImageIO.read(file.toFile());
+    }
+
+    @Benchmark
+    public BufferedImage thumbnail() throws IOException {
+        return ImageDecodeService.read(file, 300, 225, null);
+    }
+
+    @Benchmark
+    public BufferedImage analysis() throws IOException {
+        return ImageDecodeService.read(file, ImageDecodeService.ANALYSIS_WIDTH, ImageDecodeService.ANALYSIS_HEIGHT, null);
+    }
+}
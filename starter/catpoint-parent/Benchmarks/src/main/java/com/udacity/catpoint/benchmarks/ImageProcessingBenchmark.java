@@ -0,0 +1,41 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SecurityService#processImage(BufferedImage)} with a stub classifier that answers
+ * immediately, so the numbers only cover the service's own work around the classifier call.
+ * The stub alternates between cat and no cat, so every call changes the alarm state.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageProcessingBenchmark {
+
+    private final BufferedImage frame = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+    private SecurityService securityService;
+    private boolean nextVerdict;
+
+    @Setup
+    public void setUp() {
+        securityService = new SecurityService(new InMemorySecurityRepositoryImpl(), (image, threshold) -> {
+            nextVerdict = !nextVerdict;
+            return nextVerdict;
+        });
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+    }
+
+    @Benchmark
+    public void processImage() {
+        securityService.processImage(frame);
+    }
+}
@@ -0,0 +1,62 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.service.JpegEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a camera frame for the remote classifier: a plain {@link ImageIO#write} against the
+ * {@link JpegEncoder}, both returning a new array and writing into a buffer kept between frames.
+ * Run with {@code -prof gc} to compare the bytes allocated per frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JpegEncoderBenchmark {
+
+    private BufferedImage frame;
+    private final JpegEncoder encoder = new JpegEncoder();
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    @Setup
+    public void setUp() {
+        frame = new BufferedImage(1280, 960, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = frame.createGraphics();
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            g.setColor(new Color(random.nextInt()));
+            g.fillOval(random.nextInt(1280), random.nextInt(960), 120, 90);
+        }
+        g.dispose();
+    }
+
+    @Benchmark
+    public byte[] imageIoWrite() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(frame, "jpg", out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return encoder.encode(frame);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeIntoBuffer() throws IOException {
+        buffer = encoder.encode(frame, buffer);
+        return buffer;
+    }
+}
@@ -0,0 +1,92 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.LogStructuredSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+import java.util.stream.Stream;
+
+/**
+ * Cost of persisting a single sensor change. The preferences repository rewrites its whole sensor
+ * table on each change, the log-structured one appends a record, so comparing the two shows how
+ * the cost grows with the number of sensors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryPersistenceBenchmark {
+
+    @Param({"10", "1000"})
+    public int sensorCount;
+
+    @Param({"preferences", "log"})
+    public String storage;
+
+    private final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
+    //the app's own saved state, put back once the benchmark is done
+    private final Map<String, String> savedPrefs = new HashMap<>();
+    private Path logDirectory;
+    private SecurityRepository repository;
+    private Sensor[] sensors;
+    private int nextSensor;
+
+    @Setup
+    public void setUp() throws BackingStoreException, IOException {
+        for (String key : prefs.keys()) {
+            savedPrefs.put(key, prefs.get(key, null));
+        }
+        prefs.clear();
+        if (storage.equals("log")) {
+            logDirectory = Files.createTempDirectory("catpoint-bench");
+            repository = new LogStructuredSecurityRepositoryImpl(logDirectory);
+        } else {
+            repository = new PretendDatabaseSecurityRepositoryImpl();
+        }
+
+        sensors = new Sensor[sensorCount];
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            sensors[i] = new Sensor("Sensor " + i, types[i % types.length]);
+            repository.addSensor(sensors[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (repository instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+        if (logDirectory != null) {
+            try (Stream<Path> files = Files.walk(logDirectory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+        prefs.clear();
+        savedPrefs.forEach(prefs::put);
+        prefs.flush();
+    }
+
+    @Benchmark
+    public void updateSensorActive() {
+        Sensor sensor = sensors[nextSensor];
+        nextSensor = (nextSensor + 1) % sensors.length;
+        repository.updateSensorActive(sensor.getSensorId(), !sensor.getActive());
+    }
+}
@@ -0,0 +1,72 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sensor and arming changes on a {@link SecurityService} backed by an in-memory repository, so the
+ * numbers show the cost of the state machine and sensor bookkeeping rather than of storage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecurityServiceBenchmark {
+
+    private static final ArmingStatus[] ARMING_CYCLE = {
+            ArmingStatus.ARMED_HOME, ArmingStatus.DISARMED, ArmingStatus.ARMED_AWAY, ArmingStatus.DISARMED
+    };
+
+    @Param({"10", "1000", "100000"})
+    public int sensorCount;
+
+    private SecurityService securityService;
+    private Sensor[] sensors;
+    private int nextSensor;
+    private int nextArmingStatus;
+
+    @Setup
+    public void setUp() {
+        securityService = new SecurityService(new InMemorySecurityRepositoryImpl(), (image, threshold) -> false);
+        sensors = new Sensor[sensorCount];
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            sensors[i] = new Sensor("Sensor " + i, types[i % types.length]);
+            securityService.addSensor(sensors[i]);
+        }
+    }
+
+    /**
+     * Flips one sensor per call, walking through all of them so every sensor is touched.
+     */
+    @Benchmark
+    public void changeSensorActivationStatus() {
+        Sensor sensor = sensors[nextSensor];
+        nextSensor = (nextSensor + 1) % sensors.length;
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    /**
+     * Cycles through the arming statuses. Arming resets every active sensor, so a few sensors are
+     * activated first to give it something to do.
+     */
+    @Benchmark
+    public void setArmingStatus() {
+        ArmingStatus armingStatus = ARMING_CYCLE[nextArmingStatus];
+        nextArmingStatus = (nextArmingStatus + 1) % ARMING_CYCLE.length;
+        if (armingStatus == ArmingStatus.DISARMED) {
+            for (int i = 0; i < Math.min(4, sensors.length); i++) {
+                securityService.changeSensorActivationStatus(sensors[i], true);
+            }
+        }
+        securityService.setArmingStatus(armingStatus);
+    }
+}
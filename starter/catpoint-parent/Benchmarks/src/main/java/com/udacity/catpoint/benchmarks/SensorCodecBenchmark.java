@@ -0,0 +1,71 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorCodec;
+import com.udacity.catpoint.security.data.SensorType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and saving all sensors: the {@link SensorCodec} sensor table against the Gson JSON the
+ * preferences repository used to store.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SensorCodecBenchmark {
+
+    private static final Type SENSOR_SET = new TypeToken<Set<Sensor>>() {
+    }.getType();
+
+    @Param({"1000", "100000"})
+    public int sensorCount;
+
+    private final Gson gson = new Gson();
+    private List<Sensor> sensors;
+    private String json;
+    private byte[] table;
+
+    @Setup
+    public void setUp() {
+        sensors = new ArrayList<>(sensorCount);
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            sensors.add(new Sensor("Sensor " + i, types[i % types.length]));
+        }
+        json = gson.toJson(sensors);
+        table = SensorCodec.encodeSensors(sensors);
+    }
+
+    @Benchmark
+    public Set<Sensor> loadJson() {
+        return gson.fromJson(json, SENSOR_SET);
+    }
+
+    @Benchmark
+    public List<Sensor> loadBinary() throws IOException {
+        return SensorCodec.decodeSensors(ByteBuffer.wrap(table));
+    }
+
+    @Benchmark
+    public String saveJson() {
+        return gson.toJson(sensors);
+    }
+
+    @Benchmark
+    public byte[] saveBinary() {
+        return SensorCodec.encodeSensors(sensors);
+    }
+}
@@ -0,0 +1,121 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.service.LatencyHistogram;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.server.SensorFrameListener;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loopback load test for the binary sensor protocol. Several gateways stream frames for random
+ * sensors over TCP; each gateway sends a batch, waits until it is acknowledged, and sends the
+ * next. Frames carry their send time in the timestamp field, so the acknowledgement tells how long
+ * the newest frame of a batch took from the gateway to the state machine and back.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.udacity.catpoint.benchmarks.SensorListenerLoadTest
+ * [seconds] [gateways] [frames per batch] [sensors]}
+ */
+public class SensorListenerLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int gateways = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        int sensorCount = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(),
+                (image, threshold) -> false);
+        List<Sensor> sensors = new ArrayList<>(sensorCount);
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            securityService.addSensor(sensor);
+            sensors.add(sensor);
+        }
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        ExecutorService clients = Executors.newFixedThreadPool(gateways);
+        try (SensorFrameListener listener = new SensorFrameListener(securityService,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), null)) {
+            listener.start();
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), listener.getTcpPort());
+            long warmUpEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            long end = warmUpEnd + TimeUnit.SECONDS.toNanos(seconds);
+
+            List<Future<Long>> sent = new ArrayList<>();
+            for (int g = 0; g < gateways; g++) {
+                long seed = g;
+                sent.add(clients.submit(() -> gateway(address, sensors, batchSize, seed, warmUpEnd, end, latencies)));
+            }
+            long frames = 0;
+            for (Future<Long> result : sent) {
+                frames += result.get();
+            }
+
+            System.out.printf("%d gateways, %d frames per batch, %d sensors%n", gateways, batchSize, sensorCount);
+            System.out.printf("%,d frames in %d s: %,.0f frames/s, %,d state machine batches%n",
+                    frames, seconds, frames / (double) seconds, listener.getBatchCount());
+            System.out.printf("batch round trip: p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                    latencies.getValueAtPercentile(50) / 1_000.0, latencies.getValueAtPercentile(99) / 1_000.0,
+                    latencies.getValueAtPercentile(99.9) / 1_000.0, latencies.getMax() / 1_000.0);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    /**
+     * @return frames acknowledged after the warm-up
+     */
+    private static long gateway(InetSocketAddress address, List<Sensor> sensors, int batchSize, long seed,
+                                long warmUpEnd, long end, LatencyHistogram latencies) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        ByteBuffer frames = ByteBuffer.allocateDirect(batchSize * SensorFrameListener.FRAME_SIZE);
+        ByteBuffer ack = ByteBuffer.allocateDirect(SensorFrameListener.ACK_SIZE);
+        long measured = 0;
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                frames.clear();
+                for (int i = 0; i < batchSize; i++) {
+                    Sensor sensor = sensors.get(random.nextInt(sensors.size()));
+                    SensorFrameListener.putFrame(frames, sensor.getSensorId(), random.nextBoolean(), now);
+                }
+                frames.flip();
+                while (frames.hasRemaining()) {
+                    channel.write(frames);
+                }
+                int acknowledged = 0;
+                long sentAt = 0;
+                while (acknowledged < batchSize) {
+                    ack.clear();
+                    while (ack.hasRemaining()) {
+                        if (channel.read(ack) < 0) {
+                            throw new IOException("listener closed the connection");
+                        }
+                    }
+                    ack.flip();
+                    acknowledged += ack.getInt() + ack.getInt();
+                    sentAt = ack.getLong();
+                }
+                if (now >= warmUpEnd) {
+                    latencies.record(System.nanoTime() - sentAt);
+                    measured += batchSize;
+                }
+            }
+        }
+        return measured;
+    }
+}
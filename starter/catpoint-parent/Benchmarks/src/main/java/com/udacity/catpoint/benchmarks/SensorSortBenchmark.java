@@ -0,0 +1,47 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting sensors for display, which goes through {@link Sensor#compareTo(Sensor)} for every
+ * comparison. Names share a prefix, as they do in practice, so most comparisons have to look
+ * past it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SensorSortBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int sensorCount;
+
+    private List<Sensor> shuffled;
+
+    @Setup
+    public void setUp() {
+        shuffled = new ArrayList<>(sensorCount);
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            shuffled.add(new Sensor("Sensor " + i, types[i % types.length]));
+        }
+        Collections.shuffle(shuffled, new Random(42));
+    }
+
+    @Benchmark
+    public List<Sensor> sort() {
+        List<Sensor> sorted = new ArrayList<>(shuffled);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
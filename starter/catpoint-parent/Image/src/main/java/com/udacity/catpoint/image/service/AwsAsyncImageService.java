@@ -0,0 +1,239 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClient;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
+import software.amazon.awssdk.services.rekognition.model.Image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Image Recognition Service that identifies cats with the non-blocking Rekognition client. Calls
+ * return futures, so no thread waits while a request is on the network, and all requests share
+ * one bounded pool of connections. The pool is shared by every instance in the process: it is
+ * opened by the first instance to make a call and closed when the last one is closed.
+ * <p>
+ * Reads the same config.properties keys as {@link AwsImageService}, plus these optional ones:
+ *      aws.endpoint=[endpoint to use instead of the regional one, for example a local stand-in]
+ *      aws.maxConnections=[connections kept open to Rekognition, 16 by default; read by the
+ *      instance that opens the pool]
+ * Nothing is loaded or connected until the first call. Call {@link #warmUp()} at start-up to
+ * pay for the connection and TLS handshake before the first frame arrives.
+ */
+public class AwsAsyncImageService implements ImageService, AutoCloseable {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 16;
+
+    private final Logger log = LoggerFactory.getLogger(AwsAsyncImageService.class);
+
+    //connection pool shared by all instances, guarded by POOL_LOCK
+    private static final Object POOL_LOCK = new Object();
+    private static SdkAsyncHttpClient sharedHttpClient;
+    private static int poolUsers;
+
+    private final Supplier<Properties> config;
+
+    //guarded by this, built on first use
+    private Client client;
+    private boolean closed;
+
+    private record Client(RekognitionAsyncClient rekognition, JpegEncoder jpegEncoder) {
+    }
+
+    /**
+     * Reads its settings from config.properties on the class path when first used.
+     */
+    public AwsAsyncImageService() {
+        this.config = () -> {
+            Properties props = new Properties();
+            try (InputStream is = AwsAsyncImageService.class.getClassLoader().getResourceAsStream("config.properties")) {
+                if (is == null) {
+                    throw new IllegalStateException("Unable to initialize AWS Rekognition, no properties file found");
+                }
+                props.load(is);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("Unable to initialize AWS Rekognition", ioe);
+            }
+            return props;
+        };
+    }
+
+    /**
+     * @param props Settings, using the same keys as config.properties
+     */
+    public AwsAsyncImageService(Properties props) {
+        this.config = () -> props;
+    }
+
+    /**
+     * Returns true if the provided image contains a cat, waiting for the answer.
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        try {
+            return imageContainsCatAsync(image, confidenceThreshhold).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Asks Rekognition whether the provided image contains a cat, without waiting for the answer.
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
+     * @return completes with true if a cat was found, or exceptionally if the call failed
+     */
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        ImageClassificationEvent event = new ImageClassificationEvent();
+        event.begin();
+        Client c;
+        byte[] jpeg;
+        try {
+            c = client();
+            jpeg = c.jpegEncoder().encode(image);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return detectLabels(c, jpeg, confidenceThreshhold).thenApply(response -> {
+            logLabelsForFun(response);
+            boolean containsCat = response.labels().stream().anyMatch(l -> l.name().toLowerCase().contains("cat"));
+            //committed on the thread that received the response, timed from the request
+            event.complete(this, DEFAULT_CAMERA_ID, image, containsCat, false);
+            return containsCat;
+        });
+    }
+
+    /**
+     * Starts the client and sends one small request, so the connection is open and the TLS
+     * handshake done before real frames arrive. The answer is ignored.
+     *
+     * @return completes once the warm-up call has finished, whether it succeeded or not
+     */
+    public CompletableFuture<Void> warmUp() {
+        return imageContainsCatAsync(new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB), 99.0f)
+                .handle((verdict, e) -> {
+                    if (e != null) {
+                        log.warn("AWS Rekognition warm-up call failed", e);
+                    }
+                    return null;
+                });
+    }
+
+    private CompletableFuture<DetectLabelsResponse> detectLabels(Client c, byte[] jpeg, float confidenceThreshhold) {
+        //the encoded array is never touched again, so the SDK can use it without copying
+        Image awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(jpeg)).build();
+        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
+        return c.rekognition().detectLabels(detectLabelsRequest);
+    }
+
+    private synchronized Client client() {
+        if (closed) {
+            throw new IllegalStateException("AwsAsyncImageService is closed");
+        }
+        if (client == null) {
+            client = createClient(config.get());
+        }
+        return client;
+    }
+
+    private static Client createClient(Properties props) {
+        int maxConnections = Integer.parseInt(props.getProperty("aws.maxConnections", String.valueOf(DEFAULT_MAX_CONNECTIONS)));
+        SdkAsyncHttpClient httpClient = acquireHttpClient(maxConnections);
+        RekognitionAsyncClient.Builder builder = RekognitionAsyncClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(props.getProperty("aws.id"), props.getProperty("aws.secret"))))
+                .region(Region.of(props.getProperty("aws.region")))
+                .httpClient(httpClient);
+        String endpoint = props.getProperty("aws.endpoint");
+        if (endpoint != null && !endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        try {
+            JpegEncoder jpegEncoder = new JpegEncoder(
+                    Integer.parseInt(props.getProperty("aws.maxImageDimension", String.valueOf(JpegEncoder.DEFAULT_MAX_DIMENSION))),
+                    Float.parseFloat(props.getProperty("aws.jpegQuality", String.valueOf(JpegEncoder.DEFAULT_QUALITY))));
+            return new Client(builder.build(), jpegEncoder);
+        } catch (RuntimeException e) {
+            releaseHttpClient();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the shared connection pool, opened with the given size if no instance is using it
+     */
+    private static SdkAsyncHttpClient acquireHttpClient(int maxConnections) {
+        synchronized (POOL_LOCK) {
+            if (sharedHttpClient == null) {
+                sharedHttpClient = NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConnections)
+                        .connectionAcquisitionTimeout(Duration.ofSeconds(10))
+                        .build();
+            }
+            poolUsers++;
+            return sharedHttpClient;
+        }
+    }
+
+    /**
+     * Closes the shared connection pool once no instance is using it any more.
+     */
+    private static void releaseHttpClient() {
+        synchronized (POOL_LOCK) {
+            if (--poolUsers == 0) {
+                //a client passed in to the SDK is not closed by it
+                sharedHttpClient.close();
+                sharedHttpClient = null;
+            }
+        }
+    }
+
+    /**
+     * @return instances currently holding the shared connection pool
+     */
+    static int getConnectionPoolUsers() {
+        synchronized (POOL_LOCK) {
+            return poolUsers;
+        }
+    }
+
+    private void logLabelsForFun(DetectLabelsResponse response) {
+        log.info(response.labels().stream()
+                .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
+                .collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Closes the connections, if any were opened. Calls made afterwards fail.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (client != null) {
+            client.rekognition().close();
+            client = null;
+            releaseHttpClient();
+        }
+    }
+}
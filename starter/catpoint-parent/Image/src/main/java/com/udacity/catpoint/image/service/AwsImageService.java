@@ -12,9 +12,7 @@ import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
@@ -32,14 +30,19 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ *    Optionally, frames can be made smaller before they are sent:
+ *      aws.maxImageDimension=[longest side in pixels, 640 by default]
+ *      aws.jpegQuality=[between 0 and 1, 0.7 by default]
  */
-public class AwsImageService {
+public class AwsImageService implements ImageService {
 
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
     //aws recommendation is to maintain only a single instance of client objects
     private static RekognitionClient rekognitionClient;
 
+    private JpegEncoder jpegEncoder = new JpegEncoder();
+
     public AwsImageService() {
         Properties props = new Properties();
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
@@ -52,6 +55,9 @@ public class AwsImageService {
         String awsId = props.getProperty("aws.id");
         String awsSecret = props.getProperty("aws.secret");
         String awsRegion = props.getProperty("aws.region");
+        jpegEncoder = new JpegEncoder(
+                Integer.parseInt(props.getProperty("aws.maxImageDimension", String.valueOf(JpegEncoder.DEFAULT_MAX_DIMENSION))),
+                Float.parseFloat(props.getProperty("aws.jpegQuality", String.valueOf(JpegEncoder.DEFAULT_QUALITY))));
 
         AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
         rekognitionClient = RekognitionClient.builder()
@@ -60,17 +66,14 @@ public class AwsImageService {
                 .build();
     }
 
-    /**
-     * Returns true if the provided image contains a cat.
-     * @param image Image to scan
-     * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
-     * @return
-     */
+    @Override
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        ImageClassificationEvent event = new ImageClassificationEvent();
+        event.begin();
         Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        try {
+            //the encoded array is never touched again, so the SDK can use it without copying
+            awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(jpegEncoder.encode(image))).build();
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
@@ -78,7 +81,9 @@ public class AwsImageService {
         DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
         DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
         logLabelsForFun(response);
-        return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
+        boolean containsCat = response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
+        event.complete(this, DEFAULT_CAMERA_ID, image, containsCat, false);
+        return containsCat;
     }
 
     private void logLabelsForFun(DetectLabelsResponse response) {
@@ -0,0 +1,208 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Image service that remembers recent verdicts of another image service. A camera watching a
+ * static scene sends nearly identical frames, and there is no point paying for a remote call on
+ * each of them.
+ * <p>
+ * Frames are compared by a 64 bit difference hash (dHash): the image is shrunk to a 9x8 grid of
+ * brightness values and each bit records whether a cell is brighter than its right-hand
+ * neighbour. Small changes such as sensor noise or compression artifacts flip only a few bits, so
+ * a frame is answered from the cache when its hash is within a few bits of a remembered one.
+ * The cache holds a bounded number of verdicts, least recently used first out, and each verdict
+ * expires after a fixed time so a cat that walks into an unchanged scene is eventually noticed.
+ */
+public class CachingImageService implements ImageService {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(30);
+    public static final int DEFAULT_MAX_HAMMING_DISTANCE = 4;
+
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+    //brightness samples taken per grid cell in each direction
+    private static final int SAMPLES_PER_CELL = 4;
+
+    private record Verdict(float confidenceThreshhold, boolean containsCat, long expiresAt) {
+    }
+
+    private final ImageService delegate;
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final int maxHammingDistance;
+    private final LongSupplier nanoClock;
+
+    //guarded by this; access ordered, so iteration starts at the least recently used hash
+    private final LinkedHashMap<Long, Verdict> verdicts;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingImageService(ImageService delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_HAMMING_DISTANCE, System::nanoTime);
+    }
+
+    /**
+     * @param delegate Answers frames that are not in the cache
+     * @param maxEntries Maximum verdicts remembered
+     * @param timeToLive How long a verdict is trusted
+     * @param maxHammingDistance Number of hash bits two frames may differ in and still count as the same
+     * @param nanoClock Source of {@link System#nanoTime()} style timestamps
+     */
+    public CachingImageService(ImageService delegate, int maxEntries, Duration timeToLive, int maxHammingDistance,
+                               LongSupplier nanoClock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        if (maxHammingDistance < 0 || maxHammingDistance > Long.SIZE) {
+            throw new IllegalArgumentException("maxHammingDistance must be between 0 and 64");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.maxHammingDistance = maxHammingDistance;
+        this.nanoClock = nanoClock;
+        this.verdicts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Verdict> eldest) {
+                return size() > CachingImageService.this.maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(null, image, confidenceThreshhold);
+    }
+
+    /**
+     * The cache is shared by all cameras; the camera is only passed on to the wrapped service.
+     */
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return classify(cameraId, null, confidenceThreshhold);
+        }
+        ImageClassificationEvent event = new ImageClassificationEvent();
+        event.begin();
+        long hash = differenceHash(image);
+        Boolean cached = lookup(hash, confidenceThreshhold);
+        if (cached != null) {
+            hits.increment();
+            event.complete(this, cameraId, image, cached, true);
+            return cached;
+        }
+        misses.increment();
+        //the remote call is made without holding the lock, so other cameras are not held up
+        boolean containsCat = classify(cameraId, image, confidenceThreshhold);
+        synchronized (this) {
+            verdicts.put(hash, new Verdict(confidenceThreshhold, containsCat, nanoClock.getAsLong() + timeToLiveNanos));
+        }
+        event.complete(this, cameraId, image, containsCat, false);
+        return containsCat;
+    }
+
+    private boolean classify(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        return cameraId == null
+                ? delegate.imageContainsCat(image, confidenceThreshhold)
+                : delegate.imageContainsCat(cameraId, image, confidenceThreshhold);
+    }
+
+    private synchronized Boolean lookup(long hash, float confidenceThreshhold) {
+        long now = nanoClock.getAsLong();
+        Verdict exact = verdicts.get(hash);
+        if (exact != null && exact.expiresAt() - now > 0 && exact.confidenceThreshhold() == confidenceThreshhold) {
+            return exact.containsCat();
+        }
+        Long closest = null;
+        int closestDistance = maxHammingDistance + 1;
+        for (Iterator<Map.Entry<Long, Verdict>> it = verdicts.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, Verdict> entry = it.next();
+            Verdict verdict = entry.getValue();
+            if (verdict.expiresAt() - now <= 0) {
+                it.remove();
+                continue;
+            }
+            int distance = Long.bitCount(entry.getKey() ^ hash);
+            if (distance < closestDistance && verdict.confidenceThreshhold() == confidenceThreshhold) {
+                closest = entry.getKey();
+                closestDistance = distance;
+            }
+        }
+        //get() rather than the iterated entry, so the match counts as recently used
+        return closest == null ? null : verdicts.get(closest).containsCat();
+    }
+
+    /**
+     * @return frames answered from the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return frames passed on to the wrapped image service
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return verdicts currently remembered, including any that have expired but not been cleaned up yet
+     */
+    public synchronized int size() {
+        return verdicts.size();
+    }
+
+    /**
+     * Forgets every remembered verdict, for example after the camera has been moved.
+     */
+    public synchronized void invalidateAll() {
+        verdicts.clear();
+    }
+
+    /**
+     * Computes the 64 bit difference hash of an image. Each cell of a 9x8 grid is reduced to the
+     * average brightness of a few sample points, and each pair of neighbouring cells in a row
+     * contributes one bit, set when the left cell is the brighter one.
+     */
+    static long differenceHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] brightness = new int[HASH_WIDTH];
+        long hash = 0;
+        for (int row = 0; row < HASH_HEIGHT; row++) {
+            for (int col = 0; col < HASH_WIDTH; col++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES_PER_CELL; sy++) {
+                    int y = (int) (((long) row * SAMPLES_PER_CELL + sy) * height / (HASH_HEIGHT * SAMPLES_PER_CELL));
+                    for (int sx = 0; sx < SAMPLES_PER_CELL; sx++) {
+                        int x = (int) (((long) col * SAMPLES_PER_CELL + sx) * width / (HASH_WIDTH * SAMPLES_PER_CELL));
+                        sum += luma(image.getRGB(x, y));
+                    }
+                }
+                brightness[col] = sum;
+            }
+            for (int col = 0; col < HASH_WIDTH - 1; col++) {
+                hash <<= 1;
+                if (brightness[col] > brightness[col + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static int luma(int rgb) {
+        //integer approximation of 0.299 R + 0.587 G + 0.114 B
+        return (((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8;
+    }
+}
@@ -0,0 +1,60 @@
+package com.udacity.catpoint.image.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Flight recorder event for one image service answering whether a frame shows a cat. Services
+ * that wrap each other each emit their own event, so a recording shows how long every layer took.
+ * <p>
+ * Usage: create and {@link #begin()} the event before the work, then call {@link #complete}.
+ * While the event is disabled this costs no more than an allocation the JIT can remove.
+ */
+@Name("com.udacity.catpoint.ImageClassification")
+@Label("Image Classification")
+@Category({"Catpoint", "Image"})
+@Description("An image service deciding whether a frame shows a cat")
+@StackTrace(false)
+final class ImageClassificationEvent extends Event {
+
+    @Label("Service")
+    String service;
+
+    @Label("Camera")
+    String cameraId;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Contains Cat")
+    boolean containsCat;
+
+    @Label("Cache Hit")
+    @Description("Answered with an earlier verdict instead of classifying the frame")
+    boolean cacheHit;
+
+    /**
+     * Ends the event and, if it is enabled and long enough to be recorded, fills it in and commits it.
+     */
+    void complete(ImageService service, String cameraId, BufferedImage image, boolean containsCat, boolean cacheHit) {
+        end();
+        if (shouldCommit()) {
+            this.service = service.getClass().getSimpleName();
+            this.cameraId = cameraId;
+            this.width = image == null ? 0 : image.getWidth();
+            this.height = image == null ? 0 : image.getHeight();
+            this.containsCat = containsCat;
+            this.cacheHit = cacheHit;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Service that decides whether an image shows a cat.
+ */
+public interface ImageService {
+
+    /**
+     * Camera assumed for images passed without a camera id.
+     */
+    String DEFAULT_CAMERA_ID = "default";
+
+    /**
+     * Returns true if the provided image contains a cat.
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
+     * @return
+     */
+    boolean imageContainsCat(BufferedImage image, float confidenceThreshhold);
+
+    /**
+     * Returns true if the provided image, taken by the given camera, contains a cat. Services
+     * that keep per-camera state, such as {@link MotionGatedImageService}, override this; the
+     * rest ignore the camera.
+     * @param cameraId Camera that took the image
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @return
+     */
+    default boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(image, confidenceThreshhold);
+    }
+}
@@ -0,0 +1,213 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Turns camera frames into compact JPEG payloads for a remote classifier. Frames larger than a
+ * maximum dimension are scaled down first, since a classifier finds a cat just as well at a
+ * fraction of the resolution, and the quality is set explicitly instead of left to the default.
+ * <p>
+ * Each thread keeps its own JPEG writer, output stream and scaling canvas, and the writer encodes
+ * straight into a buffer rather than through an image stream cache, so encoding a steady stream of
+ * frames allocates little beyond the returned payload. Callers that keep a buffer of their own can
+ * have the frame encoded into it with {@link #encode(BufferedImage, ByteBuffer)} and allocate
+ * nothing at all. Instances are thread safe.
+ */
+public class JpegEncoder {
+
+    public static final int DEFAULT_MAX_DIMENSION = 640;
+    public static final float DEFAULT_QUALITY = 0.7f;
+
+    private final int maxDimension;
+    private final float quality;
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+    public JpegEncoder() {
+        this(DEFAULT_MAX_DIMENSION, DEFAULT_QUALITY);
+    }
+
+    /**
+     * @param maxDimension Longest side, in pixels, of the encoded image
+     * @param quality JPEG quality between 0 and 1
+     */
+    public JpegEncoder(int maxDimension, float quality) {
+        if (maxDimension < 1) {
+            throw new IllegalArgumentException("maxDimension must be positive");
+        }
+        if (quality < 0 || quality > 1) {
+            throw new IllegalArgumentException("quality must be between 0 and 1");
+        }
+        this.maxDimension = maxDimension;
+        this.quality = quality;
+    }
+
+    /**
+     * @return the JPEG encoded image, sized exactly to its content
+     */
+    public byte[] encode(BufferedImage image) throws IOException {
+        State s = state.get();
+        //the scratch buffer only grows until it fits the largest frame seen
+        s.scratch = encode(image, s.scratch);
+        return Arrays.copyOf(s.scratch.array(), s.scratch.limit());
+    }
+
+    /**
+     * Encodes the image into the given heap buffer, from its start. A buffer too small for the
+     * frame is replaced by a larger one holding the same bytes, so keep the returned buffer for
+     * the next frame.
+     *
+     * @return the buffer holding the JPEG between position 0 and its limit
+     */
+    public ByteBuffer encode(BufferedImage image, ByteBuffer buffer) throws IOException {
+        State s = state.get();
+        BufferedImage prepared = s.prepare(image, maxDimension);
+        s.out.reset(buffer);
+        try {
+            s.writer.setOutput(s.out);
+            s.writer.write(null, new IIOImage(prepared, null, null), s.param(quality));
+            return s.out.buffer.limit(s.out.length).position(0);
+        } finally {
+            s.writer.setOutput(null);
+            //the buffer belongs to the caller, do not hold on to it
+            s.out.buffer = null;
+        }
+    }
+
+    /**
+     * Image output stream over a heap buffer, reused for every frame a thread encodes.
+     */
+    private static final class BufferOutputStream extends ImageOutputStreamImpl {
+        ByteBuffer buffer;
+        int length;
+
+        void reset(ByteBuffer target) {
+            buffer = target.clear();
+            length = 0;
+            streamPos = 0;
+            flushedPos = 0;
+            bitOffset = 0;
+        }
+
+        private void ensureCapacity(long end) throws IOException {
+            if (end > Integer.MAX_VALUE - 8) {
+                throw new IOException("Encoded image too large");
+            }
+            if (end > buffer.capacity()) {
+                int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(end, 2L * buffer.capacity()));
+                ByteBuffer larger = ByteBuffer.allocate(capacity);
+                larger.put(0, buffer, 0, length);
+                buffer = larger;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + 1);
+            buffer.put((int) streamPos, (byte) b);
+            streamPos++;
+            length = Math.max(length, (int) streamPos);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + len);
+            buffer.put((int) streamPos, b, off, len);
+            streamPos += len;
+            length = Math.max(length, (int) streamPos);
+        }
+
+        @Override
+        public int read() {
+            bitOffset = 0;
+            if (streamPos >= length) {
+                return -1;
+            }
+            return buffer.get((int) streamPos++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            bitOffset = 0;
+            if (len == 0) {
+                return 0;
+            }
+            int available = length - (int) Math.min(streamPos, length);
+            if (available == 0) {
+                return -1;
+            }
+            int n = Math.min(len, available);
+            buffer.get((int) streamPos, b, off, n);
+            streamPos += n;
+            return n;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+    }
+
+    /**
+     * Per-thread encoding resources.
+     */
+    private static final class State {
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        final BufferOutputStream out = new BufferOutputStream();
+        ByteBuffer scratch = ByteBuffer.allocate(64 * 1024);
+        ImageWriteParam param;
+        //canvas for scaled or converted frames, replaced only when the target size changes
+        BufferedImage canvas;
+
+        ImageWriteParam param(float quality) {
+            if (param == null) {
+                param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+            return param;
+        }
+
+        /**
+         * Returns the image to encode: the frame itself if it can be written as is, otherwise a
+         * copy that is scaled down and, since JPEG has no alpha channel, without transparency.
+         */
+        BufferedImage prepare(BufferedImage image, int maxDimension) {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int longest = Math.max(width, height);
+            boolean opaqueRgb = image.getType() == BufferedImage.TYPE_3BYTE_BGR
+                    || image.getType() == BufferedImage.TYPE_INT_RGB
+                    || image.getType() == BufferedImage.TYPE_BYTE_GRAY;
+            if (longest <= maxDimension && opaqueRgb) {
+                return image;
+            }
+            if (longest > maxDimension) {
+                width = Math.max(1, (int) ((long) width * maxDimension / longest));
+                height = Math.max(1, (int) ((long) height * maxDimension / longest));
+            }
+            if (canvas == null || canvas.getWidth() != width || canvas.getHeight() != height) {
+                canvas = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            }
+            Graphics2D g = canvas.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            return canvas;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Image service that only asks another image service about frames in which something moved.
+ * <p>
+ * Each frame is reduced to a small grayscale thumbnail and compared with the thumbnail of the
+ * last frame the same camera had classified. If only a small share of the thumbnail's pixels
+ * changed noticeably, the scene is considered unchanged and the verdict for that frame is
+ * reused. Comparing with the last classified frame rather than the one just before means a slow
+ * drift, such as a cat creeping in over many frames, still adds up to a change.
+ * <p>
+ * The thumbnail is sampled straight from the raster's backing array for the image types cameras
+ * and {@link javax.imageio.ImageIO} usually produce, so a frame costs a few microseconds.
+ */
+public class MotionGatedImageService implements ImageService {
+
+    public static final double DEFAULT_CHANGED_PIXEL_RATIO = 0.02;
+    public static final int DEFAULT_PIXEL_DELTA = 24;
+
+    static final int THUMBNAIL_WIDTH = 64;
+    static final int THUMBNAIL_HEIGHT = 48;
+
+    private final ImageService delegate;
+    private final int changedPixelLimit;
+    private final int pixelDelta;
+    private final Map<String, Camera> cameras = new ConcurrentHashMap<>();
+
+    private final LongAdder skippedFrames = new LongAdder();
+    private final LongAdder classifiedFrames = new LongAdder();
+
+    public MotionGatedImageService(ImageService delegate) {
+        this(delegate, DEFAULT_CHANGED_PIXEL_RATIO, DEFAULT_PIXEL_DELTA);
+    }
+
+    /**
+     * @param delegate Classifies frames in which something moved
+     * @param changedPixelRatio Share of thumbnail pixels that must change before a frame counts as moved
+     * @param pixelDelta Brightness difference, out of 255, for a pixel to count as changed
+     */
+    public MotionGatedImageService(ImageService delegate, double changedPixelRatio, int pixelDelta) {
+        if (changedPixelRatio < 0 || changedPixelRatio > 1) {
+            throw new IllegalArgumentException("changedPixelRatio must be between 0 and 1");
+        }
+        this.delegate = delegate;
+        this.changedPixelLimit = (int) Math.ceil(changedPixelRatio * THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT);
+        this.pixelDelta = pixelDelta;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(DEFAULT_CAMERA_ID, image, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return delegate.imageContainsCat(cameraId, null, confidenceThreshhold);
+        }
+        ImageClassificationEvent event = new ImageClassificationEvent();
+        event.begin();
+        Camera camera = cameras.computeIfAbsent(cameraId, id -> new Camera());
+        byte[] candidate;
+        synchronized (camera) {
+            thumbnail(image, camera.scratch);
+            if (camera.reference != null && camera.confidenceThreshhold == confidenceThreshhold
+                    && changedPixels(camera.reference, camera.scratch) < changedPixelLimit) {
+                skippedFrames.increment();
+                event.complete(this, cameraId, image, camera.containsCat, true);
+                return camera.containsCat;
+            }
+            candidate = camera.scratch.clone();
+        }
+        classifiedFrames.increment();
+        boolean containsCat = delegate.imageContainsCat(cameraId, image, confidenceThreshhold);
+        synchronized (camera) {
+            camera.reference = candidate;
+            camera.confidenceThreshhold = confidenceThreshhold;
+            camera.containsCat = containsCat;
+        }
+        event.complete(this, cameraId, image, containsCat, false);
+        return containsCat;
+    }
+
+    /**
+     * @return frames answered with the previous verdict because nothing moved
+     */
+    public long getSkippedFrameCount() {
+        return skippedFrames.sum();
+    }
+
+    /**
+     * @return frames passed on to the wrapped image service
+     */
+    public long getClassifiedFrameCount() {
+        return classifiedFrames.sum();
+    }
+
+    /**
+     * Drops the reference frame of a camera, so its next frame is classified.
+     */
+    public void forgetCamera(String cameraId) {
+        cameras.remove(cameraId);
+    }
+
+    private static final class Camera {
+        //thumbnail of the frame being checked, reused between frames
+        final byte[] scratch = new byte[THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+        byte[] reference;
+        float confidenceThreshhold;
+        boolean containsCat;
+    }
+
+    private int changedPixels(byte[] reference, byte[] current) {
+        int changed = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (Math.abs((reference[i] & 0xFF) - (current[i] & 0xFF)) > pixelDelta) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Samples an image down to a {@value #THUMBNAIL_WIDTH}x{@value #THUMBNAIL_HEIGHT} grid of
+     * brightness values, one byte per pixel.
+     */
+    static void thumbnail(BufferedImage image, byte[] out) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] xs = new int[THUMBNAIL_WIDTH];
+        for (int tx = 0; tx < THUMBNAIL_WIDTH; tx++) {
+            xs[tx] = (int) ((2L * tx + 1) * width / (2 * THUMBNAIL_WIDTH));
+        }
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        //a sub-image shares its parent's buffer and starts at an offset into it
+        int originX = -raster.getSampleModelTranslateX();
+        int originY = -raster.getSampleModelTranslateY();
+        int i = 0;
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE -> {
+                int[] data = ((DataBufferInt) buffer).getData();
+                int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+                int base = buffer.getOffset() + originY * stride + originX;
+                for (int ty = 0; ty < THUMBNAIL_HEIGHT; ty++) {
+                    int row = base + rowAt(ty, height) * stride;
+                    for (int tx = 0; tx < THUMBNAIL_WIDTH; tx++) {
+                        out[i++] = (byte) luma(data[row + xs[tx]]);
+                    }
+                }
+            }
+            case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_4BYTE_ABGR_PRE -> {
+                byte[] data = ((DataBufferByte) buffer).getData();
+                ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+                int stride = model.getScanlineStride();
+                int pixelStride = model.getPixelStride();
+                int[] bands = model.getBandOffsets();
+                int base = buffer.getOffset() + originY * stride + originX * pixelStride;
+                for (int ty = 0; ty < THUMBNAIL_HEIGHT; ty++) {
+                    int row = base + rowAt(ty, height) * stride;
+                    for (int tx = 0; tx < THUMBNAIL_WIDTH; tx++) {
+                        int p = row + xs[tx] * pixelStride;
+                        out[i++] = (byte) luma(data[p + bands[0]] & 0xFF, data[p + bands[1]] & 0xFF, data[p + bands[2]] & 0xFF);
+                    }
+                }
+            }
+            case BufferedImage.TYPE_BYTE_GRAY -> {
+                byte[] data = ((DataBufferByte) buffer).getData();
+                ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+                int stride = model.getScanlineStride();
+                int base = buffer.getOffset() + originY * stride + originX + model.getBandOffsets()[0];
+                for (int ty = 0; ty < THUMBNAIL_HEIGHT; ty++) {
+                    int row = base + rowAt(ty, height) * stride;
+                    for (int tx = 0; tx < THUMBNAIL_WIDTH; tx++) {
+                        out[i++] = data[row + xs[tx]];
+                    }
+                }
+            }
+            default -> {
+                //uncommon layouts go through the slower colour model conversion
+                for (int ty = 0; ty < THUMBNAIL_HEIGHT; ty++) {
+                    int y = rowAt(ty, height);
+                    for (int tx = 0; tx < THUMBNAIL_WIDTH; tx++) {
+                        out[i++] = (byte) luma(image.getRGB(xs[tx], y));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int rowAt(int ty, int height) {
+        return (int) ((2L * ty + 1) * height / (2 * THUMBNAIL_HEIGHT));
+    }
+
+    private static int luma(int rgb) {
+        return luma((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+    }
+
+    private static int luma(int r, int g, int b) {
+        //integer approximation of 0.299 R + 0.587 G + 0.114 B
+        return (r * 77 + g * 150 + b * 29) >> 8;
+    }
+}
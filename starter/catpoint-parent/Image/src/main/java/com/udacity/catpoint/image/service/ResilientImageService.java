@@ -0,0 +1,274 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Image service that keeps a slow or failing remote image service from stalling cat detection.
+ * <ul>
+ *     <li>Every call has a deadline. A call that misses it, or fails, is answered with a fallback
+ *     verdict instead.</li>
+ *     <li>After a number of failures in a row the circuit opens and calls are answered with the
+ *     fallback straight away, without waiting on a service that is known to be down. Once the
+ *     open period is over a single trial call is let through; if it succeeds the circuit closes.
+ *     Only that trial call can close it: a call admitted before the circuit opened that happens to
+ *     succeed afterwards says nothing about whether the service is back.</li>
+ *     <li>Optionally, a call still running after the given latency percentile of earlier calls is
+ *     hedged: a second identical call is started and whichever answers first wins, which cuts
+ *     the tail latency caused by the occasional slow request.</li>
+ * </ul>
+ * Latencies of successful calls are recorded in a {@link LatencyHistogram}.
+ */
+public class ResilientImageService implements ImageService {
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(3);
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+    //calls recorded before the latency percentile is trusted for hedging
+    static final int HEDGE_MIN_SAMPLES = 20;
+
+    public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * The circuit as a call found it. Every transition starts a new generation, so a call can
+     * tell whether the circuit it was admitted under is still the current one.
+     */
+    private record Circuit(CircuitState state, long generation, long openedAt) {
+        Circuit next(CircuitState state, long openedAt) {
+            return new Circuit(state, generation + 1, openedAt);
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(ResilientImageService.class);
+
+    private final ImageService delegate;
+    private final Executor executor;
+    private final long timeoutNanos;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final boolean fallbackVerdict;
+    private final double hedgePercentile;
+
+    private final AtomicReference<Circuit> circuit = new AtomicReference<>(new Circuit(CircuitState.CLOSED, 0, 0));
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+
+    /**
+     * Wraps an image service with the default deadline and circuit breaker, a fallback verdict of
+     * "no cat" and no hedging.
+     */
+    public ResilientImageService(ImageService delegate) {
+        this(delegate, Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "catpoint-image-call");
+            t.setDaemon(true);
+            return t;
+        }), DEFAULT_TIMEOUT, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION, false, 0);
+    }
+
+    /**
+     * @param delegate The remote image service
+     * @param executor Runs the calls to the delegate. A call that misses its deadline keeps its
+     *                 thread until the delegate gives up, so this should not be a small fixed pool.
+     * @param timeout Deadline for each call, hedges included
+     * @param failureThreshold Failures in a row that open the circuit
+     * @param openDuration How long an open circuit answers with the fallback before trying again
+     * @param fallbackVerdict Answer given when the delegate cannot be reached in time
+     * @param hedgePercentile Latency percentile, for example 95.0, after which a call is hedged;
+     *                        0 turns hedging off
+     */
+    public ResilientImageService(ImageService delegate, Executor executor, Duration timeout, int failureThreshold,
+                                 Duration openDuration, boolean fallbackVerdict, double hedgePercentile) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        if (hedgePercentile < 0 || hedgePercentile > 100) {
+            throw new IllegalArgumentException("hedgePercentile must be between 0 and 100");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+        this.timeoutNanos = timeout.toNanos();
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.fallbackVerdict = fallbackVerdict;
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return call(null, image, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        return call(cameraId, image, confidenceThreshhold);
+    }
+
+    private boolean call(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        Circuit admittedUnder = admit();
+        if (admittedUnder == null) {
+            fallbacks.increment();
+            return fallbackVerdict;
+        }
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        AtomicInteger pendingAttempts = new AtomicInteger(1);
+        attempt(cameraId, image, confidenceThreshhold, result, pendingAttempts);
+        try {
+            long hedgeDelay = hedgeDelayNanos();
+            if (hedgeDelay > 0 && hedgeDelay < timeoutNanos) {
+                try {
+                    return succeeded(admittedUnder, result.get(hedgeDelay, TimeUnit.NANOSECONDS), start);
+                } catch (TimeoutException e) {
+                    if (pendingAttempts.getAndIncrement() > 0) {
+                        hedges.increment();
+                        attempt(cameraId, image, confidenceThreshhold, result, pendingAttempts);
+                    }
+                }
+            }
+            return succeeded(admittedUnder, result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS), start);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            return failed(admittedUnder, e);
+        } catch (ExecutionException e) {
+            return failed(admittedUnder, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(admittedUnder, e);
+        }
+    }
+
+    /**
+     * Starts one call to the delegate. The first attempt to succeed completes the result; it
+     * only fails once every attempt has failed.
+     */
+    private void attempt(String cameraId, BufferedImage image, float confidenceThreshhold,
+                         CompletableFuture<Boolean> result, AtomicInteger pendingAttempts) {
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(cameraId == null
+                            ? delegate.imageContainsCat(image, confidenceThreshhold)
+                            : delegate.imageContainsCat(cameraId, image, confidenceThreshhold));
+                } catch (RuntimeException e) {
+                    if (pendingAttempts.decrementAndGet() == 0) {
+                        result.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            if (pendingAttempts.decrementAndGet() == 0) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private long hedgeDelayNanos() {
+        if (hedgePercentile == 0 || latencies.getCount() < HEDGE_MIN_SAMPLES) {
+            return 0;
+        }
+        return latencies.getValueAtPercentile(hedgePercentile);
+    }
+
+    /**
+     * @return the circuit the call is admitted under, or null if it is refused
+     */
+    private Circuit admit() {
+        Circuit current = circuit.get();
+        if (current.state() == CircuitState.CLOSED) {
+            return current;
+        }
+        if (current.state() != CircuitState.OPEN || System.nanoTime() - current.openedAt() < openNanos) {
+            return null;
+        }
+        //once the open period is over exactly one caller gets to make the trial call
+        Circuit trial = current.next(CircuitState.HALF_OPEN, current.openedAt());
+        return circuit.compareAndSet(current, trial) ? trial : null;
+    }
+
+    private boolean succeeded(Circuit admittedUnder, boolean verdict, long start) {
+        latencies.record(System.nanoTime() - start);
+        Circuit current = circuit.get();
+        if (current != admittedUnder) {
+            //the circuit opened or closed while this call was running, so it has no say any more
+            return verdict;
+        }
+        consecutiveFailures.set(0);
+        if (current.state() == CircuitState.HALF_OPEN
+                && circuit.compareAndSet(current, current.next(CircuitState.CLOSED, 0))) {
+            log.info("Image service recovered, circuit closed");
+        }
+        return verdict;
+    }
+
+    private boolean failed(Circuit admittedUnder, Throwable cause) {
+        failures.increment();
+        fallbacks.increment();
+        Circuit current = circuit.get();
+        if (current != admittedUnder) {
+            log.debug("Image service call failed, using fallback verdict", cause);
+            return fallbackVerdict;
+        }
+        int failuresInARow = consecutiveFailures.incrementAndGet();
+        if (current.state() == CircuitState.HALF_OPEN || failuresInARow >= failureThreshold) {
+            if (circuit.compareAndSet(current, current.next(CircuitState.OPEN, System.nanoTime()))) {
+                consecutiveFailures.set(0);
+                log.warn("Image service failed {} times in a row, circuit opened", failuresInARow, cause);
+            }
+        } else {
+            log.debug("Image service call failed, using fallback verdict", cause);
+        }
+        return fallbackVerdict;
+    }
+
+    public CircuitState getCircuitState() {
+        return circuit.get().state();
+    }
+
+    /**
+     * @return latencies of calls that were answered by the delegate
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latencies;
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return calls that failed or timed out
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * @return calls answered with the fallback verdict, including those refused by an open circuit
+     */
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+}
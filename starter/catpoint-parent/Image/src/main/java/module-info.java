@@ -4,6 +4,9 @@ module Image {
     requires org.slf4j;
     requires software.amazon.awssdk.core;
     requires java.desktop;
+    requires jdk.jfr;
     requires software.amazon.awssdk.regions;
+    requires software.amazon.awssdk.http;
+    requires software.amazon.awssdk.http.nio.netty;
     exports com.udacity.catpoint.image.service;
 }
@@ -0,0 +1,164 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AwsAsyncImageServiceTest {
+
+    private static final String CAT_LABELS = "{\"Labels\":[{\"Name\":\"Cat\",\"Confidence\":98.5},{\"Name\":\"Pet\",\"Confidence\":97.0}]}";
+
+    private ServerSocket server;
+    private final List<String> targets = new CopyOnWriteArrayList<>();
+    private Properties props;
+    private AwsAsyncImageService service;
+
+    /**
+     * Minimal HTTP/1.1 stand-in for Rekognition: answers every request on a connection with the
+     * same label list and remembers which operation was asked for.
+     */
+    @BeforeEach
+    void startStandIn() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread connection = new Thread(() -> serve(socket));
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        props = new Properties();
+        props.setProperty("aws.id", "test-id");
+        props.setProperty("aws.secret", "test-secret");
+        props.setProperty("aws.region", "us-east-1");
+        props.setProperty("aws.endpoint", "http://127.0.0.1:" + server.getLocalPort());
+        props.setProperty("aws.maxConnections", "2");
+        service = new AwsAsyncImageService(props);
+    }
+
+    @AfterEach
+    void stopStandIn() throws IOException {
+        service.close();
+        server.close();
+    }
+
+    private void serve(Socket socket) {
+        try (socket; InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = socket.getOutputStream()) {
+            while (true) {
+                int contentLength = 0;
+                String line = readLine(in);
+                if (line == null) {
+                    return;
+                }
+                while ((line = readLine(in)) != null && !line.isEmpty()) {
+                    String[] header = line.split(":", 2);
+                    if (header[0].equalsIgnoreCase("Content-Length")) {
+                        contentLength = Integer.parseInt(header[1].trim());
+                    } else if (header[0].equalsIgnoreCase("X-Amz-Target")) {
+                        targets.add(header[1].trim());
+                    }
+                }
+                in.readNBytes(contentLength);
+                byte[] body = CAT_LABELS.getBytes(StandardCharsets.UTF_8);
+                out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/x-amz-json-1.1\r\nContent-Length: "
+                        + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(body);
+                out.flush();
+            }
+        } catch (IOException e) {
+            //client went away
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                return line.toString();
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    @Test
+    @DisplayName("Concurrent frames are classified through the endpoint override")
+    public void concurrentFrames_useStandIn() throws Exception {
+        BufferedImage img = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        CompletableFuture<Boolean> first = service.imageContainsCatAsync(img, 50.0f);
+        CompletableFuture<Boolean> second = service.imageContainsCatAsync(img, 50.0f);
+
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertTrue(second.get(10, TimeUnit.SECONDS));
+        assertTrue(service.imageContainsCat(img, 50.0f));
+        assertEquals(3, targets.size());
+        assertTrue(targets.stream().allMatch(t -> t.endsWith("DetectLabels")));
+    }
+
+    @Test
+    @DisplayName("Nothing is connected until the warm-up or first call")
+    public void client_startsLazily() throws Exception {
+        Thread.sleep(100);
+        assertTrue(targets.isEmpty());
+        service.warmUp().get(10, TimeUnit.SECONDS);
+        assertEquals(1, targets.size());
+    }
+
+    @Test
+    @DisplayName("Instances share one connection pool, closed with the last of them")
+    public void instances_shareConnectionPool() throws Exception {
+        BufferedImage img = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        AwsAsyncImageService other = new AwsAsyncImageService(props);
+        try {
+            assertTrue(service.imageContainsCatAsync(img, 50.0f).get(10, TimeUnit.SECONDS));
+            assertTrue(other.imageContainsCatAsync(img, 50.0f).get(10, TimeUnit.SECONDS));
+            assertEquals(2, AwsAsyncImageService.getConnectionPoolUsers());
+
+            service.close();
+            assertEquals(1, AwsAsyncImageService.getConnectionPoolUsers());
+            assertTrue(other.imageContainsCatAsync(img, 50.0f).get(10, TimeUnit.SECONDS));
+        } finally {
+            other.close();
+        }
+        assertEquals(0, AwsAsyncImageService.getConnectionPoolUsers());
+        assertEquals(3, targets.size());
+    }
+
+    @Test
+    @DisplayName("Calls after close fail instead of reconnecting")
+    public void closedService_failsCalls() {
+        service.close();
+        CompletableFuture<Boolean> result = service.imageContainsCatAsync(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), 50.0f);
+        assertTrue(result.isCompletedExceptionally());
+    }
+}
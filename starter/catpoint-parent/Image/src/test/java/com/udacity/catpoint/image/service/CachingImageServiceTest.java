@@ -0,0 +1,133 @@
+package com.udacity.catpoint.image.service;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingImageServiceTest {
+
+    private long now;
+    private int classifications;
+    private final ImageService countingService = (image, confidenceThreshhold) -> {
+        classifications++;
+        return true;
+    };
+
+    private CachingImageService cache(int maxEntries) {
+        return new CachingImageService(countingService, maxEntries, Duration.ofSeconds(10), 4, () -> now);
+    }
+
+    /**
+     * Builds a 90x80 grey image whose brightness depends on the column only.
+     */
+    private static BufferedImage columns(IntUnaryOperator brightnessAtColumn) {
+        BufferedImage image = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            int v = brightnessAtColumn.applyAsInt(x);
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, v << 16 | v << 8 | v);
+            }
+        }
+        return image;
+    }
+
+    private static final BufferedImage DARK_TO_LIGHT = columns(x -> x * 2);
+    private static final BufferedImage LIGHT_TO_DARK = columns(x -> 200 - x * 2);
+    private static final BufferedImage STRIPES = columns(x -> (x / 10) % 2 == 0 ? 200 : 50);
+
+    @Test
+    @DisplayName("Repeated and nearly identical frames are answered from the cache")
+    public void similarFrames_hit() {
+        CachingImageService service = cache(16);
+        assertTrue(service.imageContainsCat(DARK_TO_LIGHT, 50.0f));
+        assertTrue(service.imageContainsCat(DARK_TO_LIGHT, 50.0f));
+        //a uniformly brighter frame of the same scene keeps the same hash
+        assertTrue(service.imageContainsCat(columns(x -> x * 2 + 5), 50.0f));
+
+        assertEquals(1, classifications);
+        assertEquals(2, service.getHitCount());
+        assertEquals(1, service.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Different scenes and thresholds are classified separately")
+    public void differentFrames_miss() {
+        CachingImageService service = cache(16);
+        service.imageContainsCat(DARK_TO_LIGHT, 50.0f);
+        service.imageContainsCat(LIGHT_TO_DARK, 50.0f);
+        service.imageContainsCat(STRIPES, 50.0f);
+        service.imageContainsCat(STRIPES, 90.0f);
+
+        assertEquals(4, classifications);
+        assertEquals(0, service.getHitCount());
+        assertEquals(32, Long.bitCount(CachingImageService.differenceHash(DARK_TO_LIGHT)
+                ^ CachingImageService.differenceHash(STRIPES)));
+    }
+
+    @Test
+    @DisplayName("Verdicts expire after their time to live")
+    public void expiredVerdict_isClassifiedAgain() {
+        CachingImageService service = cache(16);
+        service.imageContainsCat(STRIPES, 50.0f);
+        now += Duration.ofSeconds(9).toNanos();
+        service.imageContainsCat(STRIPES, 50.0f);
+        assertEquals(1, classifications);
+
+        now += Duration.ofSeconds(2).toNanos();
+        service.imageContainsCat(STRIPES, 50.0f);
+        assertEquals(2, classifications);
+    }
+
+    @Test
+    @DisplayName("The least recently used verdict is evicted when the cache is full")
+    public void fullCache_evictsLeastRecentlyUsed() {
+        CachingImageService service = cache(2);
+        service.imageContainsCat(DARK_TO_LIGHT, 50.0f);
+        service.imageContainsCat(LIGHT_TO_DARK, 50.0f);
+        service.imageContainsCat(DARK_TO_LIGHT, 50.0f);
+        service.imageContainsCat(STRIPES, 50.0f);
+        assertEquals(2, service.size());
+        assertEquals(3, classifications);
+
+        service.imageContainsCat(DARK_TO_LIGHT, 50.0f);
+        assertEquals(3, classifications);
+        service.imageContainsCat(LIGHT_TO_DARK, 50.0f);
+        assertEquals(4, classifications);
+    }
+
+    @Test
+    @DisplayName("Each answer is recorded as a flight recorder event")
+    public void answers_emitClassificationEvents() throws Exception {
+        CachingImageService service = cache(16);
+        Path dump = Files.createTempFile("classification", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.udacity.catpoint.ImageClassification").withThreshold(Duration.ZERO);
+            recording.start();
+            service.imageContainsCat("front", DARK_TO_LIGHT, 50.0f);
+            service.imageContainsCat("front", DARK_TO_LIGHT, 50.0f);
+            recording.stop();
+            recording.dump(dump);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+
+            assertEquals(2, events.size());
+            assertFalse(events.get(0).getBoolean("cacheHit"));
+            assertTrue(events.get(1).getBoolean("cacheHit"));
+            assertEquals("front", events.get(1).getString("cameraId"));
+            assertEquals(90, events.get(1).getInt("width"));
+            assertTrue(events.get(1).getBoolean("containsCat"));
+        } finally {
+            Files.delete(dump);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JpegEncoderTest {
+
+    private static BufferedImage decode(byte[] jpeg) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(jpeg));
+    }
+
+    @Test
+    @DisplayName("Large frames are scaled down to the maximum dimension")
+    public void largeFrame_isScaledDown() throws IOException {
+        BufferedImage encoded = decode(new JpegEncoder(400, 0.7f).encode(
+                new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB)));
+        assertEquals(400, encoded.getWidth());
+        assertEquals(300, encoded.getHeight());
+    }
+
+    @Test
+    @DisplayName("Small frames keep their size, and transparent frames can be encoded")
+    public void smallAndTransparentFrames_areEncoded() throws IOException {
+        JpegEncoder encoder = new JpegEncoder();
+        BufferedImage opaque = decode(encoder.encode(new BufferedImage(320, 240, BufferedImage.TYPE_3BYTE_BGR)));
+        assertEquals(320, opaque.getWidth());
+        assertEquals(240, opaque.getHeight());
+
+        BufferedImage transparent = decode(encoder.encode(new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB)));
+        assertEquals(200, transparent.getWidth());
+        assertEquals(100, transparent.getHeight());
+    }
+
+    @Test
+    @DisplayName("Frames are encoded into the caller's buffer, which is replaced when too small")
+    public void encodeIntoBuffer_growsWhenNeeded() throws IOException {
+        JpegEncoder encoder = new JpegEncoder();
+        BufferedImage frame = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        frame.setRGB(10, 10, 0xFF0000);
+        byte[] expected = encoder.encode(frame);
+
+        ByteBuffer small = ByteBuffer.allocate(16);
+        ByteBuffer grown = encoder.encode(frame, small);
+        assertNotSame(small, grown);
+        assertEquals(0, grown.position());
+        assertArrayEquals(expected, Arrays.copyOf(grown.array(), grown.limit()));
+
+        //a buffer that fits is used as is, from its start
+        ByteBuffer reused = encoder.encode(frame, grown.position(grown.limit()));
+        assertSame(grown, reused);
+        assertArrayEquals(expected, Arrays.copyOf(reused.array(), reused.limit()));
+        assertEquals(640, decode(encoder.encode(frame)).getWidth());
+    }
+}
@@ -0,0 +1,36 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Every value falls in a bucket whose bound is at most 12.5% above it")
+    public void buckets_coverValues() {
+        for (long value = 0; value < 100_000; value += 7) {
+            long upper = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(value));
+            assertTrue(upper >= value);
+            assertTrue(upper <= value + value / 8 + 1);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    @DisplayName("Percentiles are reported within the bucket precision")
+    public void percentiles_matchRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_500, histogram.getMean(), 0.001);
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500_000 && median <= 562_500, "median " + median);
+        assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+}
@@ -0,0 +1,94 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MotionGatedImageServiceTest {
+
+    private int classifications;
+    private boolean answer = true;
+    private final ImageService countingService = (image, confidenceThreshhold) -> {
+        classifications++;
+        return answer;
+    };
+    private final MotionGatedImageService service = new MotionGatedImageService(countingService);
+
+    /**
+     * Draws a grey scene with a dark box, standing in for something that moves around.
+     */
+    private static BufferedImage scene(int type, int boxX) {
+        BufferedImage image = new BufferedImage(320, 240, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(180, 170, 160));
+        g.fillRect(0, 0, 320, 240);
+        g.setColor(new Color(30, 40, 50));
+        g.fillRect(boxX, 60, 80, 80);
+        g.dispose();
+        return image;
+    }
+
+    private static byte[] thumbnail(BufferedImage image) {
+        byte[] out = new byte[MotionGatedImageService.THUMBNAIL_WIDTH * MotionGatedImageService.THUMBNAIL_HEIGHT];
+        MotionGatedImageService.thumbnail(image, out);
+        return out;
+    }
+
+    @Test
+    @DisplayName("An unchanged scene reuses the previous verdict")
+    public void unchangedScene_skipsClassifier() {
+        assertTrue(service.imageContainsCat(scene(BufferedImage.TYPE_INT_RGB, 20), 50.0f));
+        answer = false;
+        assertTrue(service.imageContainsCat(scene(BufferedImage.TYPE_INT_RGB, 20), 50.0f));
+        assertTrue(service.imageContainsCat(scene(BufferedImage.TYPE_3BYTE_BGR, 20), 50.0f));
+
+        assertEquals(1, classifications);
+        assertEquals(2, service.getSkippedFrameCount());
+    }
+
+    @Test
+    @DisplayName("A frame in which something moved is classified")
+    public void movedScene_isClassified() {
+        service.imageContainsCat(scene(BufferedImage.TYPE_INT_RGB, 20), 50.0f);
+        answer = false;
+        assertFalse(service.imageContainsCat(scene(BufferedImage.TYPE_INT_RGB, 200), 50.0f));
+        assertEquals(2, classifications);
+        assertEquals(2, service.getClassifiedFrameCount());
+    }
+
+    @Test
+    @DisplayName("Each camera is compared with its own previous frame")
+    public void cameras_areTrackedSeparately() {
+        service.imageContainsCat("front", scene(BufferedImage.TYPE_INT_RGB, 20), 50.0f);
+        service.imageContainsCat("back", scene(BufferedImage.TYPE_INT_RGB, 200), 50.0f);
+        service.imageContainsCat("front", scene(BufferedImage.TYPE_INT_RGB, 20), 50.0f);
+        service.imageContainsCat("back", scene(BufferedImage.TYPE_INT_RGB, 200), 50.0f);
+        assertEquals(2, classifications);
+
+        service.forgetCamera("front");
+        service.imageContainsCat("front", scene(BufferedImage.TYPE_INT_RGB, 20), 50.0f);
+        assertEquals(3, classifications);
+    }
+
+    @Test
+    @DisplayName("Raster access gives the same thumbnail for every image layout")
+    public void thumbnail_matchesAcrossLayouts() {
+        byte[] expected = thumbnail(scene(BufferedImage.TYPE_INT_RGB, 20));
+        assertArrayEquals(expected, thumbnail(scene(BufferedImage.TYPE_INT_ARGB, 20)));
+        assertArrayEquals(expected, thumbnail(scene(BufferedImage.TYPE_3BYTE_BGR, 20)));
+        assertArrayEquals(expected, thumbnail(scene(BufferedImage.TYPE_4BYTE_ABGR, 20)));
+        assertArrayEquals(expected, thumbnail(scene(BufferedImage.TYPE_INT_BGR, 20)));
+
+        //a sub-image reads through an offset into its parent's buffer
+        BufferedImage parent = new BufferedImage(400, 300, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = parent.createGraphics();
+        g.drawImage(scene(BufferedImage.TYPE_3BYTE_BGR, 20), 50, 40, null);
+        g.dispose();
+        assertArrayEquals(expected, thumbnail(parent.getSubimage(50, 40, 320, 240)));
+    }
+}
@@ -0,0 +1,141 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResilientImageServiceTest {
+
+    private final BufferedImage img = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * Stand-in for the remote classifier that always sees a cat, after a scripted delay or with
+     * a scripted failure.
+     */
+    private static final class FakeEndpoint implements ImageService {
+        final Deque<Long> delaysMillis = new ConcurrentLinkedDeque<>();
+        final AtomicInteger calls = new AtomicInteger();
+        volatile boolean failing;
+
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            calls.incrementAndGet();
+            Long delay = delaysMillis.pollFirst();
+            if (delay != null) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failing) {
+                throw new IllegalStateException("endpoint unavailable");
+            }
+            return true;
+        }
+    }
+
+    private final FakeEndpoint endpoint = new FakeEndpoint();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("A call that misses its deadline is answered with the fallback")
+    public void slowCall_timesOutToFallback() {
+        ResilientImageService service = new ResilientImageService(endpoint, executor, Duration.ofMillis(50),
+                5, Duration.ofSeconds(30), false, 0);
+        endpoint.delaysMillis.add(1000L);
+
+        long start = System.nanoTime();
+        assertFalse(service.imageContainsCat(img, 50.0f));
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(500).toNanos());
+        assertEquals(1, service.getTimeoutCount());
+        assertEquals(1, service.getFallbackCount());
+
+        assertTrue(service.imageContainsCat(img, 50.0f));
+        assertEquals(1, service.getLatencyHistogram().getCount());
+    }
+
+    @Test
+    @DisplayName("Repeated failures open the circuit until a trial call succeeds")
+    public void failures_openCircuit() throws InterruptedException {
+        ResilientImageService service = new ResilientImageService(endpoint, executor, Duration.ofSeconds(1),
+                3, Duration.ofMillis(200), false, 0);
+        endpoint.failing = true;
+        for (int i = 0; i < 3; i++) {
+            assertFalse(service.imageContainsCat(img, 50.0f));
+        }
+        assertEquals(ResilientImageService.CircuitState.OPEN, service.getCircuitState());
+
+        //fails fast without calling the endpoint
+        assertFalse(service.imageContainsCat(img, 50.0f));
+        assertEquals(3, endpoint.calls.get());
+        assertEquals(3, service.getFailureCount());
+        assertEquals(4, service.getFallbackCount());
+
+        Thread.sleep(250);
+        endpoint.failing = false;
+        assertTrue(service.imageContainsCat(img, 50.0f));
+        assertEquals(ResilientImageService.CircuitState.CLOSED, service.getCircuitState());
+    }
+
+    @Test
+    @DisplayName("A call that started before the circuit opened cannot close it by succeeding late")
+    public void staleSuccess_leavesCircuitOpen() throws Exception {
+        ResilientImageService service = new ResilientImageService(endpoint, executor, Duration.ofSeconds(2),
+                2, Duration.ofSeconds(30), false, 0);
+        endpoint.delaysMillis.add(500L);
+        Future<Boolean> slow = executor.submit(() -> service.imageContainsCat(img, 50.0f));
+        //the slow call has taken its delay once the queue is empty
+        while (!endpoint.delaysMillis.isEmpty()) {
+            Thread.onSpinWait();
+        }
+
+        endpoint.failing = true;
+        assertFalse(service.imageContainsCat(img, 50.0f));
+        assertFalse(service.imageContainsCat(img, 50.0f));
+        assertEquals(ResilientImageService.CircuitState.OPEN, service.getCircuitState());
+        endpoint.failing = false;
+
+        assertTrue(slow.get(5, TimeUnit.SECONDS));
+        assertEquals(ResilientImageService.CircuitState.OPEN, service.getCircuitState());
+        assertFalse(service.imageContainsCat(img, 50.0f));
+        assertEquals(3, endpoint.calls.get());
+    }
+
+    @Test
+    @DisplayName("A call slower than the latency percentile is hedged")
+    public void slowCall_isHedged() {
+        ResilientImageService service = new ResilientImageService(endpoint, executor, Duration.ofSeconds(5),
+                5, Duration.ofSeconds(30), false, 50.0);
+        for (int i = 0; i < ResilientImageService.HEDGE_MIN_SAMPLES; i++) {
+            endpoint.delaysMillis.add(20L);
+            assertTrue(service.imageContainsCat(img, 50.0f));
+        }
+        assertEquals(0, service.getHedgeCount());
+
+        //the first attempt hangs, the hedge answers straight away
+        endpoint.delaysMillis.add(2000L);
+        long start = System.nanoTime();
+        assertTrue(service.imageContainsCat(img, 50.0f));
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(1000).toNanos());
+        assertEquals(1, service.getHedgeCount());
+        assertEquals(0, service.getTimeoutCount());
+    }
+}
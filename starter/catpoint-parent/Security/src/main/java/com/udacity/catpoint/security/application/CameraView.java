@@ -0,0 +1,141 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.camera.FrameSink;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Shows camera frames scaled to the component's size. Each frame is drawn with bilinear
+ * interpolation into a back buffer that is only replaced when the component is resized, through
+ * a Graphics2D kept for the life of that buffer, and painting just copies the back buffer. The
+ * back buffer is created compatible with the screen where possible, so it can be kept in video
+ * memory.
+ * <p>
+ * Frames may be offered from any thread. Only the newest undrawn frame is kept; a frame replaced
+ * before it was drawn is released straight away.
+ */
+public class CameraView extends JComponent implements FrameSink {
+
+    private record Frame(BufferedImage image, Consumer<BufferedImage> releaser) {
+        void release() {
+            if (releaser != null) {
+                releaser.accept(image);
+            }
+        }
+    }
+
+    private final AtomicReference<Frame> pending = new AtomicReference<>();
+    private final Runnable present = this::present;
+
+    //only touched on the event dispatch thread
+    private BufferedImage backBuffer;
+    private Graphics2D backGraphics;
+    private boolean hasFrame;
+    private volatile long drawnFrameCount;
+    private volatile long replacedFrameCount;
+
+    public CameraView(int width, int height) {
+        setPreferredSize(new Dimension(width, height));
+        setBackground(Color.WHITE);
+        setOpaque(true);
+    }
+
+    /**
+     * Shows a still image, such as a picture chosen by the user.
+     */
+    public void showImage(BufferedImage image) {
+        showFrame(image, null);
+    }
+
+    @Override
+    public void showFrame(BufferedImage frame, Consumer<BufferedImage> release) {
+        Frame replaced = pending.getAndSet(new Frame(frame, release));
+        if (replaced != null) {
+            replacedFrameCount++;
+            replaced.release();
+        } else {
+            SwingUtilities.invokeLater(present);
+        }
+    }
+
+    /**
+     * Scales the newest frame into the back buffer.
+     */
+    private void present() {
+        Frame frame = pending.getAndSet(null);
+        if (frame == null) {
+            return;
+        }
+        try {
+            Graphics2D g = backGraphics();
+            g.drawImage(frame.image(), 0, 0, backBuffer.getWidth(), backBuffer.getHeight(), null);
+            hasFrame = true;
+            drawnFrameCount++;
+        } finally {
+            frame.release();
+        }
+        repaint();
+    }
+
+    /**
+     * Returns the back buffer's graphics, first replacing the buffer if the component changed size.
+     */
+    private Graphics2D backGraphics() {
+        Insets insets = getInsets();
+        int width = getWidth() - insets.left - insets.right;
+        int height = getHeight() - insets.top - insets.bottom;
+        if (width <= 0 || height <= 0) {
+            //not laid out yet
+            Dimension size = getPreferredSize();
+            width = size.width - insets.left - insets.right;
+            height = size.height - insets.top - insets.bottom;
+        }
+        width = Math.max(1, width);
+        height = Math.max(1, height);
+        if (backBuffer == null || backBuffer.getWidth() != width || backBuffer.getHeight() != height) {
+            if (backGraphics != null) {
+                backGraphics.dispose();
+            }
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            backBuffer = gc != null ? gc.createCompatibleImage(width, height)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            backGraphics = backBuffer.createGraphics();
+            backGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            backGraphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            backGraphics.setBackground(getBackground());
+            backGraphics.clearRect(0, 0, width, height);
+            hasFrame = false;
+        }
+        return backGraphics;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Insets insets = getInsets();
+        if (backBuffer != null && hasFrame) {
+            g.drawImage(backBuffer, insets.left, insets.top, null);
+        } else {
+            g.setColor(getBackground());
+            g.fillRect(insets.left, insets.top, getWidth() - insets.left - insets.right,
+                    getHeight() - insets.top - insets.bottom);
+        }
+    }
+
+    /**
+     * @return frames scaled into the back buffer
+     */
+    public long getDrawnFrameCount() {
+        return drawnFrameCount;
+    }
+
+    /**
+     * @return frames replaced by a newer one before they could be drawn
+     */
+    public long getReplacedFrameCount() {
+        return replacedFrameCount;
+    }
+}
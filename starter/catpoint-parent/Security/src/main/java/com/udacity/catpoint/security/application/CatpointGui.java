@@ -3,6 +3,9 @@ package com.udacity.catpoint.security.application;
 import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.image.service.MotionGatedImageService;
+import com.udacity.catpoint.security.service.AsyncStatusDispatcher;
 import com.udacity.catpoint.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
 
@@ -16,18 +19,28 @@ import javax.swing.*;
  */
 public class CatpointGui extends JFrame {
     private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private FakeImageService imageService = new FakeImageService();
-    private SecurityService securityService = new SecurityService(securityRepository, imageService);
+    //frames of an unchanged scene keep their last verdict instead of going to the classifier again
+    private ImageService imageService = new MotionGatedImageService(new FakeImageService());
+    //listeners are Swing panels, so status updates are delivered on the event dispatch thread,
+    //together with command results in one refresh
+    private CoalescingEdtExecutor uiExecutor = new CoalescingEdtExecutor();
+    private AsyncStatusDispatcher statusDispatcher = new AsyncStatusDispatcher(uiExecutor,
+            AsyncStatusDispatcher.DEFAULT_QUEUE_CAPACITY, AsyncStatusDispatcher.OverflowPolicy.DROP_OLDEST);
+    private SecurityService securityService = new SecurityService(securityRepository, imageService, statusDispatcher);
+    //panels issue their requests through here, keeping persistence and classification off the event dispatch thread
+    private SecurityCommands securityCommands = new SecurityCommands(securityService, uiExecutor,
+            e -> JOptionPane.showMessageDialog(this, "Request failed: " + e.getMessage()));
     private DisplayPanel displayPanel = new DisplayPanel(securityService);
-    private ControlPanel controlPanel = new ControlPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
+    private ControlPanel controlPanel = new ControlPanel(securityService, securityCommands);
+    private SensorPanel sensorPanel = new SensorPanel(securityService, securityCommands);
+    private ImagePanel imagePanel = new ImagePanel(securityService, securityCommands);
 
     public CatpointGui() {
         setLocation(100, 100);
         setSize(600, 850);
         setTitle("Very Secure App");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        securityService.getMetrics().register("catpoint");
 
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new MigLayout());
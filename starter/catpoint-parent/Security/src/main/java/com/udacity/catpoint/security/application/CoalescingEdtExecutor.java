@@ -0,0 +1,74 @@
+package com.udacity.catpoint.security.application;
+
+import javax.swing.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks on the event dispatch thread, gathering everything submitted while a refresh is
+ * pending into that one refresh instead of posting an event per task. Each refresh stops once it
+ * has used up its frame budget and leaves the remaining tasks to the next one, so input and
+ * painting get a turn in between even when a burst of updates arrives.
+ */
+public class CoalescingEdtExecutor implements Executor {
+
+    //about half a frame at 60 Hz
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final long frameBudgetNanos;
+
+    public CoalescingEdtExecutor() {
+        this(DEFAULT_FRAME_BUDGET_NANOS);
+    }
+
+    /**
+     * @param frameBudgetNanos How long one refresh may run tasks before yielding the event dispatch thread
+     */
+    public CoalescingEdtExecutor(long frameBudgetNanos) {
+        if (frameBudgetNanos <= 0) {
+            throw new IllegalArgumentException("frameBudgetNanos must be positive");
+        }
+        this.frameBudgetNanos = frameBudgetNanos;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (scheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::refresh);
+        }
+    }
+
+    private void refresh() {
+        long deadline = System.nanoTime() + frameBudgetNanos;
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                run(task);
+                if (System.nanoTime() - deadline >= 0) {
+                    break;
+                }
+            }
+        } finally {
+            scheduled.set(false);
+        }
+        //more may have arrived after the last poll, or the budget ran out
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::refresh);
+        }
+    }
+
+    private static void run(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            //one failing update must not hold back the rest of the refresh
+            Thread t = Thread.currentThread();
+            t.getUncaughtExceptionHandler().uncaughtException(t, e);
+        }
+    }
+}
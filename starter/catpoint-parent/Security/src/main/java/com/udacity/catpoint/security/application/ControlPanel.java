@@ -19,7 +19,10 @@ public class ControlPanel extends JPanel {
     private Map<ArmingStatus, JButton> buttonMap;
 
 
-    public ControlPanel(SecurityService securityService) {
+    /**
+     * @param securityCommands Applies the chosen arming status off the event dispatch thread
+     */
+    public ControlPanel(SecurityService securityService, SecurityCommands securityCommands) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
@@ -33,12 +36,10 @@ public class ControlPanel extends JPanel {
         buttonMap = Arrays.stream(ArmingStatus.values())
                 .collect(Collectors.toMap(status -> status, status -> new JButton(status.getDescription())));
 
-        //add an action listener to each button that applies its arming status and recolors all the buttons
+        //add an action listener to each button that applies its arming status and, once applied, recolors all the buttons
         buttonMap.forEach((k, v) -> {
-            v.addActionListener(e -> {
-                securityService.setArmingStatus(k);
-                buttonMap.forEach((status, button) -> button.setBackground(status == k ? status.getColor() : null));
-            });
+            v.addActionListener(e -> securityCommands.setArmingStatus(k).thenRun(() ->
+                    buttonMap.forEach((status, button) -> button.setBackground(status == k ? status.getColor() : null))));
         });
 
         //map order above is arbitrary, so loop again in order to add buttons in enum-order
@@ -1,43 +1,70 @@
 package com.udacity.catpoint.security.application;
 
+import com.udacity.catpoint.security.camera.CameraFeed;
+import com.udacity.catpoint.security.camera.DirectoryIngestor;
+import com.udacity.catpoint.security.camera.FrameSource;
+import com.udacity.catpoint.security.camera.ImageDecodeService;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.service.SecurityService;
 import com.udacity.catpoint.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
- * by uploading their own picture, and 'scan' the picture, sending it for image analysis
+ * by uploading their own picture, and 'scan' the picture, sending it for image analysis.
+ * A live feed can also be played from a directory of snapshots or an MJPEG file, with every
+ * Nth frame sent for image analysis, or a directory can be watched so every snapshot a camera
+ * drops into it is analysed without anyone at the screen.
  */
 public class ImagePanel extends JPanel implements StatusListener {
     private SecurityService securityService;
+    private SecurityCommands securityCommands;
+    private final String cameraId;
 
     private JLabel cameraHeader;
-    private JLabel cameraLabel;
+    private CameraView cameraView;
     private BufferedImage currentCameraImage;
+    private final ImageDecodeService decodeService = new ImageDecodeService();
+    //counts pictures chosen, so a slow decode does not replace a picture chosen after it
+    private int pictureCount;
+    private JButton scanPictureButton;
+    private CameraFeed cameraFeed;
+    private JButton feedButton;
+    private JSpinner fpsSpinner;
+    private DirectoryIngestor ingestor;
+    private JButton watchButton;
 
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
 
-    public ImagePanel(SecurityService securityService) {
+    public ImagePanel(SecurityService securityService, SecurityCommands securityCommands) {
+        this(securityService, securityCommands, SecurityService.DEFAULT_CAMERA_ID);
+    }
+
+    /**
+     * @param securityCommands Sends scanned pictures off the event dispatch thread
+     * @param cameraId The camera this panel shows, for sites with more than one
+     */
+    public ImagePanel(SecurityService securityService, SecurityCommands securityCommands, String cameraId) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
+        this.securityCommands = securityCommands;
+        this.cameraId = cameraId;
         securityService.addStatusListener(this);
 
         cameraHeader = new JLabel("Camera Feed");
         cameraHeader.setFont(StyleService.HEADING_FONT);
 
-        cameraLabel = new JLabel();
-        cameraLabel.setBackground(Color.WHITE);
-        cameraLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
-        cameraLabel.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
+        cameraView = new CameraView(IMAGE_WIDTH, IMAGE_HEIGHT);
+        cameraView.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
 
         //button allowing users to select a file to be the current camera image
         JButton addPictureButton = new JButton("Refresh Camera");
@@ -49,26 +76,167 @@ public class ImagePanel extends JPanel implements StatusListener {
             if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
-            try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException |NullPointerException ioe) {
-                JOptionPane.showMessageDialog(null, "Invalid image selected.");
-            }
-            repaint();
+            Path file = chooser.getSelectedFile().toPath();
+            //a frame the feed was still drawing must not land on top of the picture
+            stopFeed().thenRunAsync(() -> loadPicture(file), SwingUtilities::invokeLater);
         });
 
         //button that sends the image to the image service
-        JButton scanPictureButton = new JButton("Scan Picture");
-        scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+        scanPictureButton = new JButton("Scan Picture");
+        scanPictureButton.addActionListener(e -> scanPicture());
+
+        //button that plays or stops a live feed from a directory of snapshots or an MJPEG file
+        feedButton = new JButton("Start Feed");
+        fpsSpinner = new JSpinner(new SpinnerNumberModel((int) CameraFeed.DEFAULT_FPS, 1, 60, 1));
+        feedButton.addActionListener(e -> {
+            if (cameraFeed != null) {
+                stopFeed();
+                return;
+            }
+            JFileChooser chooser = new JFileChooser();
+            chooser.setCurrentDirectory(new File("."));
+            chooser.setDialogTitle("Select Snapshot Directory or MJPEG File");
+            chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+            if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            startFeed(chooser.getSelectedFile());
+        });
+
+        //button that watches a directory, sending each snapshot written to it for image analysis
+        watchButton = new JButton("Watch Folder");
+        watchButton.addActionListener(e -> {
+            if (ingestor != null) {
+                stopWatching();
+                return;
+            }
+            JFileChooser chooser = new JFileChooser();
+            chooser.setCurrentDirectory(new File("."));
+            chooser.setDialogTitle("Select Snapshot Directory");
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            startWatching(chooser.getSelectedFile());
         });
 
         add(cameraHeader, "span 3, wrap");
-        add(cameraLabel, "span 3, wrap");
+        add(cameraView, "span 3, wrap");
         add(addPictureButton);
-        add(scanPictureButton);
+        add(scanPictureButton, "wrap");
+        add(feedButton);
+        add(new JLabel("FPS:"), "split 2");
+        add(fpsSpinner, "wrap");
+        add(watchButton);
+    }
+
+    /**
+     * Decodes the picture off the event dispatch thread at the analysis resolution. The same image
+     * is scanned and shown, the view scales it down to its own size as it draws it.
+     */
+    private void loadPicture(Path file) {
+        int picture = ++pictureCount;
+        scanPictureButton.setEnabled(false);
+        decodeService.forAnalysis(file).whenCompleteAsync((image, error) -> {
+            if (picture != pictureCount) {
+                return;
+            }
+            scanPictureButton.setEnabled(true);
+            if (error != null) {
+                JOptionPane.showMessageDialog(null, "Invalid image selected.");
+                return;
+            }
+            currentCameraImage = image;
+            cameraView.showImage(image);
+        }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Sends the current picture for analysis and shows the verdict once it is in. A failed scan is
+     * reported by the commands' error handler; either way the panel is ready to scan again.
+     */
+    private void scanPicture() {
+        int picture = pictureCount;
+        scanPictureButton.setEnabled(false);
+        cameraHeader.setText("Camera Feed - Scanning...");
+        securityCommands.processImage(cameraId, currentCameraImage).whenComplete((verdict, error) -> {
+            if (picture == pictureCount) {
+                scanPictureButton.setEnabled(true);
+            }
+            showVerdict();
+        });
+    }
+
+    /**
+     * Plays the feed at the chosen frame rate, sending every
+     * {@value CameraFeed#DEFAULT_DETECTION_INTERVAL}th frame for image analysis.
+     * @param source A directory of snapshots or an MJPEG file
+     */
+    private void startFeed(File source) {
+        try {
+            FrameSource frames = FrameSource.open(source.toPath(), true);
+            cameraFeed = new CameraFeed(frames, (Integer) fpsSpinner.getValue(), CameraFeed.DEFAULT_DETECTION_INTERVAL,
+                    cameraView, frame -> securityService.processImageAsync(cameraId, frame));
+        } catch (IOException ioe) {
+            JOptionPane.showMessageDialog(null, "Invalid feed selected.");
+            return;
+        }
+        cameraFeed.start();
+        feedButton.setText("Stop Feed");
+        fpsSpinner.setEnabled(false);
+    }
+
+    /**
+     * Stops the feed. Closing waits for the frame being decoded, so it runs on its own thread
+     * rather than the event dispatch thread.
+     *
+     * @return completes once the feed has stopped drawing
+     */
+    private CompletableFuture<Void> stopFeed() {
+        if (cameraFeed == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CameraFeed feed = cameraFeed;
+        cameraFeed = null;
+        feedButton.setText("Start Feed");
+        fpsSpinner.setEnabled(true);
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        Thread closer = new Thread(() -> {
+            try {
+                feed.close();
+            } catch (IOException ioe) {
+                //nothing left to clean up
+            }
+            closed.complete(null);
+        }, "catpoint-feed-close");
+        closer.setDaemon(true);
+        closer.start();
+        return closed;
+    }
+
+    private void startWatching(File directory) {
+        try {
+            ingestor = new DirectoryIngestor(securityService);
+            ingestor.watch(directory.toPath(), cameraId);
+        } catch (IOException ioe) {
+            stopWatching();
+            JOptionPane.showMessageDialog(null, "Directory cannot be watched.");
+            return;
+        }
+        watchButton.setText("Stop Watching");
+    }
+
+    private void stopWatching() {
+        if (ingestor == null) {
+            return;
+        }
+        try {
+            ingestor.close();
+        } catch (IOException ioe) {
+            //nothing left to clean up
+        }
+        ingestor = null;
+        watchButton.setText("Watch Folder");
     }
 
     @Override
@@ -78,7 +246,12 @@ public class ImagePanel extends JPanel implements StatusListener {
 
     @Override
     public void catDetected(boolean catDetected) {
-        if(catDetected) {
+        //the notification is about all cameras, this panel reports its own one
+        showVerdict();
+    }
+
+    private void showVerdict() {
+        if(securityService.isCatDetected(cameraId)) {
             cameraHeader.setText("DANGER - CAT DETECTED");
         } else {
             cameraHeader.setText("Camera Feed - No Cats Detected");
@@ -0,0 +1,150 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the panels' requests against the {@link SecurityService} on a background thread, so saving
+ * to the repository or classifying an image never holds up the event dispatch thread.
+ * <p>
+ * Commands run one at a time in the order they were issued, so quick successive clicks are
+ * applied in order. Each command's future completes on the UI executor, where callbacks can touch
+ * Swing components directly; a failed command is also reported to the error handler there. A
+ * command whose result was cancelled, such as a frame dropped for a newer one, is not a failure:
+ * its future is cancelled and the error handler is not called.
+ */
+public class SecurityCommands implements AutoCloseable {
+
+    private final SecurityService securityService;
+    private final Executor commandExecutor;
+    private final ExecutorService ownedExecutor;
+    private final Executor uiExecutor;
+    private final Consumer<Throwable> errorHandler;
+
+    /**
+     * Creates a command layer with its own background thread.
+     *
+     * @param uiExecutor Completes the commands' futures, for example a {@link CoalescingEdtExecutor}
+     * @param errorHandler Called on the UI executor with the cause of a failed command
+     */
+    public SecurityCommands(SecurityService securityService, Executor uiExecutor, Consumer<Throwable> errorHandler) {
+        this(securityService, Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "catpoint-commands");
+            t.setDaemon(true);
+            return t;
+        }), true, uiExecutor, errorHandler);
+    }
+
+    /**
+     * @param commandExecutor Runs the commands. Must run them one at a time to keep them in
+     *                        order. Not shut down by {@link #close()}.
+     * @param uiExecutor Completes the commands' futures
+     * @param errorHandler Called on the UI executor with the cause of a failed command
+     */
+    public SecurityCommands(SecurityService securityService, Executor commandExecutor, Executor uiExecutor,
+                            Consumer<Throwable> errorHandler) {
+        this(securityService, commandExecutor, false, uiExecutor, errorHandler);
+    }
+
+    private SecurityCommands(SecurityService securityService, Executor commandExecutor, boolean owned,
+                             Executor uiExecutor, Consumer<Throwable> errorHandler) {
+        this.securityService = securityService;
+        this.commandExecutor = commandExecutor;
+        this.ownedExecutor = owned ? (ExecutorService) commandExecutor : null;
+        this.uiExecutor = uiExecutor;
+        this.errorHandler = errorHandler;
+    }
+
+    public CompletableFuture<Void> setArmingStatus(ArmingStatus armingStatus) {
+        return run(() -> securityService.setArmingStatus(armingStatus));
+    }
+
+    public CompletableFuture<Void> changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        return run(() -> securityService.changeSensorActivationStatus(sensor, active));
+    }
+
+    public CompletableFuture<Void> addSensor(Sensor sensor) {
+        return run(() -> securityService.addSensor(sensor));
+    }
+
+    /**
+     * Removes the sensors as one command.
+     */
+    public CompletableFuture<Void> removeSensors(Collection<Sensor> sensors) {
+        List<Sensor> toRemove = List.copyOf(sensors);
+        return run(() -> toRemove.forEach(securityService::removeSensor));
+    }
+
+    /**
+     * Reads the sensors on the command thread, after the commands issued before it.
+     */
+    public CompletableFuture<Set<Sensor>> getSensors() {
+        return call(() -> CompletableFuture.completedFuture(securityService.getSensors()));
+    }
+
+    /**
+     * Hands the image to the camera's frame queue. The command thread only waits for the frame to
+     * be queued, not for the classification.
+     *
+     * @return the verdict for the image, see {@link SecurityService#processImageAsync(String, BufferedImage)}
+     */
+    public CompletableFuture<Boolean> processImage(String cameraId, BufferedImage image) {
+        return call(() -> securityService.processImageAsync(cameraId, image));
+    }
+
+    private CompletableFuture<Void> run(Runnable command) {
+        return call(() -> {
+            command.run();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * @param command Runs on the command thread and returns the pending result, if any
+     * @return a future for the command's result that completes on the UI executor
+     */
+    private <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> command) {
+        CompletableFuture<T> ui = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(command, commandExecutor)
+                .thenCompose(pending -> pending)
+                .whenComplete((result, error) -> uiExecutor.execute(() -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        if (cause instanceof CancellationException) {
+                            ui.cancel(false);
+                            return;
+                        }
+                        errorHandler.accept(cause);
+                        ui.completeExceptionally(cause);
+                    } else {
+                        ui.complete(result);
+                    }
+                }));
+        return ui;
+    }
+
+    /**
+     * Stops the command thread if this layer created it. Commands not yet started are discarded.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+        }
+    }
+}
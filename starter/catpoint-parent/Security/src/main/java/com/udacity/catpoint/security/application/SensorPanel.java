@@ -9,14 +9,34 @@ import com.udacity.catpoint.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableRowSorter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
  * manually set to "active" and "inactive" to test the system.
+ * <p>
+ * Sensors are listed in a table, which only creates components for the rows on screen, so the
+ * panel copes with thousands of sensors. Sensors added, removed or toggled from this panel update
+ * their own row once the command is done. Changes made elsewhere are picked up by comparing the
+ * rows with the service's sensors, once for all the change reports that arrive together. Sorting
+ * and filtering by name, type and active state are handled by the table's row sorter without
+ * touching the rows themselves.
  */
 public class SensorPanel extends JPanel implements StatusListener{
 
+    private static final String ANY_TYPE = "Any Type";
+    private static final String ANY_STATE = "Any State";
+    private static final String ACTIVE_STATE = "Active";
+    private static final String INACTIVE_STATE = "Inactive";
+
     private SecurityService securityService;
+    private SecurityCommands securityCommands;
 
     private JLabel panelLabel = new JLabel("Sensor Management");
     private JLabel newSensorName = new JLabel("Name:");
@@ -25,12 +45,27 @@ public class SensorPanel extends JPanel implements StatusListener{
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
-    private JPanel sensorListPanel;
+    private JTextField nameFilterField = new JTextField();
+    private JComboBox<Object> typeFilterDropdown = new JComboBox<>();
+    private JComboBox<String> stateFilterDropdown = new JComboBox<>(new String[]{ANY_STATE, ACTIVE_STATE, INACTIVE_STATE});
+    private JButton removeSensorButton = new JButton("Remove Sensor");
+
+    private SensorTableModel sensorTableModel;
+    private TableRowSorter<SensorTableModel> sensorSorter;
+    private JTable sensorTable;
     private JPanel newSensorPanel;
+    //set while a comparison with the service's sensors is waiting to run
+    private final AtomicBoolean sensorListUpdatePending = new AtomicBoolean();
 
     @Override
     public void sensorStatusChanged(){
-        updateSensorList(sensorListPanel);
+        //a burst of changes, such as removing several sensors, is compared once
+        if (sensorListUpdatePending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                sensorListUpdatePending.set(false);
+                updateSensorList();
+            });
+        }
     }
     @Override
     public void notify(AlarmStatus status) {
@@ -39,10 +74,14 @@ public class SensorPanel extends JPanel implements StatusListener{
     public void catDetected(boolean catDetected) {
     }
 
-    public SensorPanel(SecurityService securityService) {
+    /**
+     * @param securityCommands Applies sensor changes off the event dispatch thread
+     */
+    public SensorPanel(SecurityService securityService, SecurityCommands securityCommands) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
+        this.securityCommands = securityCommands;
         securityService.addStatusListener(this);
 
 
@@ -53,14 +92,16 @@ public class SensorPanel extends JPanel implements StatusListener{
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
+        sensorTableModel = new SensorTableModel(this::setSensorActivity);
+        sensorTable = buildSensorTable();
 
-        updateSensorList(sensorListPanel);
+        updateSensorList();
 
         add(panelLabel, "wrap");
-        add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
+        add(newSensorPanel, "span, wrap");
+        add(buildFilterPanel(), "span, wrap");
+        add(new JScrollPane(sensorTable), "span, width 500:500:500, height 250:250:250, wrap");
+        add(removeSensorButton, "span");
     }
 
     /**
@@ -78,59 +119,133 @@ public class SensorPanel extends JPanel implements StatusListener{
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * Builds the sensor table, sorted by name and then type like {@link Sensor#compareTo(Sensor)}.
+     * Clicking a column header sorts by that column instead.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
+    private JTable buildSensorTable() {
+        JTable table = new JTable(sensorTableModel);
+        sensorSorter = new TableRowSorter<>(sensorTableModel);
+        //a toggled sensor moves to its new place in the sort order
+        sensorSorter.setSortsOnUpdates(true);
+        sensorSorter.setSortKeys(List.of(
+                new RowSorter.SortKey(SensorTableModel.NAME_COLUMN, SortOrder.ASCENDING),
+                new RowSorter.SortKey(SensorTableModel.TYPE_COLUMN, SortOrder.ASCENDING)));
+        table.setRowSorter(sensorSorter);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(SensorTableModel.NAME_COLUMN).setPreferredWidth(300);
+
+        removeSensorButton.setEnabled(false);
+        table.getSelectionModel().addListSelectionListener(e ->
+                removeSensorButton.setEnabled(table.getSelectedRowCount() > 0));
+        removeSensorButton.addActionListener(e -> removeSelectedSensors());
+        return table;
+    }
+
+    /**
+     * Builds the controls that narrow the table down by name, type and active state
+     */
+    private JPanel buildFilterPanel() {
+        typeFilterDropdown.addItem(ANY_TYPE);
+        for (SensorType sensorType : SensorType.values()) {
+            typeFilterDropdown.addItem(sensorType);
+        }
+        nameFilterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                updateFilter();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                updateFilter();
+            }
         });
+        typeFilterDropdown.addActionListener(e -> updateFilter());
+        stateFilterDropdown.addActionListener(e -> updateFilter());
+
+        JPanel p = new JPanel();
+        p.setLayout(new MigLayout());
+        p.add(new JLabel("Filter:"));
+        p.add(nameFilterField, "width 50:100:200");
+        p.add(typeFilterDropdown);
+        p.add(stateFilterDropdown);
+        return p;
+    }
 
-        repaint();
-        revalidate();
+    /**
+     * Applies the filter controls to the table. Only changes which rows are shown, the model is
+     * left alone.
+     */
+    private void updateFilter() {
+        List<RowFilter<SensorTableModel, Integer>> filters = new ArrayList<>();
+        String name = nameFilterField.getText().trim();
+        if (!name.isEmpty()) {
+            filters.add(RowFilter.regexFilter("(?i)" + Pattern.quote(name), SensorTableModel.NAME_COLUMN));
+        }
+        Object sensorType = typeFilterDropdown.getSelectedItem();
+        if (sensorType instanceof SensorType) {
+            filters.add(new RowFilter<>() {
+                @Override
+                public boolean include(Entry<? extends SensorTableModel, ? extends Integer> entry) {
+                    return entry.getValue(SensorTableModel.TYPE_COLUMN) == sensorType;
+                }
+            });
+        }
+        Object state = stateFilterDropdown.getSelectedItem();
+        if (!ANY_STATE.equals(state)) {
+            Boolean active = ACTIVE_STATE.equals(state);
+            filters.add(new RowFilter<>() {
+                @Override
+                public boolean include(Entry<? extends SensorTableModel, ? extends Integer> entry) {
+                    return active.equals(entry.getValue(SensorTableModel.ACTIVE_COLUMN));
+                }
+            });
+        }
+        sensorSorter.setRowFilter(filters.isEmpty() ? null : RowFilter.andFilter(filters));
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Requests the current list of sensors and updates the rows of the table that differ from it.
+     */
+    private void updateSensorList() {
+        securityCommands.getSensors().thenAccept(sensorTableModel::refresh);
+    }
+
+    /**
+     * Asks the securityService to change a sensor activation status. Only the sensor's row is
+     * updated once the change has been applied.
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
-        securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+        securityCommands.changeSensorActivationStatus(sensor, isActive)
+                .thenRun(() -> sensorTableModel.sensorChanged(sensor));
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService. The new row appears once the sensor has been added.
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
-            securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
-        } else {
-            JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
-        }
+        securityCommands.addSensor(sensor)
+                .thenRun(() -> sensorTableModel.sensorChanged(sensor));
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
-     * @param sensor The sensor to remove
+     * Removes the sensors selected in the table from the securityService, then deletes their rows
+     * one by one.
      */
-    private void removeSensor(Sensor sensor) {
-        securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+    private void removeSelectedSensors() {
+        List<Sensor> selected = new ArrayList<>();
+        for (int viewRow : sensorTable.getSelectedRows()) {
+            selected.add(sensorTableModel.getSensorAt(sensorTable.convertRowIndexToModel(viewRow)));
+        }
+        securityCommands.removeSensors(selected)
+                .thenRun(() -> selected.forEach(sensorTableModel::sensorRemoved));
     }
 }
@@ -0,0 +1,224 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Table model holding one row per sensor. Rows keep a copy of the values they display, so
+ * {@link #refresh(Collection)} can compare them with the sensors' current values and only report
+ * the rows that were added, removed or changed. The table then repaints those rows instead of the
+ * whole list. When the changed sensor is known, {@link #sensorChanged(Sensor)} and
+ * {@link #sensorRemoved(Sensor)} update its row alone without looking at the others. Must only be
+ * used on the event dispatch thread.
+ */
+final class SensorTableModel extends AbstractTableModel {
+
+    static final int NAME_COLUMN = 0;
+    static final int TYPE_COLUMN = 1;
+    static final int ACTIVE_COLUMN = 2;
+
+    private static final String[] COLUMN_NAMES = {"Name", "Type", "Active"};
+    private static final Class<?>[] COLUMN_CLASSES = {String.class, SensorType.class, Boolean.class};
+
+    //above this many removed rows one full refresh is cheaper than an event per row
+    private static final int MAX_ROW_DELETIONS = 64;
+
+    private static final class Row {
+        final Sensor sensor;
+        String name;
+        SensorType sensorType;
+        boolean active;
+        //refresh pass that last saw the sensor
+        int seen;
+
+        Row(Sensor sensor) {
+            this.sensor = sensor;
+            copyFrom(sensor);
+        }
+
+        /**
+         * @return true if any displayed value changed
+         */
+        boolean copyFrom(Sensor sensor) {
+            boolean nowActive = Boolean.TRUE.equals(sensor.getActive());
+            boolean changed = !sensor.getName().equals(name) || sensor.getSensorType() != sensorType || nowActive != active;
+            name = sensor.getName();
+            sensorType = sensor.getSensorType();
+            active = nowActive;
+            return changed;
+        }
+    }
+
+    private final List<Row> rows = new ArrayList<>();
+    private final Map<UUID, Integer> rowBySensor = new HashMap<>();
+    private final BiConsumer<Sensor, Boolean> activationHandler;
+    private int pass;
+
+    /**
+     * @param activationHandler Called when the user ticks or clears a sensor's active box. The
+     *                          row itself is left alone until the handler reports the change
+     *                          back through {@link #sensorChanged(Sensor)}, which updates that
+     *                          row only.
+     */
+    SensorTableModel(BiConsumer<Sensor, Boolean> activationHandler) {
+        this.activationHandler = activationHandler;
+    }
+
+    /**
+     * Brings the rows in line with the given sensors. Sensors already shown keep their row, new
+     * sensors are appended and sensors that are gone are removed.
+     */
+    void refresh(Collection<Sensor> sensors) {
+        pass++;
+        //rows are only appended once every update has been reported, so each event matches the row count
+        List<Sensor> added = new ArrayList<>();
+        for (Sensor sensor : sensors) {
+            Integer index = rowBySensor.get(sensor.getSensorId());
+            if (index == null) {
+                added.add(sensor);
+                continue;
+            }
+            Row row = rows.get(index);
+            row.seen = pass;
+            if (row.copyFrom(sensor)) {
+                fireTableRowsUpdated(index, index);
+            }
+        }
+        if (!added.isEmpty()) {
+            int firstInserted = rows.size();
+            for (Sensor sensor : added) {
+                Row row = new Row(sensor);
+                row.seen = pass;
+                rowBySensor.put(sensor.getSensorId(), rows.size());
+                rows.add(row);
+            }
+            fireTableRowsInserted(firstInserted, rows.size() - 1);
+        }
+        removeUnseenRows();
+    }
+
+    /**
+     * Updates the row of one sensor, or appends one if the sensor is not shown yet.
+     */
+    void sensorChanged(Sensor sensor) {
+        Integer index = rowBySensor.get(sensor.getSensorId());
+        if (index == null) {
+            Row row = new Row(sensor);
+            row.seen = pass;
+            rowBySensor.put(sensor.getSensorId(), rows.size());
+            rows.add(row);
+            fireTableRowsInserted(rows.size() - 1, rows.size() - 1);
+        } else if (rows.get(index).copyFrom(sensor)) {
+            fireTableRowsUpdated(index, index);
+        }
+    }
+
+    /**
+     * Removes the row of one sensor, if it is shown.
+     */
+    void sensorRemoved(Sensor sensor) {
+        Integer index = rowBySensor.remove(sensor.getSensorId());
+        if (index == null) {
+            return;
+        }
+        rows.remove((int) index);
+        reindex(index);
+        fireTableRowsDeleted(index, index);
+    }
+
+    private void removeUnseenRows() {
+        int removed = 0;
+        for (Row row : rows) {
+            if (row.seen != pass) {
+                removed++;
+            }
+        }
+        if (removed == 0) {
+            return;
+        }
+        if (removed > MAX_ROW_DELETIONS) {
+            rows.removeIf(row -> row.seen != pass);
+            reindex(0);
+            fireTableDataChanged();
+            return;
+        }
+        //from the back, so the indexes still to be reported are not shifted by earlier removals
+        int lowest = rows.size();
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (rows.get(i).seen != pass) {
+                rowBySensor.remove(rows.remove(i).sensor.getSensorId());
+                lowest = i;
+                fireTableRowsDeleted(i, i);
+            }
+        }
+        reindex(lowest);
+    }
+
+    private void reindex(int from) {
+        if (from == 0) {
+            rowBySensor.clear();
+        }
+        for (int i = from; i < rows.size(); i++) {
+            rowBySensor.put(rows.get(i).sensor.getSensorId(), i);
+        }
+    }
+
+    /**
+     * @param rowIndex Row in model order, see {@link javax.swing.JTable#convertRowIndexToModel(int)}
+     */
+    Sensor getSensorAt(int rowIndex) {
+        return rows.get(rowIndex).sensor;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return COLUMN_CLASSES[columnIndex];
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return columnIndex == ACTIVE_COLUMN;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Row row = rows.get(rowIndex);
+        return switch (columnIndex) {
+            case NAME_COLUMN -> row.name;
+            case TYPE_COLUMN -> row.sensorType;
+            case ACTIVE_COLUMN -> row.active;
+            default -> throw new IndexOutOfBoundsException(columnIndex);
+        };
+    }
+
+    @Override
+    public void setValueAt(Object value, int rowIndex, int columnIndex) {
+        if (columnIndex == ACTIVE_COLUMN) {
+            activationHandler.accept(rows.get(rowIndex).sensor, (Boolean) value);
+        }
+    }
+}
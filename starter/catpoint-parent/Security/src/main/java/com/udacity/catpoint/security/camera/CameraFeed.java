@@ -0,0 +1,198 @@
+package com.udacity.catpoint.security.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Plays a {@link FrameSource} at a fixed frame rate, showing every frame on a {@link FrameSink}
+ * and handing every Nth frame to a detector, for example
+ * {@link com.udacity.catpoint.security.service.SecurityService#processImageAsync(String, BufferedImage)}.
+ * <p>
+ * Frames are decoded into a small pool of images that the sink hands back once drawn, and frames
+ * for the detector are copied into a second pool that is refilled as detections complete. A
+ * steady feed therefore reuses the same few images instead of allocating one per frame. When the
+ * sink or the detector falls behind and its pool runs dry, frames are skipped rather than queued.
+ */
+public class CameraFeed implements AutoCloseable {
+
+    public static final double DEFAULT_FPS = 30;
+    public static final int DEFAULT_DETECTION_INTERVAL = 10;
+
+    //one frame being drawn, one waiting to be drawn and one being decoded
+    private static final int DISPLAY_BUFFERS = 3;
+    private static final int DETECTION_BUFFERS = 2;
+
+    private final FrameSource source;
+    private final FrameSink sink;
+    private final Function<BufferedImage, ? extends CompletionStage<?>> detector;
+    private final int detectionInterval;
+    private final long periodNanos;
+    private final BlockingQueue<BufferedImage> displayPool = new ArrayBlockingQueue<>(DISPLAY_BUFFERS);
+    private final BlockingQueue<BufferedImage> detectionPool = new ArrayBlockingQueue<>(DETECTION_BUFFERS);
+    private final ScheduledExecutorService scheduler;
+
+    //only written by the feed thread
+    private int displayBuffers;
+    private int detectionBuffers;
+    private volatile long frameCount;
+    private volatile long skippedFrameCount;
+    private volatile long detectionCount;
+    private volatile long skippedDetectionCount;
+    private volatile long errorCount;
+    private volatile boolean finished;
+
+    /**
+     * @param fps Frames per second to play
+     * @param detectionInterval Every how many frames one goes to the detector
+     * @param detector Classifies a frame; the frame is reused once the returned stage completes
+     */
+    public CameraFeed(FrameSource source, double fps, int detectionInterval, FrameSink sink,
+                      Function<BufferedImage, ? extends CompletionStage<?>> detector) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("fps must be positive");
+        }
+        if (detectionInterval < 1) {
+            throw new IllegalArgumentException("detectionInterval must be positive");
+        }
+        this.source = source;
+        this.sink = sink;
+        this.detector = detector;
+        this.detectionInterval = detectionInterval;
+        this.periodNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / fps));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catpoint-camera-feed");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        scheduler.scheduleAtFixedRate(this::tick, 0, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void tick() {
+        if (finished) {
+            return;
+        }
+        BufferedImage reuse = displayPool.poll();
+        if (reuse == null && displayBuffers == DISPLAY_BUFFERS) {
+            //the sink still holds every buffer
+            skippedFrameCount++;
+            return;
+        }
+        BufferedImage frame;
+        try {
+            frame = source.nextFrame(reuse);
+        } catch (IOException | RuntimeException e) {
+            //a damaged frame should not end the feed
+            errorCount++;
+            if (reuse != null) {
+                displayPool.offer(reuse);
+            }
+            return;
+        }
+        if (frame == null) {
+            finished = true;
+            scheduler.shutdown();
+            return;
+        }
+        if (reuse == null) {
+            displayBuffers++;
+        }
+        frameCount++;
+        if (frameCount % detectionInterval == 0) {
+            detect(frame);
+        }
+        try {
+            sink.showFrame(frame, displayPool::offer);
+        } catch (RuntimeException e) {
+            //an exception would cancel the schedule, so count it and carry on
+            errorCount++;
+            displayPool.offer(frame);
+        }
+    }
+
+    private void detect(BufferedImage frame) {
+        BufferedImage copy = detectionPool.poll();
+        if (copy == null || !copy.getColorModel().equals(frame.getColorModel())
+                || !copy.getSampleModel().equals(frame.getSampleModel())) {
+            if (copy == null && detectionBuffers == DETECTION_BUFFERS) {
+                //every copy is still being classified
+                skippedDetectionCount++;
+                return;
+            }
+            if (copy == null) {
+                detectionBuffers++;
+            }
+            copy = new BufferedImage(frame.getColorModel(), frame.getRaster().createCompatibleWritableRaster(),
+                    frame.isAlphaPremultiplied(), null);
+        }
+        frame.copyData(copy.getRaster());
+        detectionCount++;
+        BufferedImage detected = copy;
+        try {
+            detector.apply(detected).whenComplete((verdict, error) -> detectionPool.offer(detected));
+        } catch (RuntimeException e) {
+            errorCount++;
+            detectionPool.offer(detected);
+        }
+    }
+
+    /**
+     * @return true once the source has run out of frames
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return frames not decoded because the sink had not drawn the earlier ones yet
+     */
+    public long getSkippedFrameCount() {
+        return skippedFrameCount;
+    }
+
+    public long getDetectionCount() {
+        return detectionCount;
+    }
+
+    /**
+     * @return frames not sent to the detector because it was still busy with earlier ones
+     */
+    public long getSkippedDetectionCount() {
+        return skippedDetectionCount;
+    }
+
+    /**
+     * @return frames that could not be decoded or detected
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Stops the feed and closes the source. A frame being decoded is finished first.
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        source.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.udacity.catpoint.security.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Plays the JPEG and PNG files of a directory in file name order. The directory is listed again
+ * on every pass, so snapshots added while looping are picked up.
+ */
+final class DirectoryFrameSource implements FrameSource {
+
+    private final Path directory;
+    private final boolean loop;
+    private final FrameDecoder decoder = new FrameDecoder();
+    private List<Path> files = List.of();
+    private int next;
+    //file contents, grown to the largest file seen
+    private byte[] buffer = new byte[64 * 1024];
+
+    DirectoryFrameSource(Path directory, boolean loop) throws IOException {
+        this.directory = directory;
+        this.loop = loop;
+        list();
+    }
+
+    @Override
+    public BufferedImage nextFrame(BufferedImage reuse) throws IOException {
+        while (true) {
+            if (next == files.size()) {
+                if (!loop || !list()) {
+                    return null;
+                }
+            }
+            Path file = files.get(next++);
+            int length;
+            try {
+                length = read(file);
+            } catch (NoSuchFileException e) {
+                //removed since the directory was listed
+                continue;
+            }
+            return decoder.decode(buffer, length, reuse);
+        }
+    }
+
+    /**
+     * @return true if the directory holds any frames
+     */
+    private boolean list() throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.filter(DirectoryFrameSource::isFrame).sorted().forEach(found::add);
+        }
+        files = found;
+        next = 0;
+        return !found.isEmpty();
+    }
+
+    static boolean isFrame(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return (name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png")) && Files.isRegularFile(file);
+    }
+
+    /**
+     * Reads the whole file into the buffer.
+     *
+     * @return the number of bytes read
+     */
+    private int read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            int length = 0;
+            int n;
+            while ((n = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += n;
+                if (length == buffer.length) {
+                    byte[] larger = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, 0, larger, 0, length);
+                    buffer = larger;
+                }
+            }
+            return length;
+        }
+    }
+
+    @Override
+    public void close() {
+        decoder.close();
+    }
+}
@@ -0,0 +1,430 @@
+package com.udacity.catpoint.security.camera;
+
+import com.udacity.catpoint.security.service.SecurityService;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Feeds the JPEG and PNG snapshots that cameras drop into local directories to
+ * {@link SecurityService#processImage(String, BufferedImage)}, one camera per directory, for sites
+ * where nobody is there to load and scan pictures by hand.
+ * <p>
+ * One thread waits on a {@link WatchService}. A file is only taken once no change has been reported
+ * for it for the settle time and its size and modification time still match the last report, so
+ * snapshots that are still being written are left alone; a file that is reported again without
+ * having changed is skipped. Complete files are decoded on a pool of workers, while the snapshots
+ * of each directory are classified one at a time in the order they were completed. When the
+ * backlog of decoded or decoding snapshots reaches its limit, further snapshots wait on disk.
+ * <p>
+ * Call {@link #register(String)} to publish the ingestion statistics over JMX.
+ */
+public class DirectoryIngestor implements DirectoryIngestorMXBean, AutoCloseable {
+
+    public static final Duration DEFAULT_SETTLE_TIME = Duration.ofMillis(250);
+
+    //snapshots decoded or being decoded, per worker, before new ones are left waiting on disk
+    private static final int BACKLOG_PER_WORKER = 4;
+    //recently ingested snapshots remembered to recognize repeated notifications
+    private static final int REMEMBERED_SNAPSHOTS = 4096;
+    private static final int RATE_WINDOW_SECONDS = 10;
+
+    private static final String DOMAIN = "com.udacity.catpoint";
+
+    /**
+     * A watched directory. Its snapshots are classified in the order of its chain.
+     */
+    private static final class Camera {
+        final Path directory;
+        final String cameraId;
+        //only touched by the watcher thread
+        CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        Camera(Path directory, String cameraId) {
+            this.directory = directory;
+            this.cameraId = cameraId;
+        }
+    }
+
+    /**
+     * A snapshot that has been reported but not yet taken.
+     */
+    private static final class Candidate {
+        final Camera camera;
+        long lastEventNanos;
+        long size;
+        long modified;
+
+        Candidate(Camera camera) {
+            this.camera = camera;
+        }
+    }
+
+    private final SecurityService securityService;
+    private final WatchService watchService;
+    private final ExecutorService workers;
+    private final ThreadLocal<FrameDecoder> decoders = ThreadLocal.withInitial(FrameDecoder::new);
+    private final long settleNanos;
+    private final int maxInFlight;
+    //a directory is registered and its camera put under this map's lock, so the watcher thread
+    //never sees events for a key whose camera is not there yet
+    private final Map<WatchKey, Camera> cameras = new ConcurrentHashMap<>();
+    private final Thread watcher;
+
+    //only touched by the watcher thread
+    private final Map<Path, Candidate> candidates = new LinkedHashMap<>();
+    private final Map<String, Boolean> ingested = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > REMEMBERED_SNAPSHOTS;
+        }
+    };
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int waiting;
+    private final LongAdder ingestedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder duplicateCount = new LongAdder();
+    private final LongAdder overflowCount = new LongAdder();
+    //ingested snapshots per second of the last few seconds, guarded by itself
+    private final long[] rateBuckets = new long[RATE_WINDOW_SECONDS];
+    private final long[] rateBucketSeconds = new long[RATE_WINDOW_SECONDS];
+    private volatile boolean closed;
+    private ObjectName registeredName;
+
+    public DirectoryIngestor(SecurityService securityService) throws IOException {
+        this(securityService, Runtime.getRuntime().availableProcessors(), DEFAULT_SETTLE_TIME);
+    }
+
+    /**
+     * @param concurrency Snapshots decoded at once, over all directories
+     * @param settleTime How long a snapshot must go unchanged before it is taken
+     */
+    public DirectoryIngestor(SecurityService securityService, int concurrency, Duration settleTime) throws IOException {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        if (settleTime.isNegative()) {
+            throw new IllegalArgumentException("settleTime must not be negative");
+        }
+        this.securityService = securityService;
+        this.settleNanos = settleTime.toNanos();
+        this.maxInFlight = concurrency * BACKLOG_PER_WORKER;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "catpoint-ingest-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.watcher = new Thread(this::run, "catpoint-ingest-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /**
+     * Starts passing the snapshots that appear in the directory to the given camera. Snapshots
+     * already there are left alone.
+     */
+    public void watch(Path directory, String cameraId) throws IOException {
+        synchronized (cameras) {
+            WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            cameras.put(key, new Camera(directory, cameraId));
+        }
+    }
+
+    private void run() {
+        long pollMillis = Math.max(10, TimeUnit.NANOSECONDS.toMillis(settleNanos) / 2);
+        try {
+            while (!closed) {
+                WatchKey key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    handle(key);
+                    key = watchService.poll();
+                }
+                takeSettled();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            //closed
+        }
+    }
+
+    private void handle(WatchKey key) {
+        Camera camera;
+        synchronized (cameras) {
+            camera = cameras.get(key);
+        }
+        if (camera == null) {
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowCount.increment();
+                rescan(camera);
+            } else {
+                noteChange(camera, camera.directory.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            //the directory is gone
+            cameras.remove(key);
+        }
+    }
+
+    /**
+     * Records a reported change with the file's size and modification time at that moment.
+     */
+    private void noteChange(Camera camera, Path file) {
+        if (!DirectoryFrameSource.isFrame(file)) {
+            return;
+        }
+        Candidate candidate = candidates.computeIfAbsent(file, f -> new Candidate(camera));
+        candidate.lastEventNanos = System.nanoTime();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            candidate.size = attributes.size();
+            candidate.modified = attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            candidates.remove(file);
+        }
+        waiting = candidates.size();
+    }
+
+    /**
+     * Treats every snapshot in the directory as reported, after the watch service dropped events.
+     * Snapshots that were already ingested are recognized as duplicates.
+     */
+    private void rescan(Camera camera) {
+        try (Stream<Path> files = Files.list(camera.directory)) {
+            files.sorted().forEach(file -> noteChange(camera, file));
+        } catch (IOException e) {
+            failedCount.increment();
+        }
+    }
+
+    /**
+     * Takes the snapshots that have settled, in the order they were first reported.
+     */
+    private void takeSettled() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Candidate>> it = candidates.entrySet().iterator();
+        while (it.hasNext() && inFlight.get() < maxInFlight) {
+            Map.Entry<Path, Candidate> entry = it.next();
+            Path file = entry.getKey();
+            Candidate candidate = entry.getValue();
+            if (now - candidate.lastEventNanos < settleNanos) {
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                //deleted or renamed before it settled
+                it.remove();
+                continue;
+            }
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (size == 0 || size != candidate.size || modified != candidate.modified) {
+                //still being written, even if no change was reported
+                candidate.size = size;
+                candidate.modified = modified;
+                candidate.lastEventNanos = now;
+                continue;
+            }
+            it.remove();
+            if (ingested.put(file + "|" + size + "|" + modified, Boolean.TRUE) != null) {
+                duplicateCount.increment();
+                continue;
+            }
+            submit(candidate.camera, file);
+        }
+        waiting = candidates.size();
+    }
+
+    /**
+     * Decodes the snapshot on a worker and chains its classification behind the camera's
+     * previous snapshot.
+     */
+    private void submit(Camera camera, Path file) {
+        inFlight.incrementAndGet();
+        CompletableFuture<BufferedImage> decoded = CompletableFuture.supplyAsync(() -> decode(file), workers)
+                .exceptionally(e -> null);
+        camera.tail = camera.tail.thenCombine(decoded, (previous, image) -> image)
+                .thenAccept(image -> {
+                    boolean scanned = false;
+                    try {
+                        if (image != null) {
+                            securityService.processImage(camera.cameraId, image);
+                            scanned = true;
+                        }
+                    } catch (RuntimeException e) {
+                        //counted as failed below
+                    }
+                    //leave the backlog before counting, so a reader never sees the snapshot in both
+                    inFlight.decrementAndGet();
+                    if (scanned) {
+                        ingestedCount.increment();
+                        countIngested();
+                    } else {
+                        failedCount.increment();
+                    }
+                });
+    }
+
+    private BufferedImage decode(Path file) {
+        try {
+            byte[] data = Files.readAllBytes(file);
+            return decoders.get().decode(data, data.length, null);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void countIngested() {
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        int bucket = (int) (second % RATE_WINDOW_SECONDS);
+        synchronized (rateBuckets) {
+            if (rateBucketSeconds[bucket] != second) {
+                rateBucketSeconds[bucket] = second;
+                rateBuckets[bucket] = 0;
+            }
+            rateBuckets[bucket]++;
+        }
+    }
+
+    @Override
+    public long getIngestedCount() {
+        return ingestedCount.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    @Override
+    public long getDuplicateCount() {
+        return duplicateCount.sum();
+    }
+
+    @Override
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    @Override
+    public int getBacklog() {
+        return waiting + inFlight.get();
+    }
+
+    @Override
+    public double getIngestRate() {
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long total = 0;
+        synchronized (rateBuckets) {
+            //the current second is still filling up, so it is left out
+            for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+                long age = second - rateBucketSeconds[i];
+                if (age > 0 && age < RATE_WINDOW_SECONDS) {
+                    total += rateBuckets[i];
+                }
+            }
+        }
+        return (double) total / (RATE_WINDOW_SECONDS - 1);
+    }
+
+    @Override
+    public Map<String, String> getWatchedDirectories() {
+        Map<String, String> watched = new TreeMap<>();
+        cameras.values().forEach(camera -> watched.put(camera.directory.toString(), camera.cameraId));
+        return watched;
+    }
+
+    /**
+     * Registers the statistics with the platform MBean server under
+     * {@code com.udacity.catpoint:type=DirectoryIngestor,name=<name>}.
+     *
+     * @return the name the statistics were registered under
+     */
+    public synchronized ObjectName register(String name) {
+        unregister();
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=DirectoryIngestor,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            registeredName = objectName;
+            return objectName;
+        } catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException
+                 | NotCompliantMBeanException e) {
+            throw new IllegalStateException("Could not register ingestion statistics as " + name, e);
+        }
+    }
+
+    /**
+     * Removes the statistics from the platform MBean server, if they were registered.
+     */
+    public synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (InstanceNotFoundException e) {
+            //already gone
+        } catch (MBeanRegistrationException e) {
+            throw new IllegalStateException("Could not unregister " + registeredName, e);
+        }
+        registeredName = null;
+    }
+
+    /**
+     * Stops watching. Snapshots already taken are still classified; the rest are left on disk.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+        try {
+            watcher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        unregister();
+    }
+}
@@ -0,0 +1,44 @@
+package com.udacity.catpoint.security.camera;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link DirectoryIngestor}, as seen from JConsole or any other JMX client.
+ */
+public interface DirectoryIngestorMXBean {
+
+    /**
+     * @return snapshots passed to the security service
+     */
+    long getIngestedCount();
+
+    /**
+     * @return snapshots that could not be read, decoded or classified
+     */
+    long getFailedCount();
+
+    /**
+     * @return change notifications for snapshots that had already been ingested unchanged
+     */
+    long getDuplicateCount();
+
+    /**
+     * @return times the watch service lost events and the directory had to be scanned
+     */
+    long getOverflowCount();
+
+    /**
+     * @return snapshots seen but not yet passed to the security service
+     */
+    int getBacklog();
+
+    /**
+     * @return snapshots ingested per second, averaged over the last few seconds
+     */
+    double getIngestRate();
+
+    /**
+     * @return the camera id of each watched directory, keyed by directory
+     */
+    Map<String, String> getWatchedDirectories();
+}
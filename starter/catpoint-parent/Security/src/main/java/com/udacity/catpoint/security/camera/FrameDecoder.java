@@ -0,0 +1,191 @@
+package com.udacity.catpoint.security.camera;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Decodes encoded frames held in a byte array, keeping one JPEG and one PNG reader for the life
+ * of the decoder and decoding into a caller supplied image where possible. Not thread safe.
+ * <p>
+ * Color JPEG frames come out as {@link BufferedImage#TYPE_3BYTE_BGR}, which Java2D scales
+ * quickly. The JPEG reader only fills such an image through a temporary copy of the whole frame,
+ * though, so they are decoded into a scratch image in the decoder's own RGB byte order, which
+ * it fills directly, and then copied across with the channels swapped.
+ */
+final class FrameDecoder implements AutoCloseable {
+
+    private static final ColorModel RGB = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+            false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+
+    private ImageReader jpegReader;
+    private ImageReader pngReader;
+    //JPEG decoding target in the reader's native byte order, replaced only when the frame size changes
+    private BufferedImage scratch;
+
+    /**
+     * @param reuse Image to decode into if it has the frame's size and type, or null
+     * @return the decoded frame
+     */
+    BufferedImage decode(byte[] data, int length, BufferedImage reuse) throws IOException {
+        ImageReader reader = readerFor(data, length);
+        boolean cached = reader == jpegReader || reader == pngReader;
+        try {
+            try (ImageInputStream in = new ByteArrayImageInputStream(data, length)) {
+                reader.setInput(in, true, true);
+                if (reader == jpegReader) {
+                    BufferedImage frame = decodeColorJpeg(reuse);
+                    if (frame != null) {
+                        return frame;
+                    }
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (reuse != null && reuse.getWidth() == reader.getWidth(0) && reuse.getHeight() == reader.getHeight(0)) {
+                    param.setDestination(reuse);
+                    try {
+                        return reader.read(0, param);
+                    } catch (IllegalArgumentException | IIOException e) {
+                        //the reused image has the wrong layout for this frame, decode into a new one below
+                    }
+                }
+            }
+            try (ImageInputStream in = new ByteArrayImageInputStream(data, length)) {
+                reader.setInput(in, true, true);
+                return reader.read(0);
+            }
+        } finally {
+            reader.setInput(null);
+            if (!cached) {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decodes a color JPEG through the scratch image.
+     *
+     * @return the frame, or null if it is not a plain three channel JPEG
+     */
+    private BufferedImage decodeColorJpeg(BufferedImage reuse) throws IOException {
+        ImageTypeSpecifier type = jpegReader.getRawImageType(0);
+        if (type == null || type.getBufferedImageType() != BufferedImage.TYPE_3BYTE_BGR) {
+            return null;
+        }
+        int width = jpegReader.getWidth(0);
+        int height = jpegReader.getHeight(0);
+        if (scratch == null || scratch.getWidth() != width || scratch.getHeight() != height) {
+            scratch = new BufferedImage(RGB, Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, width, height,
+                    width * 3, 3, new int[]{0, 1, 2}, null), false, null);
+        }
+        ImageReadParam param = jpegReader.getDefaultReadParam();
+        param.setDestination(scratch);
+        jpegReader.read(0, param);
+
+        BufferedImage frame = reuse;
+        if (frame == null || frame.getType() != BufferedImage.TYPE_3BYTE_BGR || frame.getWidth() != width
+                || frame.getHeight() != height || frame.getRaster().getParent() != null) {
+            frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        }
+        byte[] rgb = ((DataBufferByte) scratch.getRaster().getDataBuffer()).getData();
+        byte[] bgr = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < rgb.length; i += 3) {
+            bgr[i] = rgb[i + 2];
+            bgr[i + 1] = rgb[i + 1];
+            bgr[i + 2] = rgb[i];
+        }
+        return frame;
+    }
+
+    /**
+     * Picks the reader by the frame's leading bytes, so the common formats skip the service lookup.
+     */
+    private ImageReader readerFor(byte[] data, int length) throws IOException {
+        if (length >= 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8) {
+            if (jpegReader == null) {
+                jpegReader = ImageIO.getImageReadersByFormatName("jpeg").next();
+            }
+            return jpegReader;
+        }
+        if (length >= 4 && (data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G') {
+            if (pngReader == null) {
+                pngReader = ImageIO.getImageReadersByFormatName("png").next();
+            }
+            return pngReader;
+        }
+        try (ImageInputStream in = new ByteArrayImageInputStream(data, length)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IIOException("Unsupported frame format");
+            }
+            return readers.next();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (jpegReader != null) {
+            jpegReader.dispose();
+        }
+        if (pngReader != null) {
+            pngReader.dispose();
+        }
+    }
+
+    /**
+     * Reads straight from the frame's bytes, where the stock streams would copy them into a cache first.
+     */
+    private static final class ByteArrayImageInputStream extends ImageInputStreamImpl {
+        private final byte[] data;
+        private final int length;
+
+        ByteArrayImageInputStream(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (streamPos >= length) {
+                return -1;
+            }
+            return data[(int) streamPos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (len == 0) {
+                return 0;
+            }
+            int available = (int) Math.min(len, length - streamPos);
+            if (available <= 0) {
+                return -1;
+            }
+            System.arraycopy(data, (int) streamPos, b, off, available);
+            streamPos += available;
+            return available;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.udacity.catpoint.security.camera;
+
+import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
+
+/**
+ * Displays the frames of a {@link CameraFeed}.
+ */
+public interface FrameSink {
+
+    /**
+     * Takes a frame for display. May be called from any thread and should return quickly.
+     *
+     * @param release Must be given the frame back once the sink no longer reads it, including
+     *                frames it decides not to draw, so the feed can decode a later frame into it.
+     *                The feed pauses while the sink holds all of its frames.
+     */
+    void showFrame(BufferedImage frame, Consumer<BufferedImage> release);
+}
@@ -0,0 +1,38 @@
+package com.udacity.catpoint.security.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A local stream of camera frames, such as a directory of snapshots or a recorded MJPEG file.
+ * Not thread safe; a source is read by one thread at a time.
+ */
+public interface FrameSource extends AutoCloseable {
+
+    /**
+     * Decodes the next frame.
+     *
+     * @param reuse An image returned by an earlier call that is no longer in use, or null. The
+     *              frame is decoded into it when it has the right size and type, so a steady
+     *              stream of frames does not allocate a new image each time.
+     * @return the frame, which may or may not be {@code reuse}, or null once the source is exhausted
+     */
+    BufferedImage nextFrame(BufferedImage reuse) throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Opens a directory of JPEG or PNG snapshots, played in file name order, or an MJPEG file.
+     *
+     * @param loop Start over once the last frame has been read, instead of ending the stream
+     */
+    static FrameSource open(Path source, boolean loop) throws IOException {
+        if (Files.isDirectory(source)) {
+            return new DirectoryFrameSource(source, loop);
+        }
+        return new MjpegFrameSource(source, loop);
+    }
+}
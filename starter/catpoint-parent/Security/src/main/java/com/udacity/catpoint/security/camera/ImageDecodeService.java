@@ -0,0 +1,135 @@
+package com.udacity.catpoint.security.camera;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes pictures on background threads at the resolution they are needed at, rather than at the
+ * camera's full resolution. The reader is asked to skip rows and columns as it decodes, so a
+ * 12 megapixel snapshot bound for a 300x225 view never exists in memory at full size, and it can
+ * be told to decode only part of the picture.
+ * <p>
+ * Subsampling only ever skips whole rows and columns, so the pictures come out at least as large
+ * as requested and at most about twice that; callers scale them the rest of the way.
+ */
+public class ImageDecodeService implements AutoCloseable {
+
+    /**
+     * Smallest size pictures are decoded at for image analysis. Classifiers work on far fewer
+     * pixels than a camera takes.
+     */
+    public static final int ANALYSIS_WIDTH = 640;
+    public static final int ANALYSIS_HEIGHT = 480;
+
+    private final ExecutorService executor;
+
+    public ImageDecodeService() {
+        this(2);
+    }
+
+    /**
+     * @param threads Pictures decoded at once
+     */
+    public ImageDecodeService(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "catpoint-decode-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Decodes a picture for display in a view of the given size.
+     */
+    public CompletableFuture<BufferedImage> thumbnail(Path file, int width, int height) {
+        return decode(file, width, height, null);
+    }
+
+    /**
+     * Decodes a picture at the resolution used for image analysis,
+     * {@value #ANALYSIS_WIDTH}x{@value #ANALYSIS_HEIGHT} or a little more.
+     */
+    public CompletableFuture<BufferedImage> forAnalysis(Path file) {
+        return decode(file, ANALYSIS_WIDTH, ANALYSIS_HEIGHT, null);
+    }
+
+    /**
+     * Decodes part of a picture on a background thread, see {@link #read(Path, int, int, Rectangle)}.
+     *
+     * @return the picture, or a future failed with an {@link IOException} if it cannot be read
+     */
+    public CompletableFuture<BufferedImage> decode(Path file, int width, int height, Rectangle region) {
+        CompletableFuture<BufferedImage> picture = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                picture.complete(read(file, width, height, region));
+            } catch (IOException | RuntimeException e) {
+                picture.completeExceptionally(e);
+            }
+        });
+        return picture;
+    }
+
+    /**
+     * Decodes a picture on the calling thread, skipping as many rows and columns as it can while
+     * keeping the result at least the given size.
+     *
+     * @param region Part of the picture to decode, in full resolution pixels, or null for all of it
+     * @return the picture
+     * @throws IOException if the file is missing, in a format without a reader, or damaged
+     */
+    public static BufferedImage read(Path file, int width, int height, Rectangle region) throws IOException {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("width and height must be positive");
+        }
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) {
+                throw new NoSuchFileException(file.toString());
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IIOException("Unsupported image format: " + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                Rectangle source = new Rectangle(0, 0, reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (region != null) {
+                    source = source.intersection(region);
+                    if (source.isEmpty()) {
+                        throw new IllegalArgumentException("region " + region + " lies outside the picture");
+                    }
+                    param.setSourceRegion(source);
+                }
+                int subsampling = Math.max(1, Math.min(source.width / width, source.height / height));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Stops the decoding threads. Pictures not yet started are discarded.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
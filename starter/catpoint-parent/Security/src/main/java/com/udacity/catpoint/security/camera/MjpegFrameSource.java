@@ -0,0 +1,212 @@
+package com.udacity.catpoint.security.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Plays a Motion JPEG file: JPEG images back to back, optionally with multipart headers between
+ * them as saved from a camera's HTTP stream. Anything between one image's end and the next
+ * image's start marker is skipped.
+ * <p>
+ * Images are cut out by walking their marker segments rather than searching for the end marker,
+ * since an embedded EXIF thumbnail carries an end marker of its own. An image with a damaged
+ * segment header is skipped, and playback picks up again at the next start marker.
+ */
+final class MjpegFrameSource implements FrameSource {
+
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+    private static final int TEM = 0x01;
+    private static final int RST0 = 0xD0;
+    private static final int RST7 = 0xD7;
+
+    private final Path file;
+    private final boolean loop;
+    private final FrameDecoder decoder = new FrameDecoder();
+    private InputStream in;
+    //current image, grown to the largest image seen
+    private byte[] frame = new byte[64 * 1024];
+    private int length;
+
+    /**
+     * The current image cannot be walked any further, but the stream itself is still readable.
+     */
+    private static final class CorruptImageException extends IOException {
+        CorruptImageException(String message) {
+            super(message);
+        }
+    }
+
+    MjpegFrameSource(Path file, boolean loop) throws IOException {
+        this.file = file;
+        this.loop = loop;
+        this.in = open();
+    }
+
+    private InputStream open() throws IOException {
+        return new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+    }
+
+    @Override
+    public BufferedImage nextFrame(BufferedImage reuse) throws IOException {
+        if (!readFrame()) {
+            if (!loop) {
+                return null;
+            }
+            in.close();
+            in = open();
+            //a file without a single complete image would otherwise be reopened forever
+            if (!readFrame()) {
+                return null;
+            }
+        }
+        return decoder.decode(frame, length, reuse);
+    }
+
+    /**
+     * Copies the next complete image into the frame buffer, skipping damaged ones.
+     *
+     * @return false at the end of the file
+     */
+    private boolean readFrame() throws IOException {
+        while (skipToStartOfImage()) {
+            try {
+                copyImage();
+                return true;
+            } catch (CorruptImageException e) {
+                //resynchronize on the next start marker
+            } catch (EOFException e) {
+                //image cut short, the file is still being written or was truncated
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the image whose start marker was just read into the frame buffer.
+     */
+    private void copyImage() throws IOException {
+        length = 0;
+        put(0xFF);
+        put(SOI);
+        int marker = nextMarker();
+        while (true) {
+            put(0xFF);
+            put(marker);
+            if (marker == EOI) {
+                return;
+            }
+            if (marker == TEM || (marker >= RST0 && marker <= RST7)) {
+                marker = nextMarker();
+                continue;
+            }
+            int high = readByte();
+            int low = readByte();
+            put(high);
+            put(low);
+            copy(((high << 8) | low) - 2);
+            marker = marker == SOS ? copyScan() : nextMarker();
+        }
+    }
+
+    /**
+     * @return false if the stream ended before another image started
+     */
+    private boolean skipToStartOfImage() throws IOException {
+        int previous = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (previous == 0xFF && b == SOI) {
+                return true;
+            }
+            previous = b;
+        }
+        return false;
+    }
+
+    /**
+     * Reads up to the next marker, skipping fill bytes.
+     *
+     * @return the marker code
+     */
+    private int nextMarker() throws IOException {
+        int b = readByte();
+        while (b != 0xFF) {
+            b = readByte();
+        }
+        while (b == 0xFF) {
+            b = readByte();
+        }
+        return b;
+    }
+
+    /**
+     * Copies entropy coded scan data, in which 0xFF is followed by a zero byte or a restart marker.
+     *
+     * @return the marker that ends the scan
+     */
+    private int copyScan() throws IOException {
+        while (true) {
+            int b = readByte();
+            if (b != 0xFF) {
+                put(b);
+                continue;
+            }
+            int next = readByte();
+            while (next == 0xFF) {
+                next = readByte();
+            }
+            if (next == 0 || (next >= RST0 && next <= RST7)) {
+                put(0xFF);
+                put(next);
+                continue;
+            }
+            return next;
+        }
+    }
+
+    private void copy(int count) throws IOException {
+        if (count < 0) {
+            throw new CorruptImageException("Bad segment length");
+        }
+        ensureCapacity(count);
+        if (in.readNBytes(frame, length, count) < count) {
+            throw new EOFException();
+        }
+        length += count;
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private void put(int b) {
+        ensureCapacity(1);
+        frame[length++] = (byte) b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > frame.length) {
+            byte[] larger = new byte[Math.max(frame.length * 2, length + extra)];
+            System.arraycopy(frame, 0, larger, 0, length);
+            frame = larger;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        decoder.close();
+        in.close();
+    }
+}
@@ -0,0 +1,83 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Repository that only keeps state in memory. Nothing survives a restart, which makes it handy
+ * for tests, benchmarks and replaying recorded traffic. Safe for use from multiple threads.
+ */
+public class InMemorySecurityRepositoryImpl implements SecurityRepository {
+
+    private final SensorIndex sensors = new SensorIndex();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    @Override
+    public synchronized boolean addSensor(Sensor sensor) {
+        return sensors.put(sensor);
+    }
+
+    @Override
+    public synchronized boolean removeSensor(Sensor sensor) {
+        return sensors.remove(sensor.getSensorId()) != null;
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.put(sensor);
+    }
+
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> sensors) {
+        for (Sensor sensor : sensors) {
+            if (this.sensors.get(sensor.getSensorId()) != null) {
+                this.sensors.put(sensor);
+            }
+        }
+    }
+
+    @Override
+    public synchronized Sensor findSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public synchronized void updateSensorActive(UUID sensorId, boolean active) {
+        Sensor sensor = sensors.get(sensorId);
+        if (sensor != null) {
+            sensor.setActive(active);
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    /**
+     * @return a copy of the sensors in display order, so callers can iterate while other threads write
+     */
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(sensors.sortedView()));
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+}
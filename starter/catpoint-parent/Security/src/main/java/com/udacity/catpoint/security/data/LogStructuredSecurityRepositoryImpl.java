@@ -0,0 +1,386 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Repository that keeps its state in memory and persists every change as a small record appended
+ * to a write-ahead log on local disk. Once enough records have piled up, the log is compacted into
+ * a snapshot file holding only the current state, and the log is truncated.
+ * <p>
+ * On startup the snapshot is memory-mapped and replayed, followed by whatever is left in the log.
+ * Each record carries a CRC32 checksum, so a record that was only partially written when the
+ * process died is detected and cut off instead of corrupting the state.
+ * <p>
+ * Record layout: {@code [int payloadLength][int crc32(payload)][payload]}, where the payload starts
+ * with a one-byte operation code. Sensors and statuses are encoded with the {@link SensorCodec}.
+ * Logs and version 1 snapshots written before that, which hold sensors as JSON, are still read,
+ * and are rewritten in the binary format on the next compaction.
+ * <p>
+ * Safe for use from multiple threads.
+ */
+public class LogStructuredSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
+
+    private static final String LOG_FILE = "security.log";
+    private static final String SNAPSHOT_FILE = "security.snapshot";
+
+    private static final int SNAPSHOT_MAGIC = 0x43505353; // "CPSS"
+    //version 1 replays records; version 2 holds a single record with the statuses and a sensor table
+    private static final int SNAPSHOT_VERSION_RECORDS = 1;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_LENGTH = 8;
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int MAX_RECORD_LENGTH = 1 << 24;
+
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+
+    //record operation codes; the JSON and name based ones are only read, to load older files
+    private static final byte PUT_SENSOR_JSON = 1;
+    private static final byte REMOVE_SENSOR = 2;
+    private static final byte SET_ALARM_STATUS_NAME = 3;
+    private static final byte SET_ARMING_STATUS_NAME = 4;
+    private static final byte PUT_SENSOR = 5;
+    private static final byte SET_ALARM_STATUS = 6;
+    private static final byte SET_ARMING_STATUS = 7;
+    private static final byte SNAPSHOT = 8;
+
+    private static final Gson gson = new Gson(); //only used to read sensors written by older versions
+
+    private final Path logPath;
+    private final Path snapshotPath;
+    private final int compactionThreshold;
+    private final boolean syncWrites;
+    private final CRC32 crc = new CRC32();
+
+    private final SensorIndex sensors = new SensorIndex();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    private FileChannel log;
+    private int recordsSinceCompaction;
+
+    public LogStructuredSecurityRepositoryImpl(Path directory) {
+        this(directory, DEFAULT_COMPACTION_THRESHOLD, false);
+    }
+
+    /**
+     * @param directory Directory holding the log and snapshot files. Created if missing.
+     * @param compactionThreshold Number of appended records after which the log is folded into a new snapshot
+     * @param syncWrites True to force every append to the storage device before returning
+     */
+    public LogStructuredSecurityRepositoryImpl(Path directory, int compactionThreshold, boolean syncWrites) {
+        this.logPath = directory.resolve(LOG_FILE);
+        this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        this.compactionThreshold = compactionThreshold;
+        this.syncWrites = syncWrites;
+        try {
+            Files.createDirectories(directory);
+            loadSnapshot();
+            log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replayLog();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open security log in " + directory, ioe);
+        }
+    }
+
+    @Override
+    public synchronized boolean addSensor(Sensor sensor) {
+        boolean added = sensors.put(sensor);
+        append(putSensor(sensor));
+        return added;
+    }
+
+    @Override
+    public synchronized boolean removeSensor(Sensor sensor) {
+        if (sensors.remove(sensor.getSensorId()) == null) {
+            return false;
+        }
+        append(removeSensorRecord(sensor.getSensorId()));
+        return true;
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.put(sensor);
+        append(putSensor(sensor));
+    }
+
+    /**
+     * Appends one record per sensor, but hands them all to the file system in a single write.
+     */
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> sensors) {
+        List<ByteBuffer> records = new ArrayList<>(sensors.size());
+        for (Sensor sensor : sensors) {
+            if (this.sensors.get(sensor.getSensorId()) != null) {
+                this.sensors.put(sensor);
+                records.add(putSensor(sensor));
+            }
+        }
+        if (!records.isEmpty()) {
+            append(records);
+        }
+    }
+
+    @Override
+    public synchronized Sensor findSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public synchronized void updateSensorActive(UUID sensorId, boolean active) {
+        Sensor sensor = sensors.get(sensorId);
+        if (sensor != null) {
+            sensor.setActive(active);
+            append(putSensor(sensor));
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        append(statusRecord(SET_ALARM_STATUS, alarmStatus));
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        append(statusRecord(SET_ARMING_STATUS, armingStatus));
+    }
+
+    /**
+     * @return a copy of the sensors in display order, so callers can iterate while other threads write
+     */
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(sensors.sortedView()));
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Writes the current state to a fresh snapshot and truncates the log. The snapshot is written
+     * to a temporary file and moved into place, so a crash part way through leaves the previous
+     * snapshot and log intact.
+     */
+    public synchronized void compact() {
+        Path tmp = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_LENGTH).putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION);
+            writeFully(out, header.flip());
+            byte[] sensorTable = SensorCodec.encodeSensors(sensors.sortedView());
+            ByteBuffer snapshot = ByteBuffer.allocate(3 + sensorTable.length)
+                    .put(SNAPSHOT)
+                    .put((byte) alarmStatus.ordinal())
+                    .put((byte) armingStatus.ordinal())
+                    .put(sensorTable);
+            writeFully(out, frame(snapshot.flip()));
+            out.force(true);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to write security snapshot", ioe);
+        }
+        try {
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.truncate(0);
+            log.position(0);
+            recordsSinceCompaction = 0;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to install security snapshot", ioe);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            log.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    private void loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+        try (FileChannel in = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (buffer.remaining() < SNAPSHOT_HEADER_LENGTH || buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a security snapshot: " + snapshotPath);
+            }
+            int version = buffer.getInt();
+            if (version != SNAPSHOT_VERSION && version != SNAPSHOT_VERSION_RECORDS) {
+                throw new IOException("Unsupported security snapshot version " + version);
+            }
+            if (replay(buffer) != buffer.limit()) {
+                throw new IOException("Corrupt security snapshot: " + snapshotPath);
+            }
+        }
+        recordsSinceCompaction = 0;
+    }
+
+    /**
+     * Replays the log on top of the snapshot state and cuts off a torn or corrupt tail. The log is
+     * read rather than mapped, as it must not be truncated while a mapping of it may still be live.
+     */
+    private void replayLog() throws IOException {
+        long size = log.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Security log too large to replay: " + size + " bytes");
+        }
+        if (size > 0) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            readFully(log, buffer);
+            int end = replay(buffer.flip());
+            if (end < size) {
+                log.truncate(end);
+            }
+        }
+        log.position(log.size());
+    }
+
+    /**
+     * Applies every intact record from the buffer's position onward.
+     *
+     * @return the offset just past the last intact record
+     */
+    private int replay(ByteBuffer buffer) throws IOException {
+        while (buffer.remaining() >= RECORD_HEADER_LENGTH) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > MAX_RECORD_LENGTH || length > buffer.remaining()) {
+                return start;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                return start;
+            }
+            apply(payload);
+            buffer.position(buffer.position() + length);
+            recordsSinceCompaction++;
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Applies one record. A record whose checksum matched but whose content cannot be decoded was
+     * written that way, so it fails the load instead of being cut off like a torn record.
+     */
+    private void apply(ByteBuffer payload) throws IOException {
+        switch (payload.get()) {
+            case PUT_SENSOR -> sensors.put(SensorCodec.getSensor(payload));
+            case REMOVE_SENSOR -> sensors.remove(new UUID(payload.getLong(), payload.getLong()));
+            case SET_ALARM_STATUS -> alarmStatus = SensorCodec.alarmStatus(payload.get());
+            case SET_ARMING_STATUS -> armingStatus = SensorCodec.armingStatus(payload.get());
+            case SNAPSHOT -> {
+                alarmStatus = SensorCodec.alarmStatus(payload.get());
+                armingStatus = SensorCodec.armingStatus(payload.get());
+                for (Sensor sensor : SensorCodec.decodeSensors(payload)) {
+                    sensors.put(sensor);
+                }
+            }
+            case PUT_SENSOR_JSON -> {
+                Sensor sensor = gson.fromJson(StandardCharsets.UTF_8.decode(payload).toString(), Sensor.class);
+                sensors.put(sensor);
+            }
+            case SET_ALARM_STATUS_NAME -> alarmStatus = AlarmStatus.valueOf(StandardCharsets.UTF_8.decode(payload).toString());
+            case SET_ARMING_STATUS_NAME -> armingStatus = ArmingStatus.valueOf(StandardCharsets.UTF_8.decode(payload).toString());
+            default -> {
+                //unknown operation, written by a newer version. Skip it rather than fail the whole load
+            }
+        }
+    }
+
+    private void append(ByteBuffer payload) {
+        append(List.of(payload));
+    }
+
+    private void append(List<ByteBuffer> payloads) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] records = new ByteBuffer[payloads.size()];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = frame(payloads.get(i));
+        }
+        try {
+            while (records[records.length - 1].hasRemaining()) {
+                log.write(records);
+            }
+            if (syncWrites) {
+                log.force(false);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to append to security log", ioe);
+        }
+        recordsSinceCompaction += records.length;
+        if (recordsSinceCompaction >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    private ByteBuffer frame(ByteBuffer payload) {
+        crc.reset();
+        crc.update(payload.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + payload.remaining());
+        record.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload);
+        return record.flip();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            //the file cannot shrink while it is being replayed, so this ends once the buffer is full
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer putSensor(Sensor sensor) {
+        ByteBuffer record = ByteBuffer.allocate(1 + SensorCodec.sensorLength(sensor)).put(PUT_SENSOR);
+        return SensorCodec.putSensor(record, sensor).flip();
+    }
+
+    private static ByteBuffer removeSensorRecord(UUID sensorId) {
+        return ByteBuffer.allocate(1 + 2 * Long.BYTES).put(REMOVE_SENSOR)
+                .putLong(sensorId.getMostSignificantBits())
+                .putLong(sensorId.getLeastSignificantBits())
+                .flip();
+    }
+
+    private static ByteBuffer statusRecord(byte operation, Enum<?> value) {
+        return ByteBuffer.allocate(2).put(operation).put((byte) value.ordinal()).flip();
+    }
+}
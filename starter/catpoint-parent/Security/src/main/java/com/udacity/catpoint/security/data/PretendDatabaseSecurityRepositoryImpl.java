@@ -3,29 +3,46 @@ package com.udacity.catpoint.security.data;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.UUID;
 import java.util.prefs.Preferences;
 
 /**
  * Fake repository implementation for demo purposes. Stores state information in local
  * memory and writes it to user preferences between app loads. This implementation is
  * intentionally a little hard to use in unit tests, so watch out!
+ * <p>
+ * Sensors are stored as a {@link SensorCodec} sensor table. A preference value is limited in
+ * size, so the table is split over numbered keys. Sensors saved as JSON by earlier versions are
+ * converted the first time they are loaded.
  */
 public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
 
-    private Set<Sensor> sensors;
+    private final SensorIndex sensors = new SensorIndex();
     private AlarmStatus alarmStatus;
     private ArmingStatus armingStatus;
 
     //preference keys
-    private static final String SENSORS = "SENSORS";
+    private static final String SENSORS = "SENSORS"; //JSON, only read to migrate older installs
+    private static final String SENSOR_TABLE_CHUNKS = "SENSOR_TABLE_CHUNKS";
+    private static final String SENSOR_TABLE_CHUNK = "SENSOR_TABLE_";
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
 
     private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
-    private static final Gson gson = new Gson(); //used to serialize objects into JSON
+    private static final Gson gson = new Gson(); //used to read sensors saved as JSON
+
+    //byte arrays are stored Base64 encoded, which takes 4 characters for every 3 bytes
+    private static final int CHUNK_SIZE = Preferences.MAX_VALUE_LENGTH / 4 * 3;
 
     public PretendDatabaseSecurityRepositoryImpl() {
         //load system state from prefs, or else default
@@ -34,59 +51,126 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
 
         //we've serialized our sensor objects for storage, which should be a good warning sign that
         // this is likely an impractical solution for a real system
+        int chunks = prefs.getInt(SENSOR_TABLE_CHUNKS, -1);
+        if (chunks >= 0) {
+            try {
+                SensorCodec.decodeSensors(ByteBuffer.wrap(readChunks(chunks))).forEach(sensors::put);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("Unable to load stored sensors", ioe);
+            }
+            return;
+        }
         String sensorString = prefs.get(SENSORS, null);
-        if(sensorString == null) {
-            sensors = new TreeSet<>();
-        } else {
+        if(sensorString != null) {
             Type type = new TypeToken<Set<Sensor>>() {
             }.getType();
-            sensors = gson.fromJson(sensorString, type);
+            Set<Sensor> storedSensors = gson.fromJson(sensorString, type);
+            storedSensors.forEach(sensors::put);
+            //one-time migration; the JSON is only removed once the binary table is in place
+            persistSensors();
+            prefs.remove(SENSORS);
+        }
+    }
+
+    private static byte[] readChunks(int chunks) {
+        ByteArrayOutputStream table = new ByteArrayOutputStream(chunks * CHUNK_SIZE);
+        for (int i = 0; i < chunks; i++) {
+            table.writeBytes(prefs.getByteArray(SENSOR_TABLE_CHUNK + i, new byte[0]));
+        }
+        return table.toByteArray();
+    }
+
+    @Override
+    public synchronized boolean addSensor(Sensor sensor) {
+        boolean added = sensors.put(sensor);
+        persistSensors();
+        return added;
+    }
+
+    @Override
+    public synchronized boolean removeSensor(Sensor sensor) {
+        if (sensors.remove(sensor.getSensorId()) == null) {
+            return false;
         }
+        persistSensors();
+        return true;
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.put(sensor);
+        persistSensors();
     }
 
     @Override
-    public void addSensor(Sensor sensor) {
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+    public synchronized void updateSensors(Collection<Sensor> sensors) {
+        boolean updated = false;
+        for (Sensor sensor : sensors) {
+            if (this.sensors.get(sensor.getSensorId()) != null) {
+                this.sensors.put(sensor);
+                updated = true;
+            }
+        }
+        if (updated) {
+            persistSensors();
+        }
     }
 
     @Override
-    public void removeSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+    public synchronized Sensor findSensor(UUID sensorId) {
+        return sensors.get(sensorId);
     }
 
     @Override
-    public void updateSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+    public synchronized void updateSensorActive(UUID sensorId, boolean active) {
+        Sensor sensor = sensors.get(sensorId);
+        if (sensor != null) {
+            sensor.setActive(active);
+            persistSensors();
+        }
+    }
+
+    private void persistSensors() {
+        byte[] table = SensorCodec.encodeSensors(sensors.sortedView());
+        int oldChunks = prefs.getInt(SENSOR_TABLE_CHUNKS, 0);
+        int chunks = (table.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        for (int i = 0; i < chunks; i++) {
+            prefs.putByteArray(SENSOR_TABLE_CHUNK + i,
+                    Arrays.copyOfRange(table, i * CHUNK_SIZE, Math.min(table.length, (i + 1) * CHUNK_SIZE)));
+        }
+        prefs.putInt(SENSOR_TABLE_CHUNKS, chunks);
+        for (int i = chunks; i < oldChunks; i++) {
+            prefs.remove(SENSOR_TABLE_CHUNK + i);
+        }
     }
 
     @Override
-    public void setAlarmStatus(AlarmStatus alarmStatus) {
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
         this.alarmStatus = alarmStatus;
         prefs.put(ALARM_STATUS, this.alarmStatus.toString());
     }
 
     @Override
-    public void setArmingStatus(ArmingStatus armingStatus) {
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
         this.armingStatus = armingStatus;
         prefs.put(ARMING_STATUS, this.armingStatus.toString());
     }
 
+    /**
+     * @return a copy of the sensors in display order, so callers can iterate while other threads write
+     */
     @Override
-    public Set<Sensor> getSensors() {
-        return sensors;
+    public synchronized Set<Sensor> getSensors() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(sensors.sortedView()));
     }
 
     @Override
-    public AlarmStatus getAlarmStatus() {
+    public synchronized AlarmStatus getAlarmStatus() {
         return alarmStatus;
     }
 
     @Override
-    public ArmingStatus getArmingStatus() {
+    public synchronized ArmingStatus getArmingStatus() {
         return armingStatus;
     }
 }
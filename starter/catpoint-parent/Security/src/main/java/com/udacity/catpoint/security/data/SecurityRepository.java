@@ -1,14 +1,43 @@
 package com.udacity.catpoint.security.data;
 
+import java.util.Collection;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Interface showing the methods our security repository will need to support
  */
 public interface SecurityRepository {
-    void addSensor(Sensor sensor);
-    void removeSensor(Sensor sensor);
+    /**
+     * Adds the sensor, or replaces the stored sensor with the same id.
+     *
+     * @return true if there was no sensor with that id before
+     */
+    boolean addSensor(Sensor sensor);
+
+    /**
+     * @return true if a sensor with that id was stored and has been removed
+     */
+    boolean removeSensor(Sensor sensor);
     void updateSensor(Sensor sensor);
+
+    /**
+     * Persists changes to several sensors at once, as a single write where the storage allows it.
+     * Only sensors that are already stored are updated; the others are ignored rather than added.
+     */
+    void updateSensors(Collection<Sensor> sensors);
+
+    /**
+     * @return the sensor with the given id, or null if there is none
+     */
+    Sensor findSensor(UUID sensorId);
+
+    /**
+     * Sets the activation status of the sensor with the given id and persists it. Does nothing
+     * if there is no such sensor.
+     */
+    void updateSensorActive(UUID sensorId, boolean active);
+
     void setAlarmStatus(AlarmStatus alarmStatus);
     void setArmingStatus(ArmingStatus armingStatus);
     Set<Sensor> getSensors();
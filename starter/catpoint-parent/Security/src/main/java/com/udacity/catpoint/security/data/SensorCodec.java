@@ -0,0 +1,192 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of sensors and system statuses, used by the repositories in place of
+ * reflective JSON. Ids are written as two longs and enums as their ordinals.
+ * <p>
+ * A sensor table holds many sensors and writes each distinct name once:
+ * <pre>
+ *     [int magic][byte version]
+ *     [int nameCount] nameCount x [int byteLength][UTF-8 bytes]
+ *     [int sensorCount] sensorCount x [long msb][long lsb][int nameIndex][byte type][byte active]
+ * </pre>
+ * A single sensor, as written to a log record, carries its name inline:
+ * {@code [long msb][long lsb][byte type][byte active][int byteLength][UTF-8 bytes]}.
+ * <p>
+ * Enum ordinals are part of the format: new constants may only be added at the end, and a change
+ * to existing ones needs a new {@link #VERSION}.
+ */
+public final class SensorCodec {
+
+    public static final int MAGIC = 0x4350534E; // "CPSN"
+    public static final byte VERSION = 1;
+
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+
+    private static final int SENSOR_ENTRY_LENGTH = 2 * Long.BYTES + Integer.BYTES + 2;
+
+    private SensorCodec() {
+    }
+
+    /**
+     * @return the sensors as a sensor table
+     */
+    public static byte[] encodeSensors(Collection<Sensor> sensors) {
+        Map<String, Integer> nameIndex = new HashMap<>();
+        List<byte[]> names = new ArrayList<>();
+        int namesLength = 0;
+        for (Sensor sensor : sensors) {
+            if (!nameIndex.containsKey(sensor.getName())) {
+                byte[] name = sensor.getName().getBytes(StandardCharsets.UTF_8);
+                nameIndex.put(sensor.getName(), names.size());
+                names.add(name);
+                namesLength += Integer.BYTES + name.length;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + 1 + Integer.BYTES + namesLength
+                + Integer.BYTES + sensors.size() * SENSOR_ENTRY_LENGTH);
+        buffer.putInt(MAGIC).put(VERSION).putInt(names.size());
+        for (byte[] name : names) {
+            buffer.putInt(name.length).put(name);
+        }
+        buffer.putInt(sensors.size());
+        for (Sensor sensor : sensors) {
+            buffer.putLong(sensor.getSensorId().getMostSignificantBits())
+                    .putLong(sensor.getSensorId().getLeastSignificantBits())
+                    .putInt(nameIndex.get(sensor.getName()))
+                    .put((byte) sensor.getSensorType().ordinal())
+                    .put(isActive(sensor) ? (byte) 1 : (byte) 0);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads a sensor table from the buffer's position onward.
+     *
+     * @throws IOException if the buffer does not hold a complete sensor table of a known version
+     */
+    public static List<Sensor> decodeSensors(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a sensor table");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported sensor table version " + version);
+            }
+            String[] names = new String[checkedCount(buffer.getInt(), buffer, Integer.BYTES)];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = getString(buffer);
+            }
+            int count = checkedCount(buffer.getInt(), buffer, SENSOR_ENTRY_LENGTH);
+            List<Sensor> sensors = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Sensor sensor = new Sensor();
+                sensor.setSensorId(new UUID(buffer.getLong(), buffer.getLong()));
+                int name = buffer.getInt();
+                if (name < 0 || name >= names.length) {
+                    throw new IOException("Sensor name index out of range: " + name);
+                }
+                sensor.setName(names[name]);
+                sensor.setSensorType(sensorType(buffer.get()));
+                sensor.setActive(buffer.get() != 0);
+                sensors.add(sensor);
+            }
+            return sensors;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated sensor table", e);
+        }
+    }
+
+    /**
+     * @return the number of bytes {@link #putSensor} writes for the sensor
+     */
+    public static int sensorLength(Sensor sensor) {
+        return 2 * Long.BYTES + 2 + Integer.BYTES + sensor.getName().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    public static ByteBuffer putSensor(ByteBuffer buffer, Sensor sensor) {
+        byte[] name = sensor.getName().getBytes(StandardCharsets.UTF_8);
+        return buffer.putLong(sensor.getSensorId().getMostSignificantBits())
+                .putLong(sensor.getSensorId().getLeastSignificantBits())
+                .put((byte) sensor.getSensorType().ordinal())
+                .put(isActive(sensor) ? (byte) 1 : (byte) 0)
+                .putInt(name.length)
+                .put(name);
+    }
+
+    public static Sensor getSensor(ByteBuffer buffer) throws IOException {
+        try {
+            Sensor sensor = new Sensor();
+            sensor.setSensorId(new UUID(buffer.getLong(), buffer.getLong()));
+            sensor.setSensorType(sensorType(buffer.get()));
+            sensor.setActive(buffer.get() != 0);
+            sensor.setName(getString(buffer));
+            return sensor;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated sensor", e);
+        }
+    }
+
+    public static AlarmStatus alarmStatus(byte ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= ALARM_STATUSES.length) {
+            throw new IOException("Unknown alarm status " + ordinal);
+        }
+        return ALARM_STATUSES[ordinal];
+    }
+
+    public static ArmingStatus armingStatus(byte ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= ARMING_STATUSES.length) {
+            throw new IOException("Unknown arming status " + ordinal);
+        }
+        return ARMING_STATUSES[ordinal];
+    }
+
+    private static SensorType sensorType(byte ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= SENSOR_TYPES.length) {
+            throw new IOException("Unknown sensor type " + ordinal);
+        }
+        return SENSOR_TYPES[ordinal];
+    }
+
+    private static boolean isActive(Sensor sensor) {
+        return Boolean.TRUE.equals(sensor.getActive());
+    }
+
+    /**
+     * Rejects counts that cannot fit in what is left of the buffer, before anything is allocated for them.
+     */
+    private static int checkedCount(int count, ByteBuffer buffer, int minEntryLength) throws IOException {
+        if (count < 0 || (long) count * minEntryLength > buffer.remaining()) {
+            throw new IOException("Corrupt entry count " + count);
+        }
+        return count;
+    }
+
+    private static String getString(ByteBuffer buffer) throws IOException {
+        int length = checkedCount(buffer.getInt(), buffer, 1);
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(buffer.position(), bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,92 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * In-memory sensor storage shared by the repository implementations. Sensors are keyed by their
+ * id, so lookups and updates are O(1) and do not depend on {@link Sensor#compareTo}. The sorted
+ * set handed out for display is a separate view that is only rebuilt when something that affects
+ * the sort order has changed since it was last requested.
+ */
+final class SensorIndex {
+
+    private final Map<UUID, Entry> sensorsById = new HashMap<>();
+    private TreeSet<Sensor> sortedView;
+
+    /**
+     * Sensor plus the sort key it had when it was indexed, so a rename made on the object
+     * itself can still be detected.
+     */
+    private record Entry(Sensor sensor, String name, SensorType sensorType) {
+        Entry(Sensor sensor) {
+            this(sensor, sensor.getName(), sensor.getSensorType());
+        }
+
+        boolean sortsLike(Sensor other) {
+            return other.getName().equals(name) && other.getSensorType() == sensorType;
+        }
+    }
+
+    /**
+     * Adds the sensor, or replaces the indexed sensor with the same id.
+     *
+     * @return true if no sensor had that id before
+     */
+    boolean put(Sensor sensor) {
+        Entry previous = sensorsById.put(sensor.getSensorId(), new Entry(sensor));
+        if (sortedView == null) {
+            return previous == null;
+        }
+        if (previous == null) {
+            sortedView.add(sensor);
+        } else if (previous.sortsLike(sensor) && previous.sensor().getName().equals(previous.name())) {
+            //sort key unchanged, so the old instance can still be found in the tree
+            if (previous.sensor() != sensor) {
+                sortedView.remove(previous.sensor());
+                sortedView.add(sensor);
+            }
+        } else {
+            sortedView = null;
+        }
+        return previous == null;
+    }
+
+    /**
+     * @return the removed sensor, or null if no sensor had that id
+     */
+    Sensor remove(UUID sensorId) {
+        Entry removed = sensorsById.remove(sensorId);
+        if (removed == null) {
+            return null;
+        }
+        if (sortedView != null && !sortedView.remove(removed.sensor())) {
+            sortedView = null;
+        }
+        return removed.sensor();
+    }
+
+    Sensor get(UUID sensorId) {
+        Entry entry = sensorsById.get(sensorId);
+        return entry == null ? null : entry.sensor();
+    }
+
+    int size() {
+        return sensorsById.size();
+    }
+
+    /**
+     * @return an unmodifiable view of all sensors in display order
+     */
+    Set<Sensor> sortedView() {
+        if (sortedView == null) {
+            sortedView = new TreeSet<>();
+            sensorsById.values().forEach(entry -> sortedView.add(entry.sensor()));
+        }
+        return Collections.unmodifiableSet(sortedView);
+    }
+}
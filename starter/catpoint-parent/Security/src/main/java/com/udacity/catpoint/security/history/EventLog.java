@@ -0,0 +1,89 @@
+package com.udacity.catpoint.security.history;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of a history log, shared by {@link EventLogWriter} and {@link RecordedHistory}:
+ * <pre>
+ *     [int magic][byte version][long start, epoch millis][byte alarm status][byte arming status]
+ *     [int cameraCount] cameraCount x [int byteLength][UTF-8 camera id]   cameras seeing a cat
+ *     [int tableLength][sensor table]                                     see SensorCodec
+ *     records...
+ * </pre>
+ * A record starts with a byte holding its code in the low four bits and, for events, the alarm
+ * status the event left behind in the high four. An event continues with the microseconds since
+ * the previous event as a varint and then its subject, a varint sensor or camera number, or the
+ * arming status for {@link RecordedEvent.Kind#ARMING_STATUS_SET}. Sensors and cameras are numbered
+ * in the order they were defined: first the header's, then one per definition record, which holds
+ * a varint length followed by the sensor as SensorCodec writes it, or by the UTF-8 camera id.
+ * <p>
+ * Event codes are the {@link RecordedEvent.Kind} ordinal plus one, so kinds may only be added at
+ * the end.
+ */
+final class EventLog {
+
+    static final int MAGIC = 0x43504556; // "CPEV"
+    static final byte VERSION = 1;
+
+    static final int DEFINE_SENSOR = 14;
+    static final int DEFINE_CAMERA = 15;
+
+    private EventLog() {
+    }
+
+    /**
+     * @return the bytes {@link #putVarint} writes for the value
+     */
+    static int varintLength(long value) {
+        int length = 1;
+        while ((value >>>= 7) != 0) {
+            length++;
+        }
+        return length;
+    }
+
+    static ByteBuffer putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        return buffer.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt varint");
+    }
+
+    /**
+     * @return a varint that has to fit an int, such as a sensor number or a length
+     */
+    static int getIndex(ByteBuffer buffer) throws IOException {
+        long value = getVarint(buffer);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Index out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * @throws BufferUnderflowException if the buffer ends first, like the other reads
+     */
+    static ByteBuffer slice(ByteBuffer buffer, int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        ByteBuffer slice = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+}
@@ -0,0 +1,420 @@
+package com.udacity.catpoint.security.history;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorCodec;
+import com.udacity.catpoint.security.service.EventRecorder;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the inputs of a {@link SecurityService} to a history log, see {@link EventLog} for the
+ * layout. Most events take three to four bytes.
+ * <p>
+ * The service's threads only hand each input to a queue; a background thread puts the inputs in
+ * the order of their sequence numbers, encodes them and writes them out whenever the buffer fills,
+ * on {@link #flush()} and on {@link #close()}. If the process dies before that, the log simply
+ * ends earlier, and {@link RecordedHistory} reads what was written. An input whose sequence number
+ * is still missing after {@value #GAP_TIMEOUT_MILLIS} ms, for example one applied just as
+ * recording started, is given up on so the rest of the log is not held back.
+ * <p>
+ * The log starts with the service's state at the time recording starts. For the recorded alarm
+ * statuses to be reproduced exactly on replay, start recording while nothing else is changing the
+ * service.
+ */
+public class EventLogWriter implements EventRecorder, AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    static final long GAP_TIMEOUT_MILLIS = 100;
+
+    /**
+     * Work for the writer thread.
+     */
+    private sealed interface Entry permits Input, Flush {
+    }
+
+    /**
+     * One input as reported by the service.
+     *
+     * @param subject The status ordinal for status changes, unused otherwise
+     * @param definition The sensor encoded as it was when reported, for sensors the log may not
+     *                   have defined yet, otherwise null
+     */
+    private record Input(long sequence, long nanos, RecordedEvent.Kind kind, AlarmStatus alarmStatus, int subject,
+                         Sensor sensor, byte[] definition, String cameraId) implements Entry {
+    }
+
+    /**
+     * Asks the writer thread to write out everything before it.
+     *
+     * @param last True to also write inputs still waiting for an earlier one, and stop
+     */
+    private record Flush(CompletableFuture<Void> done, boolean last) implements Entry {
+    }
+
+    private final SecurityService securityService;
+    private final FileChannel channel;
+    private final BlockingQueue<Entry> entries = new LinkedBlockingQueue<>();
+    //sensors that have been or are about to be defined in the log
+    private final Set<UUID> definedSensors = ConcurrentHashMap.newKeySet();
+    private final LongAdder eventCount = new LongAdder();
+    private final Thread thread;
+    //inputs with this sequence number or lower are part of the header
+    private long startSequence;
+    private volatile boolean closed;
+    //the first write failure, reported by flush and close since the service cannot be told
+    private volatile IOException failure;
+
+    //only used by the writer thread once started
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final PriorityQueue<Input> waiting = new PriorityQueue<>(Comparator.comparingLong(Input::sequence));
+    private final Map<UUID, Integer> sensorNumbers = new HashMap<>();
+    private int sensorsDefined;
+    private final Map<String, Integer> cameraNumbers = new HashMap<>();
+    private long lastEventNanos;
+    private long nextSequence;
+
+    private EventLogWriter(SecurityService securityService, FileChannel channel) {
+        this.securityService = securityService;
+        this.channel = channel;
+        this.thread = new Thread(this::run, "catpoint-history-writer");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Writes the service's current state to a new log and records its inputs from then on.
+     */
+    public static EventLogWriter start(SecurityService securityService, Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        EventLogWriter writer = new EventLogWriter(securityService, channel);
+        try {
+            writer.writeHeader();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        writer.thread.start();
+        securityService.setEventRecorder(writer);
+        return writer;
+    }
+
+    private void writeHeader() throws IOException {
+        startSequence = securityService.getInputCount();
+        nextSequence = startSequence + 1;
+        List<String> catCameras = new ArrayList<>();
+        for (String cameraId : securityService.getCameraIds()) {
+            if (securityService.isCatDetected(cameraId)) {
+                cameraNumbers.put(cameraId, catCameras.size());
+                catCameras.add(cameraId);
+            }
+        }
+        List<Sensor> sensors = new ArrayList<>(securityService.getSensors());
+        for (Sensor sensor : sensors) {
+            sensorNumbers.put(sensor.getSensorId(), sensorsDefined++);
+            definedSensors.add(sensor.getSensorId());
+        }
+        byte[] sensorTable = SensorCodec.encodeSensors(sensors);
+
+        ensureRoom(Integer.BYTES + 1 + Long.BYTES + 2 + Integer.BYTES);
+        buffer.putInt(EventLog.MAGIC).put(EventLog.VERSION).putLong(System.currentTimeMillis())
+                .put((byte) securityService.getAlarmStatus().ordinal())
+                .put((byte) securityService.getArmingStatus().ordinal())
+                .putInt(catCameras.size());
+        for (String cameraId : catCameras) {
+            byte[] id = cameraId.getBytes(StandardCharsets.UTF_8);
+            ensureRoom(Integer.BYTES + id.length);
+            buffer.putInt(id.length).put(id);
+        }
+        ensureRoom(Integer.BYTES);
+        buffer.putInt(sensorTable.length);
+        for (int offset = 0; offset < sensorTable.length; offset += BUFFER_SIZE) {
+            int length = Math.min(BUFFER_SIZE, sensorTable.length - offset);
+            ensureRoom(length);
+            buffer.put(sensorTable, offset, length);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        lastEventNanos = System.nanoTime();
+    }
+
+    @Override
+    public void armingStatusSet(long sequence, ArmingStatus armingStatus, AlarmStatus alarmStatus) {
+        record(sequence, RecordedEvent.Kind.ARMING_STATUS_SET, alarmStatus, armingStatus.ordinal(), null, null, null);
+    }
+
+    @Override
+    public void alarmStatusSet(long sequence, AlarmStatus alarmStatus) {
+        record(sequence, RecordedEvent.Kind.ALARM_STATUS_SET, alarmStatus, alarmStatus.ordinal(), null, null, null);
+    }
+
+    @Override
+    public void sensorActivationSet(long sequence, Sensor sensor, boolean active, AlarmStatus alarmStatus) {
+        record(sequence, active ? RecordedEvent.Kind.SENSOR_ACTIVATED : RecordedEvent.Kind.SENSOR_DEACTIVATED,
+                alarmStatus, 0, sensor, definitionIfNew(sensor), null);
+    }
+
+    @Override
+    public void catVerdict(long sequence, String cameraId, boolean cat, AlarmStatus alarmStatus) {
+        record(sequence, cat ? RecordedEvent.Kind.CAT_DETECTED : RecordedEvent.Kind.NO_CAT_DETECTED,
+                alarmStatus, 0, null, null, cameraId);
+    }
+
+    /**
+     * A sensor that is added gets a new number, even if it was seen before, so the log holds it
+     * as it was added.
+     */
+    @Override
+    public void sensorAdded(long sequence, Sensor sensor, AlarmStatus alarmStatus) {
+        definedSensors.add(sensor.getSensorId());
+        record(sequence, RecordedEvent.Kind.SENSOR_ADDED, alarmStatus, 0, sensor, encode(sensor), null);
+    }
+
+    @Override
+    public void sensorRemoved(long sequence, Sensor sensor, AlarmStatus alarmStatus) {
+        record(sequence, RecordedEvent.Kind.SENSOR_REMOVED, alarmStatus, 0, sensor, definitionIfNew(sensor), null);
+    }
+
+    @Override
+    public void cameraRemoved(long sequence, String cameraId, AlarmStatus alarmStatus) {
+        record(sequence, RecordedEvent.Kind.CAMERA_REMOVED, alarmStatus, 0, null, null, cameraId);
+    }
+
+    private void record(long sequence, RecordedEvent.Kind kind, AlarmStatus alarmStatus, int subject, Sensor sensor,
+                        byte[] definition, String cameraId) {
+        if (sequence <= startSequence || closed) {
+            return;
+        }
+        eventCount.increment();
+        entries.add(new Input(sequence, System.nanoTime(), kind, alarmStatus, subject, sensor, definition, cameraId));
+    }
+
+    /**
+     * Sensors change after they are reported, so one the log has not defined yet is encoded
+     * straight away, as it was when the input was applied.
+     */
+    private byte[] definitionIfNew(Sensor sensor) {
+        return definedSensors.add(sensor.getSensorId()) ? encode(sensor) : null;
+    }
+
+    private static byte[] encode(Sensor sensor) {
+        ByteBuffer encoded = ByteBuffer.allocate(SensorCodec.sensorLength(sensor));
+        SensorCodec.putSensor(encoded, sensor);
+        return encoded.array();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Entry entry = waiting.isEmpty() ? entries.take()
+                        : entries.poll(GAP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (entry instanceof Input input) {
+                    waiting.add(input);
+                }
+                boolean last = entry instanceof Flush flush && flush.last();
+                writeWaiting(last);
+                if (entry instanceof Flush flush) {
+                    if (failure == null) {
+                        try {
+                            writeBuffer();
+                        } catch (IOException e) {
+                            failure = e;
+                        }
+                    }
+                    if (failure != null) {
+                        flush.done().completeExceptionally(failure);
+                    } else {
+                        flush.done().complete(null);
+                    }
+                    if (last) {
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            //stopped without writing the rest
+        }
+    }
+
+    /**
+     * Writes the waiting inputs that are next in sequence, skipping a missing input once the one
+     * after it has waited too long.
+     *
+     * @param all True to write every waiting input, whatever is missing
+     */
+    private void writeWaiting(boolean all) {
+        long giveUpBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(GAP_TIMEOUT_MILLIS);
+        Input input;
+        while ((input = waiting.peek()) != null
+                && (all || input.sequence() <= nextSequence || input.nanos() - giveUpBefore < 0)) {
+            waiting.poll();
+            nextSequence = Math.max(nextSequence, input.sequence() + 1);
+            write(input);
+        }
+    }
+
+    private void write(Input input) {
+        int subject = switch (input.kind()) {
+            case ARMING_STATUS_SET, ALARM_STATUS_SET -> input.subject();
+            case CAT_DETECTED, NO_CAT_DETECTED, CAMERA_REMOVED -> cameraNumber(input.cameraId());
+            case SENSOR_ADDED -> defineSensor(input.sensor(), input.definition());
+            case SENSOR_ACTIVATED, SENSOR_DEACTIVATED, SENSOR_REMOVED -> sensorNumber(input);
+        };
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, input.nanos() - lastEventNanos));
+        //the remainder is carried over, so rounding does not add up over a long log
+        lastEventNanos += TimeUnit.MICROSECONDS.toNanos(micros);
+        if (ensureRoom(1 + EventLog.varintLength(micros) + EventLog.varintLength(subject))) {
+            buffer.put((byte) ((input.kind().ordinal() + 1) | input.alarmStatus().ordinal() << 4));
+            EventLog.putVarint(EventLog.putVarint(buffer, micros), subject);
+        }
+    }
+
+    /**
+     * @return the sensor's number, after writing a definition for a sensor not in the log yet
+     */
+    private int sensorNumber(Input input) {
+        Integer number = sensorNumbers.get(input.sensor().getSensorId());
+        if (number != null) {
+            return number;
+        }
+        //another thread reported the sensor first but its input comes later in the log
+        byte[] definition = input.definition() != null ? input.definition() : encode(input.sensor());
+        return defineSensor(input.sensor(), definition);
+    }
+
+    private int defineSensor(Sensor sensor, byte[] definition) {
+        int number = sensorsDefined++;
+        sensorNumbers.put(sensor.getSensorId(), number);
+        if (ensureRoom(1 + EventLog.varintLength(definition.length) + definition.length)) {
+            EventLog.putVarint(buffer.put((byte) EventLog.DEFINE_SENSOR), definition.length).put(definition);
+        }
+        return number;
+    }
+
+    private int cameraNumber(String cameraId) {
+        Integer number = cameraNumbers.get(cameraId);
+        if (number != null) {
+            return number;
+        }
+        number = cameraNumbers.size();
+        cameraNumbers.put(cameraId, number);
+        byte[] id = cameraId.getBytes(StandardCharsets.UTF_8);
+        if (ensureRoom(1 + EventLog.varintLength(id.length) + id.length)) {
+            EventLog.putVarint(buffer.put((byte) EventLog.DEFINE_CAMERA), id.length).put(id);
+        }
+        return number;
+    }
+
+    /**
+     * Writes out the buffer if it cannot take the given number of bytes.
+     *
+     * @return false if the log can no longer be written to
+     */
+    private boolean ensureRoom(int length) {
+        if (failure != null) {
+            return false;
+        }
+        if (buffer.remaining() < length) {
+            try {
+                writeBuffer();
+            } catch (IOException e) {
+                failure = e;
+                return false;
+            }
+            if (buffer.remaining() < length) {
+                failure = new IOException("Record of " + length + " bytes does not fit the buffer");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Waits until the inputs reported so far are written out. Inputs still waiting for an
+     * earlier one that has not been reported yet are left for a later flush.
+     *
+     * @throws IOException if this or an earlier write failed
+     */
+    public synchronized void flush() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (!closed) {
+            await(new Flush(new CompletableFuture<>(), false));
+        }
+    }
+
+    private void await(Flush flush) throws IOException {
+        entries.add(flush);
+        try {
+            flush.done().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the history log", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * @return events recorded so far, including those not written out yet
+     */
+    public long getEventCount() {
+        return eventCount.sum();
+    }
+
+    /**
+     * Stops recording, then writes out the remaining inputs and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        securityService.setEventRecorder(EventRecorder.NONE);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                await(new Flush(new CompletableFuture<>(), true));
+            } finally {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                channel.close();
+            }
+        }
+    }
+}
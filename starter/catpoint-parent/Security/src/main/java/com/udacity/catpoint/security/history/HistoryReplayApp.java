@@ -0,0 +1,32 @@
+package com.udacity.catpoint.security.history;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Replays a history log and prints how it went, to reproduce an incident or to measure the alarm
+ * logic on recorded traffic.
+ * <p>
+ * Usage: {@code HistoryReplayApp <history log> [--paced]}. Without {@code --paced} the events are
+ * replayed as fast as possible. Exits with status 1 if the alarm statuses differ from the recording.
+ */
+public class HistoryReplayApp {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: HistoryReplayApp <history log> [--paced]");
+            System.exit(2);
+        }
+        RecordedHistory history = RecordedHistory.read(Path.of(args[0]));
+        if (history.isTruncated()) {
+            System.out.println("The log ends part way through a record; replaying the whole events before it.");
+        }
+        ReplayEngine.Pacing pacing = args.length > 1 && args[1].equals("--paced")
+                ? ReplayEngine.Pacing.ORIGINAL : ReplayEngine.Pacing.FULL_SPEED;
+        ReplayReport report = new ReplayEngine(history).replay(pacing);
+        System.out.println(report);
+        if (!report.isIdentical()) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.udacity.catpoint.security.history;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+
+/**
+ * One input from a history log.
+ *
+ * @param nanos When the input arrived, counted from the first event
+ * @param subject The sensor or camera number in the {@link RecordedHistory}, or the arming or
+ *                alarm status ordinal for the status kinds
+ * @param alarmStatus The alarm status the input left behind when it was recorded
+ */
+public record RecordedEvent(Kind kind, long nanos, int subject, AlarmStatus alarmStatus) {
+
+    public enum Kind {
+        ARMING_STATUS_SET,
+        ALARM_STATUS_SET,
+        SENSOR_ACTIVATED,
+        SENSOR_DEACTIVATED,
+        CAT_DETECTED,
+        NO_CAT_DETECTED,
+        SENSOR_ADDED,
+        SENSOR_REMOVED,
+        CAMERA_REMOVED
+    }
+}
@@ -0,0 +1,189 @@
+package com.udacity.catpoint.security.history;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorCodec;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A history log read back into memory, see {@link EventLogWriter}. A log that ends part way
+ * through a record, because the process recording it died, is read up to the last whole event.
+ */
+public final class RecordedHistory {
+
+    private static final RecordedEvent.Kind[] KINDS = RecordedEvent.Kind.values();
+
+    private final long startMillis;
+    private final AlarmStatus alarmStatus;
+    private final ArmingStatus armingStatus;
+    private final int initialCameraCount;
+    private final int initialSensorCount;
+    private final List<String> cameras;
+    private final List<Sensor> sensors;
+    private final List<RecordedEvent> events;
+    private final boolean truncated;
+
+    private RecordedHistory(long startMillis, AlarmStatus alarmStatus, ArmingStatus armingStatus,
+                            int initialCameraCount, int initialSensorCount, List<String> cameras,
+                            List<Sensor> sensors, List<RecordedEvent> events, boolean truncated) {
+        this.startMillis = startMillis;
+        this.alarmStatus = alarmStatus;
+        this.armingStatus = armingStatus;
+        this.initialCameraCount = initialCameraCount;
+        this.initialSensorCount = initialSensorCount;
+        this.cameras = Collections.unmodifiableList(cameras);
+        this.sensors = Collections.unmodifiableList(sensors);
+        this.events = Collections.unmodifiableList(events);
+        this.truncated = truncated;
+    }
+
+    /**
+     * @throws IOException if the file is not a history log or a complete record in it is corrupt
+     */
+    public static RecordedHistory read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        long startMillis;
+        AlarmStatus alarmStatus;
+        ArmingStatus armingStatus;
+        List<String> cameras = new ArrayList<>();
+        List<Sensor> sensors;
+        try {
+            if (buffer.getInt() != EventLog.MAGIC) {
+                throw new IOException("Not a history log");
+            }
+            byte version = buffer.get();
+            if (version != EventLog.VERSION) {
+                throw new IOException("Unsupported history log version " + version);
+            }
+            startMillis = buffer.getLong();
+            alarmStatus = SensorCodec.alarmStatus(buffer.get());
+            armingStatus = SensorCodec.armingStatus(buffer.get());
+            int cameraCount = buffer.getInt();
+            if (cameraCount < 0 || cameraCount > buffer.remaining() / Integer.BYTES) {
+                throw new IOException("Corrupt camera count " + cameraCount);
+            }
+            for (int i = 0; i < cameraCount; i++) {
+                int length = buffer.getInt();
+                if (length < 0) {
+                    throw new IOException("Corrupt camera id length " + length);
+                }
+                cameras.add(StandardCharsets.UTF_8.decode(EventLog.slice(buffer, length)).toString());
+            }
+            int tableLength = buffer.getInt();
+            if (tableLength < 0) {
+                throw new IOException("Corrupt sensor table length " + tableLength);
+            }
+            sensors = new ArrayList<>(SensorCodec.decodeSensors(EventLog.slice(buffer, tableLength)));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated history log header", e);
+        }
+        int initialCameraCount = cameras.size();
+        int initialSensorCount = sensors.size();
+
+        List<RecordedEvent> events = new ArrayList<>();
+        boolean truncated = false;
+        long nanos = 0;
+        while (buffer.hasRemaining()) {
+            int recordStart = buffer.position();
+            try {
+                int head = buffer.get() & 0xFF;
+                int code = head & 0x0F;
+                if (code == EventLog.DEFINE_SENSOR) {
+                    sensors.add(SensorCodec.getSensor(EventLog.slice(buffer, EventLog.getIndex(buffer))));
+                } else if (code == EventLog.DEFINE_CAMERA) {
+                    ByteBuffer id = EventLog.slice(buffer, EventLog.getIndex(buffer));
+                    cameras.add(StandardCharsets.UTF_8.decode(id).toString());
+                } else if (code >= 1 && code <= KINDS.length) {
+                    RecordedEvent.Kind kind = KINDS[code - 1];
+                    AlarmStatus after = SensorCodec.alarmStatus((byte) (head >>> 4));
+                    nanos += TimeUnit.MICROSECONDS.toNanos(EventLog.getVarint(buffer));
+                    int subject = EventLog.getIndex(buffer);
+                    checkSubject(kind, subject, sensors.size(), cameras.size());
+                    events.add(new RecordedEvent(kind, nanos, subject, after));
+                } else {
+                    throw new IOException("Unknown record code " + code + " at offset " + recordStart);
+                }
+            } catch (BufferUnderflowException e) {
+                //the recording stopped part way through this record
+                truncated = true;
+                break;
+            }
+        }
+        return new RecordedHistory(startMillis, alarmStatus, armingStatus, initialCameraCount, initialSensorCount,
+                cameras, sensors, events, truncated);
+    }
+
+    private static void checkSubject(RecordedEvent.Kind kind, int subject, int sensorCount, int cameraCount)
+            throws IOException {
+        int limit = switch (kind) {
+            case ARMING_STATUS_SET -> ArmingStatus.values().length;
+            case ALARM_STATUS_SET -> AlarmStatus.values().length;
+            case SENSOR_ACTIVATED, SENSOR_DEACTIVATED, SENSOR_ADDED, SENSOR_REMOVED -> sensorCount;
+            case CAT_DETECTED, NO_CAT_DETECTED, CAMERA_REMOVED -> cameraCount;
+        };
+        if (subject >= limit) {
+            throw new IOException(kind + " refers to undefined subject " + subject);
+        }
+    }
+
+    /**
+     * @return when recording started, in epoch milliseconds
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * @return every camera the events refer to, by number. The first
+     *         {@link #getInitialCameraCount()} were seeing a cat when recording started.
+     */
+    public List<String> getCameras() {
+        return cameras;
+    }
+
+    public int getInitialCameraCount() {
+        return initialCameraCount;
+    }
+
+    /**
+     * @return every sensor the events refer to, by number, as it was when first seen. The first
+     *         {@link #getInitialSensorCount()} were in the system when recording started.
+     */
+    public List<Sensor> getSensors() {
+        return sensors;
+    }
+
+    public int getInitialSensorCount() {
+        return initialSensorCount;
+    }
+
+    public List<RecordedEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return true if the log ended part way through a record
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
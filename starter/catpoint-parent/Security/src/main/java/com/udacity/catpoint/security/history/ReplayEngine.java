@@ -0,0 +1,144 @@
+package com.udacity.catpoint.security.history;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a {@link RecordedHistory} back into a fresh {@link SecurityService} with an in-memory
+ * repository, and checks after every event that the alarm status matches the recorded one.
+ * <p>
+ * Cat verdicts are replayed as recorded, through an image service that answers with the recorded
+ * verdict, so a replay never depends on the image service that made them. Every replay starts
+ * from copies of the recorded sensors, so one history can be replayed any number of times.
+ */
+public class ReplayEngine {
+
+    public enum Pacing {
+        /** Waits between events as long as the recording did. */
+        ORIGINAL,
+        /** Applies each event as soon as the previous one is done. */
+        FULL_SPEED
+    }
+
+    //stands in for every camera image; the verdict is what counts
+    private static final BufferedImage FRAME = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+
+    /**
+     * Answers every image with the verdict set last.
+     */
+    private static final class RecordedVerdicts implements ImageService {
+        boolean nextVerdict;
+
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            return nextVerdict;
+        }
+    }
+
+    private final RecordedHistory history;
+
+    public ReplayEngine(RecordedHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Replays the whole history into a new service on the calling thread.
+     */
+    public ReplayReport replay(Pacing pacing) {
+        RecordedVerdicts verdicts = new RecordedVerdicts();
+        Sensor[] sensors = new Sensor[history.getSensors().size()];
+        for (int i = 0; i < sensors.length; i++) {
+            sensors[i] = copy(history.getSensors().get(i));
+        }
+        List<String> cameras = history.getCameras();
+        SecurityService securityService = startingService(verdicts, sensors, cameras);
+
+        List<RecordedEvent> events = history.getEvents();
+        AlarmStatus previous = securityService.getAlarmStatus();
+        int alarmChanges = 0;
+        int firstMismatch = -1;
+        AlarmStatus expected = null;
+        AlarmStatus actual = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < events.size(); i++) {
+            RecordedEvent event = events.get(i);
+            if (pacing == Pacing.ORIGINAL) {
+                waitUntil(start + event.nanos());
+            }
+            int subject = event.subject();
+            switch (event.kind()) {
+                case ARMING_STATUS_SET -> securityService.setArmingStatus(ARMING_STATUSES[subject]);
+                case ALARM_STATUS_SET -> securityService.setAlarmStatus(ALARM_STATUSES[subject]);
+                case SENSOR_ACTIVATED -> securityService.changeSensorActivationStatus(sensors[subject], true);
+                case SENSOR_DEACTIVATED -> securityService.changeSensorActivationStatus(sensors[subject], false);
+                case CAT_DETECTED, NO_CAT_DETECTED -> {
+                    verdicts.nextVerdict = event.kind() == RecordedEvent.Kind.CAT_DETECTED;
+                    securityService.processImage(cameras.get(subject), FRAME);
+                }
+                case SENSOR_ADDED -> securityService.addSensor(sensors[subject]);
+                case SENSOR_REMOVED -> securityService.removeSensor(sensors[subject]);
+                case CAMERA_REMOVED -> securityService.removeCamera(cameras.get(subject));
+            }
+            AlarmStatus status = securityService.getAlarmStatus();
+            if (status != previous) {
+                alarmChanges++;
+                previous = status;
+            }
+            if (status != event.alarmStatus() && firstMismatch < 0) {
+                firstMismatch = i;
+                expected = event.alarmStatus();
+                actual = status;
+            }
+        }
+        return new ReplayReport(events.size(), System.nanoTime() - start, alarmChanges, firstMismatch,
+                expected, actual);
+    }
+
+    /**
+     * @return a service in the state the recording started from
+     */
+    private SecurityService startingService(RecordedVerdicts verdicts, Sensor[] sensors, List<String> cameras) {
+        InMemorySecurityRepositoryImpl repository = new InMemorySecurityRepositoryImpl();
+        for (int i = 0; i < history.getInitialSensorCount(); i++) {
+            repository.addSensor(sensors[i]);
+        }
+        repository.setArmingStatus(history.getArmingStatus());
+        repository.setAlarmStatus(history.getAlarmStatus());
+        SecurityService securityService = new SecurityService(repository, verdicts);
+        if (history.getInitialCameraCount() > 0) {
+            verdicts.nextVerdict = true;
+            for (int i = 0; i < history.getInitialCameraCount(); i++) {
+                securityService.processImage(cameras.get(i), FRAME);
+            }
+            //the verdicts may have raised the alarm, which the recording started without
+            securityService.setAlarmStatus(history.getAlarmStatus());
+        }
+        return securityService;
+    }
+
+    private static Sensor copy(Sensor recorded) {
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(recorded.getSensorId());
+        sensor.setName(recorded.getName());
+        sensor.setSensorType(recorded.getSensorType());
+        sensor.setActive(recorded.getActive());
+        return sensor;
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
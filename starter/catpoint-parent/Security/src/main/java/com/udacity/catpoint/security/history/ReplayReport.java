@@ -0,0 +1,40 @@
+package com.udacity.catpoint.security.history;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of one {@link ReplayEngine#replay} run.
+ *
+ * @param eventCount Events replayed
+ * @param elapsedNanos Time taken to replay them, including any waiting for the original pacing
+ * @param alarmChanges Times the alarm status changed during the replay
+ * @param firstMismatch Number of the first event after which the alarm status differed from the
+ *                      recorded one, or -1 if every event reproduced it
+ * @param expectedStatus The recorded alarm status at the first mismatch, or null
+ * @param actualStatus The replayed alarm status at the first mismatch, or null
+ */
+public record ReplayReport(int eventCount, long elapsedNanos, int alarmChanges, int firstMismatch,
+                           AlarmStatus expectedStatus, AlarmStatus actualStatus) {
+
+    /**
+     * @return true if the replay went through the same alarm statuses as the recording
+     */
+    public boolean isIdentical() {
+        return firstMismatch < 0;
+    }
+
+    public double eventsPerSecond() {
+        return elapsedNanos == 0 ? 0 : eventCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        String outcome = isIdentical() ? "alarm statuses identical"
+                : String.format("alarm status differs from event %d: expected %s but was %s",
+                firstMismatch, expectedStatus, actualStatus);
+        return String.format("%d events in %.1f ms (%.0f events/s), %d alarm changes, %s", eventCount,
+                elapsedNanos / 1e6, eventsPerSecond(), alarmChanges, outcome);
+    }
+}
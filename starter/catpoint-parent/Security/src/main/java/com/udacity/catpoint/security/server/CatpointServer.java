@@ -0,0 +1,356 @@
+package com.udacity.catpoint.security.server;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorEvent;
+import com.udacity.catpoint.security.service.SensorStats;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a {@link SecurityService} without the Swing front end, taking sensor events, arming
+ * changes and camera frames over a small JSON HTTP API:
+ * <ul>
+ *     <li>{@code GET /status} - alarm and arming status, cat verdict and sensor counts</li>
+ *     <li>{@code GET /sensors} - all sensors</li>
+ *     <li>{@code POST /sensors} - add a sensor, body {@code {"name": "Front door", "sensorType": "DOOR"}}</li>
+ *     <li>{@code POST /sensors/events} - apply a batch of activation changes, body
+ *     {@code [{"sensorId": "...", "active": true}, ...]}</li>
+ *     <li>{@code PUT /arming} - set the arming status, body {@code {"armingStatus": "ARMED_HOME"}}</li>
+ *     <li>{@code POST /images?camera=front} - classify a PNG or JPEG frame, answered before the
+ *     frame has been classified</li>
+ * </ul>
+ * Requests are handled on a fixed pool with a bounded queue. Once the queue is full, further
+ * requests are answered with {@code 503 Service Unavailable} and a {@code Retry-After} header by a
+ * separate thread that does nothing else, so clients back off instead of piling up work, and
+ * the thread accepting connections never runs a handler itself.
+ */
+public class CatpointServer implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    //requests waiting to be turned away; past this they are dropped without an answer
+    private static final int OVERFLOW_QUEUE_CAPACITY = 256;
+
+    //set on the overflow thread while it answers a request the pool had no room for
+    private static final ThreadLocal<Boolean> shedding = ThreadLocal.withInitial(() -> false);
+
+    private final SecurityService securityService;
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor overflow;
+
+    /**
+     * @param address Address to listen on, port 0 picks a free port
+     * @param threads Requests handled at once
+     * @param queueCapacity Requests waiting for a thread before the server pushes back
+     */
+    public CatpointServer(SecurityService securityService, InetSocketAddress address, int threads,
+                          int queueCapacity) throws IOException {
+        this.securityService = securityService;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.overflow = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(OVERFLOW_QUEUE_CAPACITY), r -> {
+            Thread t = new Thread(r, "catpoint-http-overflow");
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "catpoint-http-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, (request, pool) -> overflow.execute(() -> {
+            shedding.set(true);
+            try {
+                request.run();
+            } finally {
+                shedding.set(false);
+            }
+        }));
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/status", handler("GET", this::status));
+        server.createContext("/sensors", exchange -> {
+            if (exchange.getRequestURI().getPath().equals("/sensors/events")) {
+                handler("POST", this::sensorEvents).handle(exchange);
+            } else if (exchange.getRequestMethod().equals("POST")) {
+                handler("POST", this::addSensor).handle(exchange);
+            } else {
+                handler("GET", this::sensors).handle(exchange);
+            }
+        });
+        server.createContext("/arming", handler("PUT", this::arming));
+        server.createContext("/images", handler("POST", this::image));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for requests in progress, and stops the pool.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        overflow.shutdown();
+    }
+
+    /**
+     * Handles one request and writes the response.
+     */
+    @FunctionalInterface
+    private interface Endpoint {
+        /**
+         * @return the response status code
+         */
+        int handle(HttpExchange exchange, JsonWriter response) throws IOException;
+    }
+
+    /**
+     * Wraps an endpoint with method checks and error handling. Responses are written to a buffer
+     * first, so an endpoint that fails halfway still gets a clean error response.
+     */
+    private static HttpHandler handler(String method, Endpoint endpoint) {
+        return exchange -> {
+            try (exchange) {
+                if (shedding.get()) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    respond(exchange, 503, error("Server busy"));
+                    return;
+                }
+                if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    respond(exchange, 405, error("Use " + method));
+                    return;
+                }
+                ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+                int status;
+                try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8))) {
+                    status = endpoint.handle(exchange, writer);
+                } catch (IllegalArgumentException | IllegalStateException | MalformedJsonException
+                         | EOFException e) {
+                    //unknown enum constant, malformed UUID, malformed or truncated JSON
+                    respond(exchange, 400, error(e.getMessage()));
+                    return;
+                } catch (RuntimeException e) {
+                    respond(exchange, 500, error(e.toString()));
+                    return;
+                }
+                respond(exchange, status, body.toByteArray());
+            }
+        };
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static byte[] error(String message) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8))) {
+            writer.beginObject().name("error").value(message).endObject();
+        }
+        return body.toByteArray();
+    }
+
+    private static JsonReader reader(HttpExchange exchange) {
+        return new JsonReader(new InputStreamReader(new BufferedInputStream(exchange.getRequestBody()),
+                StandardCharsets.UTF_8));
+    }
+
+    private int status(HttpExchange exchange, JsonWriter response) throws IOException {
+        SensorStats stats = securityService.getSensorStats();
+        response.beginObject()
+                .name("alarmStatus").value(securityService.getAlarmStatus().name())
+                .name("armingStatus").value(securityService.getArmingStatus().name())
+                .name("catDetected").value(securityService.isCatDetected())
+                .name("camerasSeeingCat").value(securityService.getCamerasSeeingCat())
+                .name("sensorCount").value(stats.getSensorCount())
+                .name("activeSensorCount").value(stats.getActiveSensorCount())
+                .endObject();
+        return 200;
+    }
+
+    private int sensors(HttpExchange exchange, JsonWriter response) throws IOException {
+        response.beginArray();
+        for (Sensor sensor : securityService.getSensors()) {
+            writeSensor(sensor, response);
+        }
+        response.endArray();
+        return 200;
+    }
+
+    private static void writeSensor(Sensor sensor, JsonWriter response) throws IOException {
+        response.beginObject()
+                .name("sensorId").value(sensor.getSensorId().toString())
+                .name("name").value(sensor.getName())
+                .name("sensorType").value(sensor.getSensorType().name())
+                .name("active").value(sensor.getActive())
+                .endObject();
+    }
+
+    private int addSensor(HttpExchange exchange, JsonWriter response) throws IOException {
+        String name = null;
+        SensorType sensorType = null;
+        try (JsonReader request = reader(exchange)) {
+            request.beginObject();
+            while (request.hasNext()) {
+                switch (request.nextName()) {
+                    case "name" -> name = request.nextString();
+                    case "sensorType" -> sensorType = SensorType.valueOf(request.nextString());
+                    default -> request.skipValue();
+                }
+            }
+            request.endObject();
+        }
+        if (name == null || sensorType == null) {
+            throw new IllegalArgumentException("name and sensorType are required");
+        }
+        Sensor sensor = new Sensor(name, sensorType);
+        securityService.addSensor(sensor);
+        writeSensor(sensor, response);
+        return 201;
+    }
+
+    /**
+     * Applies all events of the request as one batch, so a large batch costs one repository write.
+     * Events for unknown sensors are skipped and reported back.
+     */
+    private int sensorEvents(HttpExchange exchange, JsonWriter response) throws IOException {
+        List<SensorEvent> events = new ArrayList<>();
+        List<String> unknown = new ArrayList<>();
+        try (JsonReader request = reader(exchange)) {
+            request.beginArray();
+            while (request.hasNext()) {
+                String sensorId = null;
+                Boolean active = null;
+                request.beginObject();
+                while (request.hasNext()) {
+                    switch (request.nextName()) {
+                        case "sensorId" -> sensorId = request.nextString();
+                        case "active" -> active = request.nextBoolean();
+                        default -> request.skipValue();
+                    }
+                }
+                request.endObject();
+                if (sensorId == null || active == null) {
+                    throw new IllegalArgumentException("sensorId and active are required");
+                }
+                Sensor sensor = securityService.findSensor(UUID.fromString(sensorId));
+                if (sensor == null) {
+                    unknown.add(sensorId);
+                } else {
+                    events.add(new SensorEvent(sensor, active));
+                }
+            }
+            request.endArray();
+        }
+        securityService.applySensorEvents(events);
+        response.beginObject().name("applied").value(events.size()).name("unknown").beginArray();
+        for (String sensorId : unknown) {
+            response.value(sensorId);
+        }
+        response.endArray().endObject();
+        return 200;
+    }
+
+    private int arming(HttpExchange exchange, JsonWriter response) throws IOException {
+        ArmingStatus armingStatus = null;
+        try (JsonReader request = reader(exchange)) {
+            request.beginObject();
+            while (request.hasNext()) {
+                if (request.nextName().equals("armingStatus") && request.peek() == JsonToken.STRING) {
+                    armingStatus = ArmingStatus.valueOf(request.nextString());
+                } else {
+                    request.skipValue();
+                }
+            }
+            request.endObject();
+        }
+        if (armingStatus == null) {
+            throw new IllegalArgumentException("armingStatus is required");
+        }
+        securityService.setArmingStatus(armingStatus);
+        return status(exchange, response);
+    }
+
+    /**
+     * Queues the frame for classification and answers straight away. When a camera sends frames
+     * faster than they are classified, older frames are dropped in favour of newer ones.
+     */
+    private int image(HttpExchange exchange, JsonWriter response) throws IOException {
+        String cameraId = queryParameter(exchange, "camera");
+        BufferedImage image;
+        try (InputStream in = exchange.getRequestBody()) {
+            image = ImageIO.read(in);
+        }
+        if (image == null) {
+            throw new IllegalArgumentException("Body is not a readable image");
+        }
+        if (cameraId == null) {
+            securityService.processImageAsync(image);
+        } else {
+            securityService.processImageAsync(cameraId, image);
+        }
+        response.beginObject().name("queued").value(true).endObject();
+        return 202;
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.udacity.catpoint.security.server;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.image.service.MotionGatedImageService;
+import com.udacity.catpoint.security.camera.DirectoryIngestor;
+import com.udacity.catpoint.security.data.LogStructuredSecurityRepositoryImpl;
+import com.udacity.catpoint.security.history.EventLogWriter;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Launches the security system without a user interface, for example on a gateway box.
+ * <p>
+ * Usage: {@code CatpointServerApp [port] [data directory] [snapshot directory]}, by default port
+ * 8080 and {@code ~/.catpoint}. State is kept in a write-ahead log in the data directory, and the
+ * inputs of each run are recorded to a new {@code history-<start millis>.log} there, which
+ * {@link com.udacity.catpoint.security.history.HistoryReplayApp} can play back. The history is
+ * written out every {@value #HISTORY_FLUSH_SECONDS} second, so a crash loses at most that much.
+ * <p>
+ * If a snapshot directory is given, each of its subdirectories is watched for the snapshots of
+ * the camera named after it, and snapshots dropped directly into it go to the default camera.
+ */
+public class CatpointServerApp {
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int HISTORY_FLUSH_SECONDS = 1;
+
+    private static final Logger log = LoggerFactory.getLogger(CatpointServerApp.class);
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Path dataDirectory = args.length > 1 ? Path.of(args[1]) : Path.of(System.getProperty("user.home"), ".catpoint");
+
+        LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dataDirectory);
+        SecurityService securityService = new SecurityService(repository,
+                new MotionGatedImageService(new FakeImageService()));
+        securityService.getMetrics().register("catpoint-server");
+        EventLogWriter history = EventLogWriter.start(securityService,
+                dataDirectory.resolve("history-" + System.currentTimeMillis() + ".log"));
+        ScheduledExecutorService historyFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catpoint-history-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        historyFlusher.scheduleWithFixedDelay(() -> {
+            try {
+                history.flush();
+            } catch (IOException e) {
+                log.warn("History log can no longer be written, recording stopped", e);
+                historyFlusher.shutdown();
+            }
+        }, HISTORY_FLUSH_SECONDS, HISTORY_FLUSH_SECONDS, TimeUnit.SECONDS);
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        CatpointServer server = new CatpointServer(securityService, new InetSocketAddress(port), threads,
+                CatpointServer.DEFAULT_QUEUE_CAPACITY);
+        DirectoryIngestor ingestor = args.length > 2 ? watchSnapshots(securityService, Path.of(args[2])) : null;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (ingestor != null) {
+                try {
+                    ingestor.close();
+                } catch (IOException e) {
+                    //shutting down anyway
+                }
+            }
+            server.close();
+            historyFlusher.shutdown();
+            try {
+                history.close();
+            } catch (IOException e) {
+                //shutting down anyway
+            }
+            repository.close();
+        }, "catpoint-shutdown"));
+        server.start();
+        log.info("Catpoint server listening on port {}", server.getPort());
+    }
+
+    private static DirectoryIngestor watchSnapshots(SecurityService securityService, Path snapshotDirectory)
+            throws IOException {
+        DirectoryIngestor ingestor = new DirectoryIngestor(securityService);
+        ingestor.watch(snapshotDirectory, SecurityService.DEFAULT_CAMERA_ID);
+        List<Path> cameraDirectories;
+        try (Stream<Path> files = Files.list(snapshotDirectory)) {
+            cameraDirectories = files.filter(Files::isDirectory).sorted().toList();
+        }
+        for (Path cameraDirectory : cameraDirectories) {
+            ingestor.watch(cameraDirectory, cameraDirectory.getFileName().toString());
+        }
+        ingestor.register("catpoint-server");
+        return ingestor;
+    }
+}
@@ -0,0 +1,467 @@
+package com.udacity.catpoint.security.server;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Non-blocking TCP and UDP listener for sensor gateways that push fixed-size binary frames:
+ * <pre>
+ *     [long uuidMostSignificantBits][long uuidLeastSignificantBits][byte active][long timestampMillis]
+ * </pre>
+ * all big-endian, {@value #FRAME_SIZE} bytes per frame. A TCP stream or a datagram may carry any
+ * number of frames back to back.
+ * <p>
+ * One thread serves all connections. Frames are decoded straight from direct buffers, and the
+ * frames of all connections that were readable in one pass are applied to the
+ * {@link SecurityService} as a single batch. Frames that do not change their sensor, such as
+ * periodic heartbeats, are counted but not passed on, so steady traffic creates no objects per
+ * frame. After each batch every sender gets one acknowledgement covering all its frames:
+ * <pre>
+ *     [int framesAccepted][int framesForUnknownSensors][long lastTimestampMillis]
+ * </pre>
+ * For TCP, acknowledgements that cannot be written straight away are merged into the next one.
+ * <p>
+ * Closing the listener, or a failure of the selector, closes every gateway connection, so
+ * gateways see the end of the stream instead of waiting for an acknowledgement.
+ */
+public class SensorFrameListener implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SensorFrameListener.class);
+
+    public static final int FRAME_SIZE = 16 + 1 + 8;
+    public static final int ACK_SIZE = 4 + 4 + 8;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    //largest datagram we accept, a whole number of frames
+    private static final int DATAGRAM_SIZE = FRAME_SIZE * 2048;
+
+    private final SecurityService securityService;
+    private final Selector selector;
+    private final ServerSocketChannel tcpChannel;
+    private final DatagramChannel udpChannel;
+    private final ByteBuffer datagramBuffer = ByteBuffer.allocateDirect(DATAGRAM_SIZE);
+    private final ByteBuffer datagramAck = ByteBuffer.allocateDirect(ACK_SIZE);
+    private final Thread thread;
+    private volatile boolean closing;
+    //held while closing the selector, so close() never wakes up one that is already closed
+    private final Object selectorLock = new Object();
+
+    //only used by the listener thread
+    private final List<SensorEvent> batch = new ArrayList<>();
+    private final List<Connection> readConnections = new ArrayList<>();
+    private final List<SocketAddress> datagramSenders = new ArrayList<>();
+    private final List<Ack> datagramAcks = new ArrayList<>();
+    private SensorLookup sensors;
+    //the service's sensor set version the lookup was built from
+    private long lookupVersion;
+    //batchMarks[slot] == batchNumber if the sensor in that slot has an event in the current batch
+    private long[] batchMarks;
+    private long batchNumber = 1;
+
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder unknownFrames = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * Frames read from a sender since its last acknowledgement.
+     */
+    private static final class Ack {
+        int accepted;
+        int unknown;
+        long lastTimestamp;
+
+        void writeTo(ByteBuffer buffer) {
+            buffer.putInt(accepted).putInt(unknown).putLong(lastTimestamp);
+            accepted = 0;
+            unknown = 0;
+        }
+    }
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        final ByteBuffer out = ByteBuffer.allocateDirect(ACK_SIZE);
+        final Ack ack = new Ack();
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            out.flip();
+        }
+    }
+
+    /**
+     * @param tcpAddress Address to accept TCP connections on, or null for none
+     * @param udpAddress Address to receive datagrams on, or null for none
+     */
+    public SensorFrameListener(SecurityService securityService, InetSocketAddress tcpAddress,
+                               InetSocketAddress udpAddress) throws IOException {
+        this.securityService = securityService;
+        this.selector = Selector.open();
+        try {
+            if (tcpAddress != null) {
+                tcpChannel = ServerSocketChannel.open();
+                tcpChannel.bind(tcpAddress);
+                tcpChannel.configureBlocking(false);
+                tcpChannel.register(selector, SelectionKey.OP_ACCEPT);
+            } else {
+                tcpChannel = null;
+            }
+            if (udpAddress != null) {
+                udpChannel = DatagramChannel.open();
+                udpChannel.bind(udpAddress);
+                udpChannel.configureBlocking(false);
+                udpChannel.register(selector, SelectionKey.OP_READ);
+            } else {
+                udpChannel = null;
+            }
+        } catch (IOException e) {
+            selector.close();
+            throw e;
+        }
+        this.thread = new Thread(this::run, "catpoint-sensor-listener");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * @return the TCP port, or -1 if not listening for TCP
+     */
+    public int getTcpPort() throws IOException {
+        return tcpChannel == null ? -1 : ((InetSocketAddress) tcpChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * @return the UDP port, or -1 if not listening for UDP
+     */
+    public int getUdpPort() throws IOException {
+        return udpChannel == null ? -1 : ((InetSocketAddress) udpChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * @return frames received, including those for unknown sensors
+     */
+    public long getFrameCount() {
+        return frames.sum();
+    }
+
+    public long getUnknownFrameCount() {
+        return unknownFrames.sum();
+    }
+
+    /**
+     * @return batches applied to the security service
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Stops the listener thread, which closes the gateway connections and the selector on its way
+     * out.
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        if (thread.getState() == Thread.State.NEW) {
+            closeChannels();
+        } else {
+            synchronized (selectorLock) {
+                if (selector.isOpen()) {
+                    selector.wakeup();
+                }
+            }
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (tcpChannel != null) {
+            tcpChannel.close();
+        }
+        if (udpChannel != null) {
+            udpChannel.close();
+        }
+    }
+
+    /**
+     * Writes one frame at the buffer's position, for gateways and tests.
+     */
+    public static ByteBuffer putFrame(ByteBuffer buffer, UUID sensorId, boolean active, long timestampMillis) {
+        return buffer.putLong(sensorId.getMostSignificantBits())
+                .putLong(sensorId.getLeastSignificantBits())
+                .put(active ? (byte) 1 : (byte) 0)
+                .putLong(timestampMillis);
+    }
+
+    private void run() {
+        try {
+            while (!closing) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+                flushBatch();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closing) {
+                log.error("Sensor frame listener failed, no more frames will be received", e);
+                closing = true;
+            }
+        } finally {
+            closeChannels();
+        }
+    }
+
+    /**
+     * Closes every registered channel, gateway connections included, then the selector. Only
+     * called by the listener thread, or by {@link #close()} if that thread never started.
+     */
+    private void closeChannels() {
+        try {
+            for (SelectionKey key : new ArrayList<>(selector.keys())) {
+                closeQuietly(key);
+            }
+        } catch (ClosedSelectorException e) {
+            //already closed
+        }
+        synchronized (selectorLock) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.warn("Unable to close the sensor frame selector", e);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                SocketChannel channel = tcpChannel.accept();
+                if (channel != null) {
+                    channel.configureBlocking(false);
+                    channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                }
+                return;
+            }
+            if (key.channel() == udpChannel) {
+                receiveDatagrams();
+                return;
+            }
+            Connection connection = (Connection) key.attachment();
+            if (key.isWritable() && writeAck(connection)) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+            if (key.isValid() && key.isReadable()) {
+                read(key, connection);
+            }
+        } catch (IOException e) {
+            //a broken connection only loses its own unacknowledged frames
+            closeQuietly(key);
+        }
+    }
+
+    private void read(SelectionKey key, Connection connection) throws IOException {
+        int read = connection.channel.read(connection.in);
+        if (read < 0) {
+            closeQuietly(key);
+            return;
+        }
+        connection.in.flip();
+        boolean decoded = decode(connection.in, connection.ack);
+        //keep a partly received frame for the next read
+        connection.in.compact();
+        if (decoded && !readConnections.contains(connection)) {
+            readConnections.add(connection);
+        }
+    }
+
+    private void receiveDatagrams() throws IOException {
+        SocketAddress sender;
+        while ((sender = udpChannel.receive(datagramBuffer.clear())) != null) {
+            datagramBuffer.flip();
+            Ack ack = new Ack();
+            //a trailing partial frame in a datagram can never be completed, so it is ignored
+            if (decode(datagramBuffer, ack)) {
+                datagramSenders.add(sender);
+                datagramAcks.add(ack);
+            }
+        }
+    }
+
+    /**
+     * Decodes all whole frames in the buffer into the current batch.
+     *
+     * @return true if at least one frame was decoded
+     */
+    private boolean decode(ByteBuffer buffer, Ack ack) {
+        boolean decoded = false;
+        while (buffer.remaining() >= FRAME_SIZE) {
+            long msb = buffer.getLong();
+            long lsb = buffer.getLong();
+            boolean active = buffer.get() != 0;
+            long timestamp = buffer.getLong();
+            decoded = true;
+            frames.increment();
+            ack.lastTimestamp = timestamp;
+            int slot = slotOf(msb, lsb);
+            if (slot < 0) {
+                unknownFrames.increment();
+                ack.unknown++;
+                continue;
+            }
+            ack.accepted++;
+            Sensor sensor = sensors.sensorAt(slot);
+            //a frame that repeats the sensor's state cannot change anything, unless it undoes an
+            //earlier frame of the same batch
+            if (sensor.getActive() != active || batchMarks[slot] == batchNumber) {
+                batch.add(new SensorEvent(sensor, active));
+                batchMarks[slot] = batchNumber;
+            }
+        }
+        return decoded;
+    }
+
+    private int slotOf(long msb, long lsb) {
+        long version = securityService.getSensorSetVersion();
+        if (sensors == null || version != lookupVersion) {
+            //sensors were added, replaced or removed since the lookup was built
+            rebuildLookup(version);
+        }
+        return sensors.slotOf(msb, lsb);
+    }
+
+    private void rebuildLookup(long version) {
+        //the version is read before the sensors, so a change in between triggers another rebuild
+        lookupVersion = version;
+        sensors = new SensorLookup(securityService.getSensors());
+        batchMarks = new long[sensors.capacity()];
+        for (SensorEvent event : batch) {
+            UUID sensorId = event.getSensor().getSensorId();
+            int slot = sensors.slotOf(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+            if (slot >= 0) {
+                batchMarks[slot] = batchNumber;
+            }
+        }
+    }
+
+    /**
+     * Drops events for sensors that were removed after their frame was looked up.
+     */
+    private void dropRemovedSensors() {
+        if (securityService.getSensorSetVersion() == lookupVersion) {
+            return;
+        }
+        batch.removeIf(event -> {
+            Sensor sensor = event.getSensor();
+            if (securityService.findSensor(sensor.getSensorId()) != null) {
+                return false;
+            }
+            unknownFrames.increment();
+            return true;
+        });
+    }
+
+    /**
+     * Applies the frames of this pass and acknowledges them.
+     */
+    private void flushBatch() {
+        if (readConnections.isEmpty() && datagramSenders.isEmpty()) {
+            return;
+        }
+        dropRemovedSensors();
+        if (!batch.isEmpty()) {
+            securityService.applySensorEvents(batch);
+            batch.clear();
+            batchNumber++;
+            batches.increment();
+        }
+        for (Connection connection : readConnections) {
+            SelectionKey key = connection.channel.keyFor(selector);
+            try {
+                if (!connection.out.hasRemaining()) {
+                    connection.out.clear();
+                    connection.ack.writeTo(connection.out);
+                    connection.out.flip();
+                }
+                if (!writeAck(connection) && key != null && key.isValid()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                closeQuietly(key);
+            }
+        }
+        readConnections.clear();
+        for (int i = 0; i < datagramSenders.size(); i++) {
+            datagramAck.clear();
+            datagramAcks.get(i).writeTo(datagramAck);
+            datagramAck.flip();
+            try {
+                udpChannel.send(datagramAck, datagramSenders.get(i));
+            } catch (IOException e) {
+                //acknowledgements are best effort over UDP
+            }
+        }
+        datagramSenders.clear();
+        datagramAcks.clear();
+    }
+
+    /**
+     * Writes the pending acknowledgement, then the one that built up while it was pending.
+     *
+     * @return true if everything was written
+     */
+    private static boolean writeAck(Connection connection) throws IOException {
+        connection.channel.write(connection.out);
+        if (connection.out.hasRemaining()) {
+            return false;
+        }
+        if (connection.ack.accepted + connection.ack.unknown > 0) {
+            connection.out.clear();
+            connection.ack.writeTo(connection.out);
+            connection.out.flip();
+            connection.channel.write(connection.out);
+        }
+        return !connection.out.hasRemaining();
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        if (key == null) {
+            return;
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            //already broken
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.udacity.catpoint.security.server;
+
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.util.Collection;
+
+/**
+ * Finds sensors by the two halves of their UUID, so ids read off the wire can be resolved without
+ * creating a {@link java.util.UUID} for every frame. Open addressing over plain arrays; built once
+ * and then only read, so it can be shared between threads once published.
+ */
+final class SensorLookup {
+
+    private final long[] mostSignificant;
+    private final long[] leastSignificant;
+    private final Sensor[] sensors;
+    private final int mask;
+
+    SensorLookup(Collection<Sensor> sensors) {
+        //at most half full, so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(4, sensors.size() * 2 - 1)) << 1;
+        this.mostSignificant = new long[capacity];
+        this.leastSignificant = new long[capacity];
+        this.sensors = new Sensor[capacity];
+        this.mask = capacity - 1;
+        for (Sensor sensor : sensors) {
+            long msb = sensor.getSensorId().getMostSignificantBits();
+            long lsb = sensor.getSensorId().getLeastSignificantBits();
+            int slot = slot(msb, lsb);
+            while (this.sensors[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            mostSignificant[slot] = msb;
+            leastSignificant[slot] = lsb;
+            this.sensors[slot] = sensor;
+        }
+    }
+
+    /**
+     * @return the slot of the sensor with the given id, or -1 if there is none
+     */
+    int slotOf(long msb, long lsb) {
+        int slot = slot(msb, lsb);
+        while (sensors[slot] != null) {
+            if (mostSignificant[slot] == msb && leastSignificant[slot] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    Sensor sensorAt(int slot) {
+        return sensors[slot];
+    }
+
+    /**
+     * @return the number of slots, slots are numbered from 0
+     */
+    int capacity() {
+        return sensors.length;
+    }
+
+    private int slot(long msb, long lsb) {
+        long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
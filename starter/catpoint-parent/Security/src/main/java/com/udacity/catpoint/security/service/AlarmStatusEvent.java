@@ -0,0 +1,25 @@
+package com.udacity.catpoint.security.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for the system moving from one alarm status to another.
+ */
+@Name("com.udacity.catpoint.AlarmStatusChange")
+@Label("Alarm Status Change")
+@Category({"Catpoint", "Security"})
+@Description("The alarm status of the system changed")
+@StackTrace(false)
+final class AlarmStatusEvent extends Event {
+
+    @Label("Previous Status")
+    String previousStatus;
+
+    @Label("Status")
+    String status;
+}
@@ -0,0 +1,25 @@
+package com.udacity.catpoint.security.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for the system being armed or disarmed.
+ */
+@Name("com.udacity.catpoint.ArmingStatusChange")
+@Label("Arming Status Change")
+@Category({"Catpoint", "Security"})
+@Description("The arming status of the system changed")
+@StackTrace(false)
+final class ArmingStatusEvent extends Event {
+
+    @Label("Previous Status")
+    String previousStatus;
+
+    @Label("Status")
+    String status;
+}
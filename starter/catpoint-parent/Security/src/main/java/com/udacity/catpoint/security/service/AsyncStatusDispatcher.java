@@ -0,0 +1,293 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers status updates on an executor instead of the thread that reported them, so a slow
+ * listener cannot hold up sensor or image processing.
+ * <p>
+ * Each listener gets its own bounded mailbox and receives its updates in order, one at a time.
+ * An alarm status update that has not been delivered yet is replaced when a newer one arrives
+ * straight after it, since the listener only cares about the latest status; the same goes for
+ * repeated "sensors changed" updates. Updates are only merged with the one queued last, so a
+ * listener never sees an alarm status before a cat or sensor update that was reported ahead of
+ * it. What happens when a mailbox is still full after that is decided by the {@link OverflowPolicy}.
+ */
+public class AsyncStatusDispatcher implements StatusDispatcher, AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * How to handle an update for a listener whose mailbox is full.
+     */
+    public enum OverflowPolicy {
+        /** Discard the oldest undelivered update to make room. */
+        DROP_OLDEST,
+        /** Discard the new update. */
+        DROP_NEWEST,
+        /**
+         * Make the reporting thread wait for room. Updates raised from inside a listener callback
+         * are never blocked, since that thread may be the one that has to make the room.
+         */
+        BLOCK
+    }
+
+    private enum Kind { ALARM, CAT, SENSORS }
+
+    private record StatusEvent(Kind kind, AlarmStatus status, boolean catDetected) {
+        void deliverTo(StatusListener listener) {
+            switch (kind) {
+                case ALARM -> listener.notify(status);
+                case CAT -> listener.catDetected(catDetected);
+                case SENSORS -> listener.sensorStatusChanged();
+            }
+        }
+    }
+
+    //events carry no per-call state, so build them once
+    private static final Map<AlarmStatus, StatusEvent> ALARM_EVENTS = new EnumMap<>(AlarmStatus.class);
+    private static final StatusEvent CAT_DETECTED = new StatusEvent(Kind.CAT, null, true);
+    private static final StatusEvent NO_CAT_DETECTED = new StatusEvent(Kind.CAT, null, false);
+    private static final StatusEvent SENSORS_CHANGED = new StatusEvent(Kind.SENSORS, null, false);
+
+    static {
+        for (AlarmStatus status : AlarmStatus.values()) {
+            ALARM_EVENTS.put(status, new StatusEvent(Kind.ALARM, status, false));
+        }
+    }
+
+    //deliveries handled per mailbox task before yielding the executor to other listeners
+    private static final int DELIVERY_BATCH = 32;
+
+    private static final ThreadLocal<Boolean> dispatching = ThreadLocal.withInitial(() -> false);
+
+    private final Map<StatusListener, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final LongAdder droppedEvents = new LongAdder();
+
+    /**
+     * Creates a dispatcher with its own delivery thread.
+     */
+    public AsyncStatusDispatcher() {
+        this(DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    public AsyncStatusDispatcher(int queueCapacity, OverflowPolicy overflowPolicy) {
+        this(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "catpoint-status-dispatcher");
+            t.setDaemon(true);
+            return t;
+        }), true, queueCapacity, overflowPolicy);
+    }
+
+    /**
+     * @param executor Runs the deliveries, for example {@code SwingUtilities::invokeLater} for
+     *                 listeners that touch Swing components. Not shut down by {@link #close()}.
+     * @param queueCapacity Maximum undelivered updates held per listener
+     * @param overflowPolicy What to do when a listener's mailbox is full
+     */
+    public AsyncStatusDispatcher(Executor executor, int queueCapacity, OverflowPolicy overflowPolicy) {
+        this(executor, false, queueCapacity, overflowPolicy);
+    }
+
+    private AsyncStatusDispatcher(Executor executor, boolean owned, int queueCapacity, OverflowPolicy overflowPolicy) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        this.executor = executor;
+        this.ownedExecutor = owned ? (ExecutorService) executor : null;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    @Override
+    public void addStatusListener(StatusListener statusListener) {
+        mailboxes.computeIfAbsent(statusListener, Mailbox::new);
+    }
+
+    @Override
+    public void removeStatusListener(StatusListener statusListener) {
+        Mailbox mailbox = mailboxes.remove(statusListener);
+        if (mailbox != null) {
+            mailbox.close();
+        }
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        publish(ALARM_EVENTS.get(status));
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        publish(catDetected ? CAT_DETECTED : NO_CAT_DETECTED);
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        publish(SENSORS_CHANGED);
+    }
+
+    /**
+     * @return undelivered updates across all listeners
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Mailbox mailbox : mailboxes.values()) {
+            depth += mailbox.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return updates discarded because a mailbox was full
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.sum();
+    }
+
+    /**
+     * Stops the delivery thread if this dispatcher created it. Undelivered updates are discarded.
+     */
+    @Override
+    public void close() {
+        mailboxes.values().forEach(Mailbox::close);
+        mailboxes.clear();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+        }
+    }
+
+    private void publish(StatusEvent event) {
+        for (Mailbox mailbox : mailboxes.values()) {
+            mailbox.offer(event);
+        }
+    }
+
+    private final class Mailbox {
+        private final StatusListener listener;
+        private final ArrayDeque<StatusEvent> queue = new ArrayDeque<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private boolean closed;
+
+        Mailbox(StatusListener listener) {
+            this.listener = listener;
+        }
+
+        void offer(StatusEvent event) {
+            synchronized (this) {
+                if (closed || !enqueue(event)) {
+                    return;
+                }
+            }
+            schedule();
+        }
+
+        /**
+         * @return true if the event was queued
+         */
+        private boolean enqueue(StatusEvent event) {
+            StatusEvent last = queue.peekLast();
+            if (last != null && last.kind() == event.kind()) {
+                if (event.kind() == Kind.ALARM) {
+                    queue.pollLast();
+                } else if (event.kind() == Kind.SENSORS) {
+                    return false;
+                }
+            }
+            while (queue.size() >= queueCapacity && !closed) {
+                OverflowPolicy policy = overflowPolicy == OverflowPolicy.BLOCK && dispatching.get()
+                        ? OverflowPolicy.DROP_OLDEST : overflowPolicy;
+                switch (policy) {
+                    case DROP_OLDEST -> {
+                        queue.pollFirst();
+                        droppedEvents.increment();
+                    }
+                    case DROP_NEWEST -> {
+                        droppedEvents.increment();
+                        return false;
+                    }
+                    case BLOCK -> {
+                        schedule();
+                        try {
+                            wait();
+                        } catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                            droppedEvents.increment();
+                            return false;
+                        }
+                    }
+                }
+            }
+            return !closed && queue.offer(event);
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            boolean nested = dispatching.get();
+            dispatching.set(true);
+            try {
+                for (int i = 0; i < DELIVERY_BATCH; i++) {
+                    StatusEvent event;
+                    synchronized (this) {
+                        event = closed ? null : queue.pollFirst();
+                        notifyAll();
+                    }
+                    if (event == null) {
+                        break;
+                    }
+                    deliver(event);
+                }
+            } finally {
+                dispatching.set(nested);
+                scheduled.set(false);
+            }
+            //something may have arrived after the last poll, or the batch limit was reached
+            synchronized (this) {
+                if (closed || queue.isEmpty()) {
+                    return;
+                }
+            }
+            schedule();
+        }
+
+        private void deliver(StatusEvent event) {
+            try {
+                event.deliverTo(listener);
+            } catch (RuntimeException e) {
+                //one misbehaving listener must not stop delivery to the others
+                Thread t = Thread.currentThread();
+                t.getUncaughtExceptionHandler().uncaughtException(t, e);
+            }
+        }
+
+        synchronized int size() {
+            return queue.size();
+        }
+
+        synchronized void close() {
+            closed = true;
+            queue.clear();
+            notifyAll();
+        }
+    }
+}
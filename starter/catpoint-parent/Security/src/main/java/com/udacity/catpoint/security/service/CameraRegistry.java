@@ -0,0 +1,142 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The cameras the {@link SecurityService} has received frames from, each with its own frame
+ * queue and latest verdict. Cameras are registered on their first frame.
+ */
+final class CameraRegistry {
+
+    /**
+     * One camera. Its verdict is only changed while holding the camera's lock, so the service can
+     * keep the number of cameras seeing a cat in step with it.
+     */
+    static final class Camera {
+        private final String id;
+        private volatile FramePipeline pipeline;
+        //guarded by this
+        private boolean seesCat;
+        private boolean removed;
+
+        private Camera(String id) {
+            this.id = id;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        boolean seesCat() {
+            synchronized (this) {
+                return seesCat;
+            }
+        }
+
+        /**
+         * Must be called while holding the camera's lock.
+         */
+        void setSeesCat(boolean seesCat) {
+            this.seesCat = seesCat;
+        }
+
+        /**
+         * Must be called while holding the camera's lock.
+         */
+        boolean isRemoved() {
+            return removed;
+        }
+
+        /**
+         * Must be called while holding the camera's lock.
+         */
+        void markRemoved() {
+            removed = true;
+        }
+    }
+
+    private final Map<String, Camera> cameras = new ConcurrentHashMap<>();
+    private final Function<Camera, FramePipeline> pipelineFactory;
+
+    /**
+     * @param pipelineFactory Builds the frame queue for a new camera
+     */
+    CameraRegistry(Function<Camera, FramePipeline> pipelineFactory) {
+        this.pipelineFactory = pipelineFactory;
+    }
+
+    /**
+     * Returns the camera with the given id, registering it if it is new.
+     */
+    Camera get(String cameraId) {
+        Camera camera = cameras.get(cameraId);
+        if (camera != null) {
+            return camera;
+        }
+        return cameras.computeIfAbsent(cameraId, Camera::new);
+    }
+
+    /**
+     * @return the camera with the given id, or null if it has not sent any images
+     */
+    Camera find(String cameraId) {
+        return cameras.get(cameraId);
+    }
+
+    /**
+     * Returns the camera's frame queue, building it on the camera's first asynchronous frame.
+     */
+    FramePipeline pipelineOf(Camera camera) {
+        FramePipeline pipeline = camera.pipeline;
+        if (pipeline == null) {
+            synchronized (camera) {
+                if (camera.pipeline == null) {
+                    camera.pipeline = pipelineFactory.apply(camera);
+                }
+                pipeline = camera.pipeline;
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * Unregisters a camera. Marking it removed and withdrawing its verdict is left to the caller.
+     *
+     * @return the removed camera, or null if it was not registered
+     */
+    Camera remove(String cameraId) {
+        return cameras.remove(cameraId);
+    }
+
+    /**
+     * Gives every camera that has a frame queue a new one. Frames already queued are still processed.
+     */
+    void rebuildPipelines() {
+        for (Camera camera : cameras.values()) {
+            if (camera.pipeline != null) {
+                camera.pipeline = pipelineFactory.apply(camera);
+            }
+        }
+    }
+
+    Set<String> getCameraIds() {
+        return Set.copyOf(cameras.keySet());
+    }
+
+    /**
+     * @return frames waiting to be classified, over all cameras
+     */
+    int getQueueDepth() {
+        int depth = 0;
+        for (Camera camera : cameras.values()) {
+            FramePipeline pipeline = camera.pipeline;
+            if (pipeline != null) {
+                depth += pipeline.getQueueDepth();
+            }
+        }
+        return depth;
+    }
+}
@@ -0,0 +1,55 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+
+/**
+ * Told about every input the {@link SecurityService} acts on, together with the alarm status the
+ * input left behind, so the inputs can be played back later. Changes the service makes by itself,
+ * such as resetting the sensors when the system is armed, are not reported, since playing back
+ * the input that caused them makes them again.
+ * <p>
+ * Each input comes with a sequence number, taken in the same atomic step that applied it, and the
+ * alarm status that step left behind; see {@link SecurityService#getInputCount()}. Sequence
+ * numbers count up by one per input in the order the inputs took effect. Inputs supplied from
+ * different threads may be reported in a different order, so a recorder that needs the true
+ * order sorts them by sequence number. An arming change is numbered after the sensor resets it
+ * causes, so its alarm status includes them.
+ * <p>
+ * Methods are called on the thread that supplied the input, at times while the service holds a
+ * sensor or camera lock, so they must return quickly, must not block on I/O and must not call
+ * back into the service.
+ */
+public interface EventRecorder {
+
+    /**
+     * Records nothing.
+     */
+    EventRecorder NONE = new EventRecorder() {
+    };
+
+    default void armingStatusSet(long sequence, ArmingStatus armingStatus, AlarmStatus alarmStatus) {
+    }
+
+    default void alarmStatusSet(long sequence, AlarmStatus alarmStatus) {
+    }
+
+    /**
+     * @param sensor The sensor, still with its activation status from before the change
+     */
+    default void sensorActivationSet(long sequence, Sensor sensor, boolean active, AlarmStatus alarmStatus) {
+    }
+
+    default void catVerdict(long sequence, String cameraId, boolean cat, AlarmStatus alarmStatus) {
+    }
+
+    default void sensorAdded(long sequence, Sensor sensor, AlarmStatus alarmStatus) {
+    }
+
+    default void sensorRemoved(long sequence, Sensor sensor, AlarmStatus alarmStatus) {
+    }
+
+    default void cameraRemoved(long sequence, String cameraId, AlarmStatus alarmStatus) {
+    }
+}
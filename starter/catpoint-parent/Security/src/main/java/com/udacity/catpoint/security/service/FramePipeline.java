@@ -0,0 +1,167 @@
+package com.udacity.catpoint.security.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Bounded queue of camera frames waiting for classification, worked off by a limited number of
+ * tasks on an executor. Callers get a future for each frame and never wait for the classifier.
+ * Several pipelines can share one executor; each task hands its thread back after a few frames.
+ * <p>
+ * When the queue is full the oldest waiting frame is dropped, since a newer frame of the same
+ * camera makes it obsolete; its future is cancelled. Verdicts are only passed on when they belong
+ * to a newer frame than the last verdict passed on, so a slow classification of an old frame
+ * can never overwrite the result for a more recent one.
+ * <p>
+ * If the executor stops taking tasks, for example because it is shut down to make way for a new
+ * one, a task that is already running finishes the queue on its own thread, so no queued frame is
+ * left without a verdict.
+ */
+class FramePipeline {
+
+    //frames classified per executor task before the thread is offered to other pipelines sharing it
+    private static final int FRAMES_PER_TASK = 8;
+
+    private record Frame(long sequence, BufferedImage image, CompletableFuture<Boolean> result) {
+    }
+
+    private final Predicate<BufferedImage> classifier;
+    private final Consumer<Boolean> verdictSink;
+    private final Executor executor;
+    private final int queueCapacity;
+    private final int maxWorkers;
+
+    //guarded by this
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private long nextSequence;
+    private int activeWorkers;
+    private long droppedFrames;
+
+    //guarded by verdictLock
+    private final Object verdictLock = new Object();
+    private long newestVerdict = -1;
+
+    /**
+     * @param classifier Decides whether a frame shows a cat
+     * @param verdictSink Receives verdicts that are newer than any passed on before
+     * @param executor Runs the classification tasks
+     * @param queueCapacity Maximum frames waiting for a worker
+     * @param maxWorkers Maximum frames classified at the same time
+     */
+    FramePipeline(Predicate<BufferedImage> classifier, Consumer<Boolean> verdictSink, Executor executor,
+                  int queueCapacity, int maxWorkers) {
+        if (queueCapacity < 1 || maxWorkers < 1) {
+            throw new IllegalArgumentException("queueCapacity and maxWorkers must be positive");
+        }
+        this.classifier = classifier;
+        this.verdictSink = verdictSink;
+        this.executor = executor;
+        this.queueCapacity = queueCapacity;
+        this.maxWorkers = maxWorkers;
+    }
+
+    /**
+     * Queues a frame for classification.
+     *
+     * @return completes with the frame's verdict, or is cancelled if the frame was dropped unprocessed
+     */
+    CompletableFuture<Boolean> submit(BufferedImage image) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Frame dropped = null;
+        boolean startWorker = false;
+        synchronized (this) {
+            if (frames.size() >= queueCapacity) {
+                dropped = frames.pollFirst();
+                droppedFrames++;
+            }
+            frames.addLast(new Frame(nextSequence++, image, result));
+            if (activeWorkers < maxWorkers) {
+                activeWorkers++;
+                startWorker = true;
+            }
+        }
+        if (dropped != null) {
+            dropped.result().cancel(false);
+        }
+        if (startWorker) {
+            try {
+                executor.execute(this::work);
+            } catch (RuntimeException e) {
+                List<Frame> stranded;
+                synchronized (this) {
+                    activeWorkers--;
+                    //with no worker left, nothing would ever take the queued frames
+                    stranded = activeWorkers == 0 ? drain() : List.of();
+                }
+                stranded.forEach(frame -> frame.result().completeExceptionally(e));
+                throw e;
+            }
+        }
+        return result;
+    }
+
+    synchronized int getQueueDepth() {
+        return frames.size();
+    }
+
+    synchronized long getDroppedFrameCount() {
+        return droppedFrames;
+    }
+
+    private void work() {
+        int budget = FRAMES_PER_TASK;
+        while (true) {
+            Frame frame;
+            synchronized (this) {
+                frame = frames.pollFirst();
+                if (frame == null) {
+                    activeWorkers--;
+                    return;
+                }
+            }
+            process(frame);
+            if (--budget == 0) {
+                //go to the back of the executor's queue, so a busy camera cannot starve the others
+                try {
+                    executor.execute(this::work);
+                    return;
+                } catch (RuntimeException e) {
+                    //the executor takes no more tasks, so finish the queue on this thread
+                    budget = Integer.MAX_VALUE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every queued frame. Only called with the lock held.
+     */
+    private List<Frame> drain() {
+        List<Frame> drained = new ArrayList<>(frames);
+        frames.clear();
+        return drained;
+    }
+
+    private void process(Frame frame) {
+        boolean verdict;
+        try {
+            verdict = classifier.test(frame.image());
+        } catch (RuntimeException e) {
+            frame.result().completeExceptionally(e);
+            return;
+        }
+        synchronized (verdictLock) {
+            if (frame.sequence() > newestVerdict) {
+                newestVerdict = frame.sequence();
+                verdictSink.accept(verdict);
+            }
+        }
+        frame.result().complete(verdict);
+    }
+}
@@ -0,0 +1,57 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.LatencyHistogram;
+
+import javax.management.ConstructorParameters;
+
+/**
+ * Point-in-time summary of a {@link LatencyHistogram}, in microseconds.
+ */
+public final class LatencySummary {
+
+    private final long count;
+    private final double mean;
+    private final double p50;
+    private final double p99;
+    private final double max;
+
+    @ConstructorParameters({"count", "mean", "p50", "p99", "max"})
+    public LatencySummary(long count, double mean, double p50, double p99, double max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    static LatencySummary of(LatencyHistogram histogram) {
+        return new LatencySummary(histogram.getCount(), histogram.getMean() / 1_000.0,
+                histogram.getValueAtPercentile(50) / 1_000.0, histogram.getValueAtPercentile(99) / 1_000.0,
+                histogram.getMax() / 1_000.0);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d calls, mean %.1fus, p50 %.1fus, p99 %.1fus, max %.1fus", count, mean, p50, p99, max);
+    }
+}
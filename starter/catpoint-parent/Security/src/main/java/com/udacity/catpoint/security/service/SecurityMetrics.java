@@ -0,0 +1,173 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.LatencyHistogram;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Metrics kept by a {@link SecurityService}: how often the alarm and arming statuses changed, how
+ * long repository writes, image service calls and listener callbacks take, and how much work is
+ * queued. Recording never takes a lock, so it adds no contention to the paths it measures. Queue
+ * depths are only read when asked for.
+ * <p>
+ * Call {@link #register(String)} to make the metrics visible over JMX.
+ */
+public final class SecurityMetrics implements SecurityMetricsMXBean {
+
+    public static final String DOMAIN = "com.udacity.catpoint";
+
+    private final LongAdder[][] alarmTransitions = newCounters(AlarmStatus.values().length);
+    private final LongAdder[][] armingTransitions = newCounters(ArmingStatus.values().length);
+    private final LatencyHistogram repositoryWrites = new LatencyHistogram();
+    private final LatencyHistogram classifications = new LatencyHistogram();
+    private final LatencyHistogram listenerDispatches = new LatencyHistogram();
+    private final IntSupplier frameQueueDepth;
+    private final IntSupplier listenerQueueDepth;
+
+    //guarded by this
+    private ObjectName registeredName;
+
+    SecurityMetrics(IntSupplier frameQueueDepth, IntSupplier listenerQueueDepth) {
+        this.frameQueueDepth = frameQueueDepth;
+        this.listenerQueueDepth = listenerQueueDepth;
+    }
+
+    private static LongAdder[][] newCounters(int statuses) {
+        LongAdder[][] counters = new LongAdder[statuses][statuses];
+        for (LongAdder[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = new LongAdder();
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Counts the status changes between two consecutive system states.
+     */
+    void recordTransition(SystemState from, SystemState to) {
+        if (from.alarmStatus() != to.alarmStatus()) {
+            alarmTransitions[from.alarmStatus().ordinal()][to.alarmStatus().ordinal()].increment();
+        }
+        if (from.armingStatus() != to.armingStatus()) {
+            armingTransitions[from.armingStatus().ordinal()][to.armingStatus().ordinal()].increment();
+        }
+    }
+
+    void recordRepositoryWrite(long startNanos) {
+        repositoryWrites.record(System.nanoTime() - startNanos);
+    }
+
+    void recordClassification(long startNanos) {
+        classifications.record(System.nanoTime() - startNanos);
+    }
+
+    void recordListenerDispatch(long startNanos) {
+        listenerDispatches.record(System.nanoTime() - startNanos);
+    }
+
+    public long getAlarmStatusTransitions(AlarmStatus from, AlarmStatus to) {
+        return alarmTransitions[from.ordinal()][to.ordinal()].sum();
+    }
+
+    public long getArmingStatusTransitions(ArmingStatus from, ArmingStatus to) {
+        return armingTransitions[from.ordinal()][to.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getAlarmStatusTransitions() {
+        return transitionsByName(alarmTransitions, AlarmStatus.values());
+    }
+
+    @Override
+    public Map<String, Long> getArmingStatusTransitions() {
+        return transitionsByName(armingTransitions, ArmingStatus.values());
+    }
+
+    private static Map<String, Long> transitionsByName(LongAdder[][] counters, Enum<?>[] statuses) {
+        Map<String, Long> byName = new LinkedHashMap<>();
+        for (Enum<?> from : statuses) {
+            for (Enum<?> to : statuses) {
+                if (from != to) {
+                    byName.put(from.name() + "->" + to.name(), counters[from.ordinal()][to.ordinal()].sum());
+                }
+            }
+        }
+        return byName;
+    }
+
+    @Override
+    public LatencySummary getRepositoryWriteLatency() {
+        return LatencySummary.of(repositoryWrites);
+    }
+
+    @Override
+    public LatencySummary getClassificationLatency() {
+        return LatencySummary.of(classifications);
+    }
+
+    @Override
+    public LatencySummary getListenerDispatchLatency() {
+        return LatencySummary.of(listenerDispatches);
+    }
+
+    @Override
+    public int getFrameQueueDepth() {
+        return frameQueueDepth.getAsInt();
+    }
+
+    @Override
+    public int getListenerQueueDepth() {
+        return listenerQueueDepth.getAsInt();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, replacing an earlier registration.
+     *
+     * @param name Tells several services in one JVM apart
+     * @return the name the metrics were registered under
+     */
+    public synchronized ObjectName register(String name) {
+        unregister();
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=SecurityService,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            registeredName = objectName;
+            return objectName;
+        } catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException
+                 | NotCompliantMBeanException e) {
+            throw new IllegalStateException("Could not register security metrics as " + name, e);
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server, if they were registered.
+     */
+    public synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(registeredName);
+        } catch (InstanceNotFoundException e) {
+            //already gone
+        } catch (MBeanRegistrationException e) {
+            throw new IllegalStateException("Could not unregister " + registeredName, e);
+        }
+        registeredName = null;
+    }
+}
@@ -0,0 +1,30 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link SecurityMetrics}, as seen from JConsole or any other JMX client.
+ * Transitions are keyed {@code FROM->TO}; latencies are in microseconds.
+ */
+public interface SecurityMetricsMXBean {
+
+    Map<String, Long> getAlarmStatusTransitions();
+
+    Map<String, Long> getArmingStatusTransitions();
+
+    LatencySummary getRepositoryWriteLatency();
+
+    LatencySummary getClassificationLatency();
+
+    LatencySummary getListenerDispatchLatency();
+
+    /**
+     * @return frames waiting to be classified, over all cameras
+     */
+    int getFrameQueueDepth();
+
+    /**
+     * @return status updates waiting to be delivered to listeners
+     */
+    int getListenerQueueDepth();
+}
@@ -1,15 +1,29 @@
 package com.udacity.catpoint.security.service;
 
-import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.image.service.ImageService;
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
 
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 
@@ -19,13 +33,50 @@ import java.util.stream.Collectors;
  * <p>
  * This is the class that should contain most of the business logic for our system, and it is the
  * class you will be writing unit tests for.
+ * <p>
+ * The service is safe to drive from many threads at once without a global lock. Alarm status,
+ * arming status, the cat verdict and the active sensor count live in one immutable
+ * {@link SystemState} that is advanced by compare-and-set retries, so every transition is applied
+ * to the latest state and none are lost. The resulting state is then written to the repository
+ * and reported to listeners by whichever thread gets there first, always newest last.
+ * <p>
+ * Status transitions, repository write, image service and listener timings and queue depths are
+ * recorded in the service's {@link SecurityMetrics}. Sensor activations and status transitions are
+ * also emitted as Java Flight Recorder events, and every input can be handed to an
+ * {@link EventRecorder} to be played back later.
  */
 public class SecurityService {
 
-    private FakeImageService imageService;
+    public static final int DEFAULT_FRAME_QUEUE_CAPACITY = 4;
+    public static final int DEFAULT_IMAGE_WORKERS = 2;
+    public static final String DEFAULT_CAMERA_ID = ImageService.DEFAULT_CAMERA_ID;
+
+    private ImageService imageService;
     private SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
-    private Boolean isCatDetected = false;
+    private final StatusDispatcher statusDispatcher;
+
+    //loaded from the repository on first use
+    private final AtomicReference<SystemState> state = new AtomicReference<>();
+
+    //sensor counters kept next to the state, so "is any sensor active?" never needs a scan
+    private final AtomicIntegerArray activeSensorsByType = new AtomicIntegerArray(SensorType.values().length);
+    private final AtomicInteger sensorCount = new AtomicInteger();
+    //bumped after every change to the set of sensors, see getSensorSetVersion()
+    private final AtomicLong sensorSetVersion = new AtomicLong();
+
+    //only touched by the thread currently publishing, see publishState()
+    private final AtomicInteger publishRequests = new AtomicInteger();
+    private SystemState publishedState;
+
+    private final CameraRegistry cameras = new CameraRegistry(this::newFramePipeline);
+    private final SecurityMetrics metrics;
+    private volatile EventRecorder eventRecorder = EventRecorder.NONE;
+
+    //guarded by this; the shared pool is created on the first asynchronous image, unless configured before
+    private Executor imageExecutor;
+    private ExecutorService ownedImageExecutor;
+    private int frameQueueCapacity = DEFAULT_FRAME_QUEUE_CAPACITY;
+    private int imageWorkersPerCamera = DEFAULT_IMAGE_WORKERS;
 
 	Set<Sensor> getActiveSensors() {
 	    return getSensors().stream()
@@ -33,9 +84,51 @@ public class SecurityService {
 	            .collect(Collectors.toSet());
 	}
 
-    public SecurityService(SecurityRepository securityRepository, FakeImageService imageService) {
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        this(securityRepository, imageService, new SynchronousStatusDispatcher());
+    }
+
+    /**
+     * @param statusDispatcher Delivers status updates to the registered listeners, for example an
+     *                         {@link AsyncStatusDispatcher} to keep slow listeners off the caller's thread
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService,
+                           StatusDispatcher statusDispatcher) {
         this.securityRepository = securityRepository;
         this.imageService = imageService;
+        this.statusDispatcher = statusDispatcher;
+        this.metrics = new SecurityMetrics(cameras::getQueueDepth, () ->
+                statusDispatcher instanceof AsyncStatusDispatcher async ? async.getQueueDepth() : 0);
+    }
+
+    /**
+     * Returns the current state, loading it from the repository the first time around.
+     */
+    private SystemState state() {
+        SystemState current = state.get();
+        if (current != null) {
+            return current;
+        }
+        synchronized (state) {
+            //only ever runs once, so this lock is never on a hot path
+            if (state.get() == null) {
+                int activeSensors = 0;
+                int sensors = 0;
+                for (Sensor sensor : getSensors()) {
+                    sensors++;
+                    if (sensor.getActive()) {
+                        activeSensors++;
+                        activeSensorsByType.incrementAndGet(sensor.getSensorType().ordinal());
+                    }
+                }
+                sensorCount.set(sensors);
+                SystemState loaded = new SystemState(securityRepository.getAlarmStatus(),
+                        securityRepository.getArmingStatus(), 0, activeSensors, 0, 0);
+                publishedState = loaded;
+                state.set(loaded);
+            }
+            return state.get();
+        }
     }
 
     /**
@@ -45,43 +138,93 @@ public class SecurityService {
      * @param armingStatus
      */
     public void setArmingStatus(ArmingStatus armingStatus) {
-        if (isCatDetected && armingStatus == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        }
+        SystemState current;
+        SystemState next;
+        do {
+            current = state();
+            next = current.withArmingStatus(armingStatus);
+            if (current.catDetected() && armingStatus == ArmingStatus.ARMED_HOME) {
+                next = next.withAlarmStatus(AlarmStatus.ALARM);
+            }
+            if (armingStatus == ArmingStatus.DISARMED) {
+                next = next.withAlarmStatus(AlarmStatus.NO_ALARM);
+            }
+        } while (!state.compareAndSet(current, next));
+        recordTransition(current, next);
 
-        if (armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-        }
         if (armingStatus == ArmingStatus.ARMED_AWAY || armingStatus == ArmingStatus.ARMED_HOME) {
             setFalseActivationStatusForSensors(getActiveSensors());
         }
-
-        securityRepository.setArmingStatus(armingStatus);
-        statusListeners.forEach(sl -> sl.sensorStatusChanged());
+        //taken after the sensor resets, so the recorded status includes what they did
+        SystemState recorded = countInput(0);
+        eventRecorder.armingStatusSet(recorded.inputs(), armingStatus, recorded.alarmStatus());
+        publishState();
+        long start = System.nanoTime();
+        statusDispatcher.sensorStatusChanged();
+        metrics.recordListenerDispatch(start);
     }
 
     private void setFalseActivationStatusForSensors(Set<Sensor> sensors) {
-        sensors.forEach(sensor -> {
-            sensor.setActive(true);
-            changeSensorActivationStatus(sensor, false);
-        });
+        List<SensorEvent> events = new ArrayList<>(sensors.size());
+        sensors.forEach(sensor -> events.add(new SensorEvent(sensor, false)));
+        applySensorEventBatch(events, false);
     }
 
     /**
      * Internal method that handles alarm status changes based on whether
-     * the camera currently shows a cat.
+     * a camera currently shows a cat. The camera is locked while its verdict is applied, so the
+     * number of cameras seeing a cat always matches their individual verdicts.
      *
+     * @param camera The camera that took the image
      * @param cat True if a cat is detected, otherwise false.
      */
-    private void catDetected(Boolean cat) {
-        boolean noInactiveSensors = true;
-        isCatDetected = cat;
-        if (cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        } else if (!cat && getSensors().stream().noneMatch(Sensor::getActive)) {
-                setAlarmStatus(AlarmStatus.NO_ALARM);
+    private void catDetected(CameraRegistry.Camera camera, boolean cat) {
+        synchronized (camera) {
+            if (camera.isRemoved()) {
+                return;
+            }
+            int delta = cat == camera.seesCat() ? 0 : (cat ? 1 : -1);
+            SystemState current;
+            SystemState next;
+            do {
+                current = state();
+                next = current.withCatVerdict(delta).withNextInput();
+                if (cat && current.armingStatus() == ArmingStatus.ARMED_HOME) {
+                    next = next.withAlarmStatus(AlarmStatus.ALARM);
+                } else if (!next.catDetected() && current.activeSensorCount() == 0) {
+                    //only once no other camera still sees a cat
+                    next = next.withAlarmStatus(AlarmStatus.NO_ALARM);
+                }
+            } while (!state.compareAndSet(current, next));
+            recordTransition(current, next);
+            eventRecorder.catVerdict(next.inputs(), camera.getId(), cat, next.alarmStatus());
+            camera.setSeesCat(cat);
+        }
+        publishState();
+    }
+
+    /**
+     * Records the status changes between two consecutive states in the metrics and, while
+     * recording, as flight recorder events.
+     */
+    private void recordTransition(SystemState current, SystemState next) {
+        metrics.recordTransition(current, next);
+        if (current.alarmStatus() != next.alarmStatus()) {
+            AlarmStatusEvent event = new AlarmStatusEvent();
+            if (event.shouldCommit()) {
+                event.previousStatus = current.alarmStatus().name();
+                event.status = next.alarmStatus().name();
+                event.commit();
+            }
+        }
+        if (current.armingStatus() != next.armingStatus()) {
+            ArmingStatusEvent event = new ArmingStatusEvent();
+            if (event.shouldCommit()) {
+                event.previousStatus = current.armingStatus().name();
+                event.status = next.armingStatus().name();
+                event.commit();
+            }
         }
-        statusListeners.forEach(sl -> sl.catDetected(cat));
     }
 
     /**
@@ -90,11 +233,11 @@ public class SecurityService {
      * @param statusListener
      */
     public void addStatusListener(StatusListener statusListener) {
-        statusListeners.add(statusListener);
+        statusDispatcher.addStatusListener(statusListener);
     }
 
     public void removeStatusListener(StatusListener statusListener) {
-        statusListeners.remove(statusListener);
+        statusDispatcher.removeStatusListener(statusListener);
     }
 
     /**
@@ -103,31 +246,82 @@ public class SecurityService {
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
-        securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        SystemState current;
+        SystemState next;
+        do {
+            current = state();
+            next = current.withAlarmStatus(status).withNextInput();
+        } while (!state.compareAndSet(current, next));
+        recordTransition(current, next);
+        eventRecorder.alarmStatusSet(next.inputs(), status);
+        publishState();
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been activated.
+     * Writes the latest state to the repository and reports it to listeners. Concurrent callers
+     * do not wait: if another thread is already publishing, it is asked to make another pass and
+     * this call returns straight away. Since every pass reads the newest state, the repository and
+     * listeners always end up with the latest values, and never see an older value after a newer one.
      */
-    private void handleSensorActivated() {
-        if (securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
-            return; //no problem if the system is disarmed
-        }
-        switch (securityRepository.getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
+    private void publishState() {
+        if (publishRequests.getAndIncrement() != 0) {
+            return;
         }
+        int requests = 1;
+        do {
+            SystemState current = state.get();
+            SystemState published = publishedState;
+            publishedState = current;
+            if (current.armingStatus() != published.armingStatus()) {
+                long start = System.nanoTime();
+                securityRepository.setArmingStatus(current.armingStatus());
+                metrics.recordRepositoryWrite(start);
+            }
+            if (current.alarmStatus() != published.alarmStatus()) {
+                long start = System.nanoTime();
+                securityRepository.setAlarmStatus(current.alarmStatus());
+                metrics.recordRepositoryWrite(start);
+                start = System.nanoTime();
+                statusDispatcher.notify(current.alarmStatus());
+                metrics.recordListenerDispatch(start);
+            }
+            if (current.catVerdicts() != published.catVerdicts()) {
+                long start = System.nanoTime();
+                statusDispatcher.catDetected(current.catDetected());
+                metrics.recordListenerDispatch(start);
+            }
+            requests = publishRequests.addAndGet(-requests);
+        } while (requests != 0);
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been deactivated
+     * Internal method for working out the alarm status after a single sensor changes.
+     *
+     * @param current The state before the change
+     * @param wasActive The sensor's activation status before the change
+     * @param active The sensor's requested activation status
      */
-    private void handleSensorDeactivated() {
-        switch (securityRepository.getAlarmStatus()) {
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.NO_ALARM);
-            case ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
+    private static AlarmStatus alarmStatusAfterSensorChange(SystemState current, boolean wasActive, boolean active) {
+        AlarmStatus alarmStatus = current.alarmStatus();
+        if (alarmStatus == AlarmStatus.ALARM) {
+            //alarm is only stood down by sensors once the system has been disarmed
+            return current.armingStatus() == ArmingStatus.DISARMED ? AlarmStatus.PENDING_ALARM : alarmStatus;
         }
+        if (!wasActive && active) {
+            if (current.armingStatus() == ArmingStatus.DISARMED) {
+                return alarmStatus; //no problem if the system is disarmed
+            }
+            if (alarmStatus == AlarmStatus.NO_ALARM) {
+                return AlarmStatus.PENDING_ALARM;
+            }
+            if (alarmStatus == AlarmStatus.PENDING_ALARM) {
+                return AlarmStatus.ALARM;
+            }
+        }
+        if (wasActive && !active && alarmStatus == AlarmStatus.PENDING_ALARM) {
+            return AlarmStatus.NO_ALARM;
+        }
+        return alarmStatus;
     }
 
     /**
@@ -137,21 +331,92 @@ public class SecurityService {
      * @param active
      */
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        AlarmStatus actualAlarmStatus = securityRepository.getAlarmStatus();
-        if (actualAlarmStatus != AlarmStatus.ALARM && !sensor.getActive() && active) {
-            handleSensorActivated();
-        }
-        if (actualAlarmStatus != AlarmStatus.ALARM && sensor.getActive() && !active) {
-            handleSensorDeactivated();
+        applySensorEvents(List.of(new SensorEvent(sensor, active)));
+    }
+
+    /**
+     * Applies a batch of sensor activation changes. The alarm state machine is evaluated over the
+     * events in order, exactly as if they had been applied one at a time, but the changed sensors
+     * are persisted in one repository write and each listener callback fires at most once. Events
+     * for sensors that are not in the repository, for example ones removed in the meantime, are
+     * skipped.
+     *
+     * @param events Sensor changes, in the order they happened
+     */
+    public void applySensorEvents(Collection<SensorEvent> events) {
+        boolean sensorsChanged = applySensorEventBatch(events, true);
+        publishState();
+        if (sensorsChanged) {
+            long start = System.nanoTime();
+            statusDispatcher.sensorStatusChanged();
+            metrics.recordListenerDispatch(start);
         }
+    }
 
-        if (actualAlarmStatus == AlarmStatus.ALARM) {
-            if (securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
-                handleSensorDeactivated();
+    /**
+     * Each event is its own atomic transition. The sensor is locked while its event is applied,
+     * so two threads flipping the same sensor cannot both count the same change. Callers may hold
+     * different instances of one sensor, for example one decoded from a request, so the lock and
+     * the activation status are taken from the instance the repository holds for that id. An
+     * event for a sensor the repository does not hold is dropped rather than counted, since
+     * persisting it would bring the sensor back.
+     *
+     * @param record False for changes the service makes by itself, which are not inputs to record
+     * @return true if any sensor changed its activation status
+     */
+    private boolean applySensorEventBatch(Collection<SensorEvent> events, boolean record) {
+        if (events.isEmpty()) {
+            return false;
+        }
+        Set<Sensor> changedSensors = new LinkedHashSet<>();
+        for (SensorEvent event : events) {
+            Sensor sensor = securityRepository.findSensor(event.getSensor().getSensorId());
+            if (sensor == null) {
+                continue;
+            }
+            boolean active = event.isActive();
+            synchronized (sensor) {
+                if (securityRepository.findSensor(sensor.getSensorId()) != sensor) {
+                    //removed or replaced while this thread waited for the lock
+                    continue;
+                }
+                boolean wasActive = sensor.getActive();
+                int delta = wasActive == active ? 0 : (active ? 1 : -1);
+                SystemState current;
+                SystemState next;
+                do {
+                    current = state();
+                    next = current.withAlarmStatus(alarmStatusAfterSensorChange(current, wasActive, active))
+                            .withActiveSensorDelta(delta);
+                    if (record) {
+                        next = next.withNextInput();
+                    }
+                } while (current != next && !state.compareAndSet(current, next));
+                recordTransition(current, next);
+                if (record) {
+                    eventRecorder.sensorActivationSet(next.inputs(), sensor, active, next.alarmStatus());
+                }
+                if (delta != 0) {
+                    activeSensorsByType.addAndGet(sensor.getSensorType().ordinal(), delta);
+                    sensor.setActive(active);
+                    event.getSensor().setActive(active);
+                    changedSensors.add(sensor);
+                    SensorActivationEvent activation = new SensorActivationEvent();
+                    if (activation.shouldCommit()) {
+                        activation.sensorId = sensor.getSensorId().toString();
+                        activation.sensorType = sensor.getSensorType().name();
+                        activation.active = active;
+                        activation.commit();
+                    }
+                }
             }
         }
-        sensor.setActive(active);
-        securityRepository.updateSensor(sensor);
+        if (!changedSensors.isEmpty()) {
+            long start = System.nanoTime();
+            securityRepository.updateSensors(changedSensors);
+            metrics.recordRepositoryWrite(start);
+        }
+        return !changedSensors.isEmpty();
     }
 
     /**
@@ -161,26 +426,286 @@ public class SecurityService {
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        catDetected(imageService.imageContainsCat(currentCameraImage, 50.0f));
+        processImage(DEFAULT_CAMERA_ID, currentCameraImage);
+    }
+
+    /**
+     * Send an image taken by one of several cameras for processing. Each camera keeps its own
+     * verdict; the system sees a cat as long as any camera does.
+     *
+     * @param cameraId The camera that took the image, registered on its first image
+     * @param currentCameraImage
+     */
+    public void processImage(String cameraId, BufferedImage currentCameraImage) {
+        catDetected(cameras.get(cameraId), classify(cameraId, currentCameraImage));
+    }
+
+    private boolean classify(String cameraId, BufferedImage image) {
+        long start = System.nanoTime();
+        try {
+            return DEFAULT_CAMERA_ID.equals(cameraId)
+                    ? imageService.imageContainsCat(image, 50.0f)
+                    : imageService.imageContainsCat(cameraId, image, 50.0f);
+        } finally {
+            metrics.recordClassification(start);
+        }
+    }
+
+    /**
+     * Sends an image for processing without waiting for the image service. Frames wait in a
+     * bounded queue; when it is full the oldest waiting frame is dropped and its future cancelled.
+     * A verdict only changes the system state if no newer frame has been decided yet, so a slow
+     * answer for an old frame never overrides the answer for a more recent one.
+     *
+     * @param currentCameraImage
+     * @return completes with true if the image contains a cat
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage) {
+        return processImageAsync(DEFAULT_CAMERA_ID, currentCameraImage);
+    }
+
+    /**
+     * Like {@link #processImageAsync(BufferedImage)}, for one of several cameras. Every camera has
+     * its own frame queue, and all cameras share one pool of workers, so frames of different
+     * cameras are classified in parallel without a thread per camera.
+     *
+     * @param cameraId The camera that took the image, registered on its first image
+     * @param currentCameraImage
+     * @return completes with true if the image contains a cat
+     */
+    public CompletableFuture<Boolean> processImageAsync(String cameraId, BufferedImage currentCameraImage) {
+        return cameras.pipelineOf(cameras.get(cameraId)).submit(currentCameraImage);
+    }
+
+    /**
+     * Sets up how {@link #processImageAsync(String, BufferedImage)} runs. Frames already queued
+     * are still processed by the previous configuration.
+     *
+     * @param executor Runs the image service calls of all cameras
+     * @param queueCapacity Maximum frames waiting for a worker, per camera
+     * @param maxWorkers Maximum image service calls in flight at once, per camera
+     */
+    public synchronized void configureImageProcessing(Executor executor, int queueCapacity, int maxWorkers) {
+        if (ownedImageExecutor != null) {
+            ownedImageExecutor.shutdown();
+            ownedImageExecutor = null;
+        }
+        imageExecutor = executor;
+        frameQueueCapacity = queueCapacity;
+        imageWorkersPerCamera = maxWorkers;
+        cameras.rebuildPipelines();
+    }
+
+    private synchronized FramePipeline newFramePipeline(CameraRegistry.Camera camera) {
+        if (imageExecutor == null) {
+            //image service calls mostly wait on the network, so one thread per core is a floor, not a ceiling
+            ownedImageExecutor = Executors.newFixedThreadPool(Math.max(DEFAULT_IMAGE_WORKERS,
+                    Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "catpoint-image-worker");
+                t.setDaemon(true);
+                return t;
+            });
+            imageExecutor = ownedImageExecutor;
+        }
+        String cameraId = camera.getId();
+        return new FramePipeline(image -> classify(cameraId, image), cat -> catDetected(camera, cat),
+                imageExecutor, frameQueueCapacity, imageWorkersPerCamera);
+    }
+
+    /**
+     * Forgets a camera. If it was seeing a cat, the system stops counting it, but the alarm status
+     * is left as it is. Frames still queued for it are classified but their verdicts ignored.
+     */
+    public void removeCamera(String cameraId) {
+        CameraRegistry.Camera camera = cameras.remove(cameraId);
+        if (camera == null) {
+            return;
+        }
+        synchronized (camera) {
+            camera.markRemoved();
+            boolean seesCat = camera.seesCat();
+            SystemState current;
+            SystemState next;
+            do {
+                current = state();
+                next = (seesCat ? current.withCatVerdict(-1) : current).withNextInput();
+            } while (!state.compareAndSet(current, next));
+            camera.setSeesCat(false);
+            eventRecorder.cameraRemoved(next.inputs(), cameraId, next.alarmStatus());
+        }
+        publishState();
+    }
+
+    /**
+     * @return the cameras that have sent images
+     */
+    public Set<String> getCameraIds() {
+        return cameras.getCameraIds();
+    }
+
+    /**
+     * @return true if the most recent verdict for the given camera saw a cat
+     */
+    public boolean isCatDetected(String cameraId) {
+        CameraRegistry.Camera camera = cameras.find(cameraId);
+        return camera != null && camera.seesCat();
+    }
+
+    /**
+     * @return how many cameras currently see a cat
+     */
+    public int getCamerasSeeingCat() {
+        return state().camerasSeeingCat();
     }
 
     public AlarmStatus getAlarmStatus() {
-        return securityRepository.getAlarmStatus();
+        return state().alarmStatus();
     }
 
     public Set<Sensor> getSensors() {
         return securityRepository.getSensors();
     }
 
+    /**
+     * @return the sensor with the given id, or null if there is none
+     */
+    public Sensor findSensor(UUID sensorId) {
+        return securityRepository.findSensor(sensorId);
+    }
+
+    /**
+     * Adds a sensor and tells listeners the sensors changed. Adding a sensor that is already there
+     * replaces it, and leaves the sensor counts alone. The sensor is locked like an activation
+     * change, so one landing at the same time is counted either before or after the add, not twice.
+     */
     public void addSensor(Sensor sensor) {
-        securityRepository.addSensor(sensor);
+        state();
+        synchronized (canonical(sensor)) {
+            long start = System.nanoTime();
+            boolean added = securityRepository.addSensor(sensor);
+            metrics.recordRepositoryWrite(start);
+            //a replaced sensor is a different instance even though the count stays the same
+            sensorSetVersion.incrementAndGet();
+            if (added) {
+                boolean active = sensor.getActive();
+                sensorCount.incrementAndGet();
+                SystemState recorded = countInput(active ? 1 : 0);
+                if (active) {
+                    activeSensorsByType.incrementAndGet(sensor.getSensorType().ordinal());
+                }
+                eventRecorder.sensorAdded(recorded.inputs(), sensor, recorded.alarmStatus());
+            }
+        }
+        long start = System.nanoTime();
+        statusDispatcher.sensorStatusChanged();
+        metrics.recordListenerDispatch(start);
     }
 
+    /**
+     * Removes a sensor and tells listeners the sensors changed. Removing a sensor that is not
+     * there does nothing. The counts are taken from the repository's instance of the sensor while
+     * it is locked, so an activation change cannot slip in between the removal and the count.
+     */
     public void removeSensor(Sensor sensor) {
-        securityRepository.removeSensor(sensor);
+        state();
+        Sensor stored = canonical(sensor);
+        synchronized (stored) {
+            long start = System.nanoTime();
+            boolean removed = securityRepository.removeSensor(sensor);
+            metrics.recordRepositoryWrite(start);
+            if (!removed) {
+                return;
+            }
+            boolean active = stored.getActive();
+            sensorSetVersion.incrementAndGet();
+            sensorCount.decrementAndGet();
+            SystemState recorded = countInput(active ? -1 : 0);
+            if (active) {
+                activeSensorsByType.decrementAndGet(stored.getSensorType().ordinal());
+            }
+            eventRecorder.sensorRemoved(recorded.inputs(), sensor, recorded.alarmStatus());
+        }
+        long start = System.nanoTime();
+        statusDispatcher.sensorStatusChanged();
+        metrics.recordListenerDispatch(start);
+    }
+
+    /**
+     * @return the repository's instance of the sensor, or the sensor itself if the repository does
+     *         not hold one
+     */
+    private Sensor canonical(Sensor sensor) {
+        Sensor stored = securityRepository.findSensor(sensor.getSensorId());
+        return stored == null ? sensor : stored;
+    }
+
+    /**
+     * Counts an input that does not go through the alarm logic, together with the change it makes
+     * to the active sensor count, if any. The alarm status is left alone.
+     *
+     * @return the state the input left behind, which holds its sequence number
+     */
+    private SystemState countInput(int activeSensorDelta) {
+        SystemState current;
+        SystemState next;
+        do {
+            current = state();
+            next = current.withActiveSensorDelta(activeSensorDelta).withNextInput();
+        } while (!state.compareAndSet(current, next));
+        return next;
+    }
+
+    /**
+     * @return the number of inputs applied so far, which is also the sequence number of the last
+     * one handed to the {@link EventRecorder}
+     */
+    public long getInputCount() {
+        return state().inputs();
+    }
+
+    /**
+     * @return a number that changes whenever a sensor is added, replaced or removed. Read it before
+     * {@link #getSensors()} to tell later whether a copy of the sensors is still current.
+     */
+    public long getSensorSetVersion() {
+        return sensorSetVersion.get();
+    }
+
+    /**
+     * @return a snapshot of how many sensors exist and how many of them are active
+     */
+    public SensorStats getSensorStats() {
+        SystemState current = state();
+        EnumMap<SensorType, Integer> byType = new EnumMap<>(SensorType.class);
+        for (SensorType sensorType : SensorType.values()) {
+            byType.put(sensorType, activeSensorsByType.get(sensorType.ordinal()));
+        }
+        return new SensorStats(sensorCount.get(), current.activeSensorCount(), byType);
+    }
+
+    /**
+     * Hands every input from now on to the recorder, in place of the previous one. Pass
+     * {@link EventRecorder#NONE} to stop recording.
+     */
+    public void setEventRecorder(EventRecorder eventRecorder) {
+        this.eventRecorder = eventRecorder;
+    }
+
+    /**
+     * @return the service's metrics, see {@link SecurityMetrics#register(String)} to expose them over JMX
+     */
+    public SecurityMetrics getMetrics() {
+        return metrics;
     }
 
     public ArmingStatus getArmingStatus() {
-        return securityRepository.getArmingStatus();
+        return state().armingStatus();
+    }
+
+    /**
+     * @return true if any camera's most recent image verdict saw a cat
+     */
+    public boolean isCatDetected() {
+        return state().catDetected();
     }
 }
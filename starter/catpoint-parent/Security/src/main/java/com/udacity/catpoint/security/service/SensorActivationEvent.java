@@ -0,0 +1,28 @@
+package com.udacity.catpoint.security.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a sensor changing its activation status.
+ */
+@Name("com.udacity.catpoint.SensorActivation")
+@Label("Sensor Activation")
+@Category({"Catpoint", "Security"})
+@Description("A sensor was activated or deactivated")
+@StackTrace(false)
+final class SensorActivationEvent extends Event {
+
+    @Label("Sensor Id")
+    String sensorId;
+
+    @Label("Sensor Type")
+    String sensorType;
+
+    @Label("Active")
+    boolean active;
+}
@@ -0,0 +1,31 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.Sensor;
+
+/**
+ * A request to set a sensor's activation status, as submitted to
+ * {@link SecurityService#applySensorEvents(java.util.Collection)}.
+ */
+public final class SensorEvent {
+
+    private final Sensor sensor;
+    private final boolean active;
+
+    public SensorEvent(Sensor sensor, boolean active) {
+        this.sensor = sensor;
+        this.active = active;
+    }
+
+    public Sensor getSensor() {
+        return sensor;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%s) -> %s", sensor.getName(), sensor.getSensorType(), active ? "Active" : "Inactive");
+    }
+}
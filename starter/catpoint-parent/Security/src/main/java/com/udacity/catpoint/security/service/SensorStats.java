@@ -0,0 +1,44 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Read-only snapshot of the sensor counters kept by the {@link SecurityService}.
+ */
+public final class SensorStats {
+
+    private final int sensorCount;
+    private final int activeSensorCount;
+    private final Map<SensorType, Integer> activeSensorsByType;
+
+    SensorStats(int sensorCount, int activeSensorCount, EnumMap<SensorType, Integer> activeSensorsByType) {
+        this.sensorCount = sensorCount;
+        this.activeSensorCount = activeSensorCount;
+        this.activeSensorsByType = Collections.unmodifiableMap(new EnumMap<>(activeSensorsByType));
+    }
+
+    public int getSensorCount() {
+        return sensorCount;
+    }
+
+    public int getActiveSensorCount() {
+        return activeSensorCount;
+    }
+
+    public int getActiveSensorCount(SensorType sensorType) {
+        return activeSensorsByType.getOrDefault(sensorType, 0);
+    }
+
+    public Map<SensorType, Integer> getActiveSensorsByType() {
+        return activeSensorsByType;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d sensors, %d active %s", sensorCount, activeSensorCount, activeSensorsByType);
+    }
+}
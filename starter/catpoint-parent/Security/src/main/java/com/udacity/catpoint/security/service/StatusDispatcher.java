@@ -0,0 +1,16 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+
+/**
+ * Delivers {@link SecurityService} status updates to the registered {@link StatusListener}s.
+ * Listeners may be added and removed at any time, including from inside a callback.
+ */
+public interface StatusDispatcher {
+    void addStatusListener(StatusListener statusListener);
+    void removeStatusListener(StatusListener statusListener);
+    void notify(AlarmStatus status);
+    void catDetected(boolean catDetected);
+    void sensorStatusChanged();
+}
@@ -0,0 +1,40 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Calls every listener directly on the thread that reported the change, before returning.
+ */
+public class SynchronousStatusDispatcher implements StatusDispatcher {
+
+    private final Set<StatusListener> statusListeners = new CopyOnWriteArraySet<>();
+
+    @Override
+    public void addStatusListener(StatusListener statusListener) {
+        statusListeners.add(statusListener);
+    }
+
+    @Override
+    public void removeStatusListener(StatusListener statusListener) {
+        statusListeners.remove(statusListener);
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        statusListeners.forEach(sl -> sl.notify(status));
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        statusListeners.forEach(sl -> sl.catDetected(catDetected));
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        statusListeners.forEach(StatusListener::sensorStatusChanged);
+    }
+}
@@ -0,0 +1,57 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+
+/**
+ * Immutable snapshot of everything the alarm logic decides on. The {@link SecurityService} only
+ * ever replaces the whole snapshot through a compare-and-set, so every transition sees a
+ * consistent combination of values.
+ *
+ * @param camerasSeeingCat Number of cameras whose latest verdict saw a cat
+ * @param catVerdicts Number of image verdicts received so far, used to tell listeners about every
+ *                    new verdict even when it repeats the previous one
+ * @param inputs Number of inputs applied so far. An input takes the count that includes it as its
+ *               sequence number, in the same compare-and-set that applies it, so inputs from many
+ *               threads can be put back in the order they took effect.
+ */
+record SystemState(AlarmStatus alarmStatus, ArmingStatus armingStatus, int camerasSeeingCat,
+                   int activeSensorCount, long catVerdicts, long inputs) {
+
+    /**
+     * @return true if any camera currently sees a cat
+     */
+    boolean catDetected() {
+        return camerasSeeingCat > 0;
+    }
+
+    SystemState withAlarmStatus(AlarmStatus alarmStatus) {
+        return alarmStatus == this.alarmStatus ? this
+                : new SystemState(alarmStatus, armingStatus, camerasSeeingCat, activeSensorCount, catVerdicts, inputs);
+    }
+
+    SystemState withArmingStatus(ArmingStatus armingStatus) {
+        return armingStatus == this.armingStatus ? this
+                : new SystemState(alarmStatus, armingStatus, camerasSeeingCat, activeSensorCount, catVerdicts, inputs);
+    }
+
+    /**
+     * @param camerasSeeingCatDelta +1 if a camera started seeing a cat, -1 if one stopped, otherwise 0
+     */
+    SystemState withCatVerdict(int camerasSeeingCatDelta) {
+        return new SystemState(alarmStatus, armingStatus, camerasSeeingCat + camerasSeeingCatDelta,
+                activeSensorCount, catVerdicts + 1, inputs);
+    }
+
+    SystemState withActiveSensorDelta(int delta) {
+        return delta == 0 ? this
+                : new SystemState(alarmStatus, armingStatus, camerasSeeingCat, activeSensorCount + delta, catVerdicts, inputs);
+    }
+
+    /**
+     * @return this state as left by one more input
+     */
+    SystemState withNextInput() {
+        return new SystemState(alarmStatus, armingStatus, camerasSeeingCat, activeSensorCount, catVerdicts, inputs + 1);
+    }
+}
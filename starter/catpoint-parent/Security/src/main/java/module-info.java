@@ -2,9 +2,16 @@ module Security {
     requires java.desktop;
     requires java.prefs;
     requires java.datatransfer;
+    requires java.management;
+    requires jdk.jfr;
+    requires jdk.httpserver;
     requires Image;
+    requires org.slf4j;
     requires miglayout;
     requires com.google.common;
     requires com.google.gson;
     opens com.udacity.catpoint.security.data to com.google.gson;
+    //the metrics MXBean interface has to be visible to the platform MBean server
+    exports com.udacity.catpoint.security.service to java.management;
+    exports com.udacity.catpoint.security.camera to java.management;
 }
\ No newline at end of file
@@ -0,0 +1,180 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.*;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityCommandsTest {
+
+    private final SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+    private final ExecutorService ui = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-ui"));
+    private final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void shutdown() {
+        ui.shutdownNow();
+    }
+
+    /**
+     * Holds up the UI executor until the latch is released, so callbacks attached in the meantime
+     * are attached before the future completes and run on the UI thread.
+     */
+    private CountDownLatch blockUi() {
+        CountDownLatch release = new CountDownLatch(1);
+        ui.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return release;
+    }
+
+    @Test
+    @DisplayName("Commands run in order off the caller's thread and complete on the UI executor")
+    public void commands_runInOrderOffCaller() throws Exception {
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        SecurityRepository slowRepository = new InMemorySecurityRepositoryImpl() {
+            @Override
+            public void setArmingStatus(ArmingStatus armingStatus) {
+                threads.add(Thread.currentThread().getName());
+                super.setArmingStatus(armingStatus);
+            }
+        };
+        SecurityService securityService = new SecurityService(slowRepository, (image, threshold) -> false);
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        try (SecurityCommands commands = new SecurityCommands(securityService, ui, errors::add)) {
+            CountDownLatch release = blockUi();
+            commands.addSensor(door);
+            commands.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            CompletableFuture<String> completedOn = commands.changeSensorActivationStatus(door, true)
+                    .thenApply(ignored -> Thread.currentThread().getName());
+            release.countDown();
+
+            assertEquals("test-ui", completedOn.get(5, TimeUnit.SECONDS));
+            assertEquals(List.of("catpoint-commands"), threads);
+            assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+            assertTrue(door.getActive());
+
+            commands.removeSensors(List.of(door)).get(5, TimeUnit.SECONDS);
+            assertTrue(commands.getSensors().get(5, TimeUnit.SECONDS).isEmpty());
+        }
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    @DisplayName("An image verdict is delivered on the UI executor")
+    public void processImage_completesOnUi() throws Exception {
+        SecurityService securityService = new SecurityService(repository, (image, threshold) -> true);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        try (SecurityCommands commands = new SecurityCommands(securityService, ui, errors::add)) {
+            CountDownLatch release = blockUi();
+            CompletableFuture<String> completedOn = commands.processImage("front", new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB))
+                    .thenApply(verdict -> verdict + " " + Thread.currentThread().getName());
+            release.countDown();
+            assertEquals("true test-ui", completedOn.get(5, TimeUnit.SECONDS));
+            assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        }
+    }
+
+    @Test
+    @DisplayName("A frame dropped for a newer one is cancelled without reporting an error")
+    public void droppedFrame_isNotAnError() throws Exception {
+        CountDownLatch classifying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SecurityService securityService = new SecurityService(repository, (image, threshold) -> {
+            classifying.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        });
+        ExecutorService classifier = Executors.newSingleThreadExecutor();
+        securityService.configureImageProcessing(classifier, 1, 1);
+        BufferedImage frame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        try (SecurityCommands commands = new SecurityCommands(securityService, ui, errors::add)) {
+            CompletableFuture<Boolean> first = commands.processImage("front", frame);
+            assertTrue(classifying.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Boolean> dropped = commands.processImage("front", frame);
+            CompletableFuture<Boolean> last = commands.processImage("front", frame);
+
+            assertThrows(CancellationException.class, () -> dropped.get(5, TimeUnit.SECONDS));
+            release.countDown();
+            assertFalse(first.get(5, TimeUnit.SECONDS));
+            assertFalse(last.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            classifier.shutdownNow();
+        }
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    @DisplayName("A failed command is reported to the error handler")
+    public void failedCommand_reportsError() {
+        SecurityRepository failingRepository = new InMemorySecurityRepositoryImpl() {
+            @Override
+            public boolean addSensor(Sensor sensor) {
+                throw new IllegalStateException("disk full");
+            }
+        };
+        SecurityService securityService = new SecurityService(failingRepository, (image, threshold) -> false);
+        try (SecurityCommands commands = new SecurityCommands(securityService, ui, errors::add)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () ->
+                    commands.addSensor(new Sensor("Door", SensorType.DOOR)).get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1, errors.size());
+        assertEquals("disk full", errors.get(0).getMessage());
+    }
+
+    @Test
+    @DisplayName("Updates submitted together run in one refresh on the event dispatch thread")
+    public void edtExecutor_coalescesUpdates() throws Exception {
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        assertEquals(List.of("a", "b", "marker"), runWhileEdtBlocked(new CoalescingEdtExecutor(), log));
+
+        log.clear();
+        //with no budget to speak of every update gets its own refresh, so other events get a turn
+        assertEquals(List.of("a", "marker", "b"), runWhileEdtBlocked(new CoalescingEdtExecutor(1), log));
+    }
+
+    private static List<String> runWhileEdtBlocked(CoalescingEdtExecutor executor, List<String> log) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(() -> log.add(SwingUtilities.isEventDispatchThread() ? "a" : "a off edt"));
+        executor.execute(() -> log.add("b"));
+        SwingUtilities.invokeLater(() -> log.add("marker"));
+        release.countDown();
+        //a second pass, in case the last refresh was queued behind the marker
+        SwingUtilities.invokeAndWait(() -> { });
+        SwingUtilities.invokeAndWait(() -> { });
+        return List.copyOf(log);
+    }
+}
@@ -0,0 +1,147 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorTableModelTest {
+
+    private final List<String> events = new ArrayList<>();
+    private final List<Object> activations = new ArrayList<>();
+    private final SensorTableModel model = new SensorTableModel((sensor, active) -> activations.add(active));
+
+    {
+        model.addTableModelListener(e -> {
+            String kind = switch (e.getType()) {
+                case TableModelEvent.INSERT -> "insert";
+                case TableModelEvent.DELETE -> "delete";
+                default -> e.getFirstRow() == TableModelEvent.HEADER_ROW ? "structure"
+                        : e.getLastRow() == Integer.MAX_VALUE ? "all" : "update";
+            };
+            events.add(kind + " " + e.getFirstRow() + "-" + e.getLastRow());
+        });
+    }
+
+    @Test
+    @DisplayName("Only rows whose sensor changed are reported")
+    public void refresh_reportsChangedRowsOnly() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        model.refresh(List.of(door, window, motion));
+        assertEquals(List.of("insert 0-2"), events);
+
+        events.clear();
+        window.setActive(true);
+        model.refresh(List.of(motion, window, door));
+        assertEquals(List.of("update 1-1"), events);
+        assertEquals(true, model.getValueAt(1, SensorTableModel.ACTIVE_COLUMN));
+        assertEquals(false, model.getValueAt(0, SensorTableModel.ACTIVE_COLUMN));
+
+        events.clear();
+        model.refresh(List.of(door, window, motion));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Added sensors are appended and removed ones deleted in place")
+    public void refresh_insertsAndDeletesRows() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        Sensor hall = new Sensor("Hall", SensorType.MOTION);
+        model.refresh(List.of(door, window, motion));
+
+        events.clear();
+        model.refresh(List.of(door, motion, hall));
+        assertEquals(List.of("insert 3-3", "delete 1-1"), events);
+        assertEquals(3, model.getRowCount());
+        assertSame(door, model.getSensorAt(0));
+        assertSame(motion, model.getSensorAt(1));
+        assertSame(hall, model.getSensorAt(2));
+
+        //the index still finds rows that moved up
+        events.clear();
+        hall.setName("Hallway");
+        model.refresh(List.of(door, motion, hall));
+        assertEquals(List.of("update 2-2"), events);
+        assertEquals("Hallway", model.getValueAt(2, SensorTableModel.NAME_COLUMN));
+    }
+
+    @Test
+    @DisplayName("Removing many sensors at once refreshes the table in one event")
+    public void refresh_bulkRemovalIsOneEvent() {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            sensors.add(new Sensor("Sensor " + i, SensorType.values()[i % 3]));
+        }
+        model.refresh(sensors);
+
+        events.clear();
+        model.refresh(sensors.subList(500, 1000));
+        assertEquals(List.of("all 0-" + Integer.MAX_VALUE), events);
+        assertEquals(500, model.getRowCount());
+        assertSame(sensors.get(500), model.getSensorAt(0));
+
+        events.clear();
+        sensors.get(999).setActive(true);
+        model.refresh(sensors.subList(500, 1000));
+        assertEquals(List.of("update 499-499"), events);
+    }
+
+    @Test
+    @DisplayName("A single changed or removed sensor only touches its own row")
+    public void singleSensor_touchesOneRow() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        model.refresh(List.of(door, window, motion));
+
+        events.clear();
+        window.setActive(true);
+        model.sensorChanged(window);
+        model.sensorChanged(door);
+        assertEquals(List.of("update 1-1"), events);
+
+        events.clear();
+        Sensor hall = new Sensor("Hall", SensorType.MOTION);
+        model.sensorChanged(hall);
+        assertEquals(List.of("insert 3-3"), events);
+
+        events.clear();
+        model.sensorRemoved(door);
+        model.sensorRemoved(motion);
+        model.sensorRemoved(motion);
+        assertEquals(List.of("delete 0-0", "delete 1-1"), events);
+        assertSame(window, model.getSensorAt(0));
+        assertSame(hall, model.getSensorAt(1));
+
+        //the index follows the rows that moved up
+        events.clear();
+        hall.setName("Hallway");
+        model.sensorChanged(hall);
+        assertEquals(List.of("update 1-1"), events);
+        model.refresh(List.of(window, hall));
+        assertEquals(List.of("update 1-1"), events);
+    }
+
+    @Test
+    @DisplayName("Ticking the active box is handed to the service, not applied to the row")
+    public void setActive_callsHandler() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        model.refresh(List.of(door));
+        assertTrue(model.isCellEditable(0, SensorTableModel.ACTIVE_COLUMN));
+        assertFalse(model.isCellEditable(0, SensorTableModel.NAME_COLUMN));
+
+        model.setValueAt(true, 0, SensorTableModel.ACTIVE_COLUMN);
+        assertEquals(List.of(true), activations);
+        assertEquals(false, model.getValueAt(0, SensorTableModel.ACTIVE_COLUMN));
+    }
+}
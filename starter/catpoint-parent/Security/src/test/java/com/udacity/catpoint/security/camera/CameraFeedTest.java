@@ -0,0 +1,98 @@
+package com.udacity.catpoint.security.camera;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CameraFeedTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Every frame is shown, every Nth is detected and the same few images are reused")
+    public void feed_reusesImages() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            Files.write(dir.resolve(String.format("%03d.jpg", i)), FrameSourceTest.frame(Color.RED, "jpg"));
+        }
+        Set<BufferedImage> shown = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        Set<BufferedImage> detected = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        AtomicInteger shownCount = new AtomicInteger();
+        FrameSink sink = (frame, release) -> {
+            shown.add(frame);
+            shownCount.incrementAndGet();
+            release.accept(frame);
+        };
+
+        try (CameraFeed feed = new CameraFeed(FrameSource.open(dir, false), 1000, 4, sink, frame -> {
+            assertFalse(shown.contains(frame), "the detector must get a copy");
+            detected.add(frame);
+            return CompletableFuture.completedFuture(true);
+        })) {
+            feed.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!feed.isFinished() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(feed.isFinished());
+            assertEquals(40, feed.getFrameCount());
+            assertEquals(10, feed.getDetectionCount());
+            assertEquals(0, feed.getErrorCount());
+        }
+        assertEquals(40, shownCount.get());
+        assertEquals(1, shown.size());
+        assertEquals(1, detected.size());
+    }
+
+    @Test
+    @DisplayName("A sink that holds on to its frames pauses decoding instead of growing the pool")
+    public void slowSink_skipsFrames() throws Exception {
+        Files.write(dir.resolve("cat.jpg"), FrameSourceTest.frame(Color.RED, "jpg"));
+        Set<BufferedImage> held = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        try (CameraFeed feed = new CameraFeed(FrameSource.open(dir, true), 1000, 1000,
+                (frame, release) -> held.add(frame), frame -> CompletableFuture.completedFuture(false))) {
+            feed.start();
+            Thread.sleep(200);
+            assertEquals(3, feed.getFrameCount());
+            assertTrue(feed.getSkippedFrameCount() > 0);
+        }
+        assertEquals(3, held.size());
+    }
+
+    @Test
+    @DisplayName("A damaged frame is counted and skipped")
+    public void damagedFrame_isSkipped() throws IOException, InterruptedException {
+        Files.write(dir.resolve("001.jpg"), FrameSourceTest.frame(Color.RED, "jpg"));
+        Files.write(dir.resolve("002.jpg"), new byte[]{(byte) 0xFF, (byte) 0xD8, 1, 2, 3});
+        Files.write(dir.resolve("003.jpg"), FrameSourceTest.frame(Color.BLUE, "jpg"));
+        AtomicInteger shown = new AtomicInteger();
+        try (CameraFeed feed = new CameraFeed(FrameSource.open(dir, false), 1000, 1,
+                (frame, release) -> {
+                    shown.incrementAndGet();
+                    release.accept(frame);
+                }, frame -> CompletableFuture.completedFuture(false))) {
+            feed.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!feed.isFinished() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, feed.getFrameCount());
+            assertEquals(1, feed.getErrorCount());
+        }
+        assertEquals(2, shown.get());
+    }
+}
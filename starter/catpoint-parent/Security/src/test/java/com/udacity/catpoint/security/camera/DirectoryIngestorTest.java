@@ -0,0 +1,109 @@
+package com.udacity.catpoint.security.camera;
+
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectoryIngestorTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<Integer> scannedWidths = new CopyOnWriteArrayList<>();
+    private final SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(),
+            (image, threshold) -> {
+                scannedWidths.add(image.getWidth());
+                return false;
+            });
+
+    /**
+     * @return a PNG that can be told apart from the others by its width
+     */
+    private static byte[] snapshot(int width) throws IOException {
+        BufferedImage image = new BufferedImage(width, 8, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    @DisplayName("Snapshots decoded in parallel are scanned in the order they were written")
+    public void snapshots_scannedInOrder() throws Exception {
+        try (DirectoryIngestor ingestor = new DirectoryIngestor(securityService, 4, Duration.ofMillis(100))) {
+            ingestor.watch(dir, "porch");
+            for (int i = 0; i < 30; i++) {
+                Files.write(dir.resolve(String.format("%03d.png", i)), snapshot(10 + i));
+            }
+            Files.writeString(dir.resolve("notes.txt"), "not a snapshot");
+            await(() -> ingestor.getIngestedCount() == 30);
+            assertEquals(0, ingestor.getFailedCount());
+            assertEquals(0, ingestor.getBacklog());
+            assertEquals(dir.toString(), ingestor.getWatchedDirectories().keySet().iterator().next());
+        }
+        assertEquals(IntStream.range(10, 40).boxed().collect(Collectors.toList()), scannedWidths);
+    }
+
+    @Test
+    @DisplayName("A snapshot written slowly is scanned once, and touching it again is a duplicate")
+    public void slowWrite_scannedOnce() throws Exception {
+        byte[] data = snapshot(64);
+        Path file = dir.resolve("slow.png");
+        try (DirectoryIngestor ingestor = new DirectoryIngestor(securityService, 2, Duration.ofMillis(300))) {
+            ingestor.watch(dir, "porch");
+            try (OutputStream out = Files.newOutputStream(file)) {
+                for (int i = 0; i < data.length; i += 16) {
+                    out.write(data, i, Math.min(16, data.length - i));
+                    out.flush();
+                    Thread.sleep(5);
+                }
+            }
+            await(() -> ingestor.getIngestedCount() == 1);
+
+            Files.setLastModifiedTime(file, Files.getLastModifiedTime(file));
+            await(() -> ingestor.getDuplicateCount() == 1);
+            assertEquals(1, ingestor.getIngestedCount());
+            assertEquals(0, ingestor.getFailedCount());
+        }
+        assertEquals(List.of(64), scannedWidths);
+    }
+
+    @Test
+    @DisplayName("A file that cannot be decoded is counted and does not hold up the next snapshot")
+    public void damagedSnapshot_isCounted() throws Exception {
+        try (DirectoryIngestor ingestor = new DirectoryIngestor(securityService, 2, Duration.ofMillis(100))) {
+            ingestor.watch(dir, "porch");
+            Files.write(dir.resolve("001.jpg"), new byte[]{(byte) 0xFF, (byte) 0xD8, 1, 2, 3});
+            Files.write(dir.resolve("002.png"), snapshot(20));
+            await(() -> ingestor.getIngestedCount() == 1 && ingestor.getFailedCount() == 1);
+            assertEquals(0, ingestor.getBacklog());
+        }
+        assertEquals(List.of(20), scannedWidths);
+    }
+}
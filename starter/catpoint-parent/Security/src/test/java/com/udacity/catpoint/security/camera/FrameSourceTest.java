@@ -0,0 +1,141 @@
+package com.udacity.catpoint.security.camera;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameSourceTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Encodes a frame filled with one color, so frames can be told apart after a lossy round trip.
+     */
+    static byte[] frame(Color color, String format) throws IOException {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 64, 48);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static void assertColor(Color expected, BufferedImage frame) {
+        Color actual = new Color(frame.getRGB(32, 24));
+        assertTrue(Math.abs(expected.getRed() - actual.getRed()) < 8
+                && Math.abs(expected.getGreen() - actual.getGreen()) < 8
+                && Math.abs(expected.getBlue() - actual.getBlue()) < 8, "expected " + expected + " but was " + actual);
+    }
+
+    @Test
+    @DisplayName("A directory plays in name order, loops and decodes into the reused image")
+    public void directory_playsInOrder() throws IOException {
+        Files.write(dir.resolve("002.jpg"), frame(Color.GREEN, "jpg"));
+        Files.write(dir.resolve("001.jpg"), frame(Color.RED, "jpg"));
+        Files.write(dir.resolve("003.png"), frame(Color.BLUE, "png"));
+        Files.writeString(dir.resolve("notes.txt"), "not a frame");
+
+        try (FrameSource source = FrameSource.open(dir, true)) {
+            BufferedImage first = source.nextFrame(null);
+            assertColor(Color.RED, first);
+            BufferedImage second = source.nextFrame(first);
+            assertSame(first, second);
+            assertColor(Color.GREEN, second);
+            assertColor(Color.BLUE, source.nextFrame(null));
+            //looped
+            assertColor(Color.RED, source.nextFrame(null));
+        }
+        try (FrameSource source = FrameSource.open(dir, false)) {
+            for (int i = 0; i < 3; i++) {
+                assertNotNull(source.nextFrame(null));
+            }
+            assertNull(source.nextFrame(null));
+        }
+    }
+
+    @Test
+    @DisplayName("An MJPEG file is split on image boundaries, not on stray end markers")
+    public void mjpeg_splitsImages() throws IOException {
+        ByteArrayOutputStream mjpeg = new ByteArrayOutputStream();
+        Color[] colors = {Color.RED, Color.GREEN, Color.BLUE};
+        for (Color color : colors) {
+            byte[] jpeg = frame(color, "jpg");
+            mjpeg.write(("--frame\r\nContent-Type: image/jpeg\r\nContent-Length: " + jpeg.length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            //an application segment holding an end of image marker, like an EXIF thumbnail does
+            byte[] thumbnail = {'E', 'x', 'i', 'f', 0, 0, (byte) 0xFF, (byte) 0xD8, 1, 2, (byte) 0xFF, (byte) 0xD9};
+            mjpeg.write(jpeg, 0, 2);
+            mjpeg.write(new byte[]{(byte) 0xFF, (byte) 0xE1, 0, (byte) (thumbnail.length + 2)});
+            mjpeg.write(thumbnail);
+            mjpeg.write(jpeg, 2, jpeg.length - 2);
+            mjpeg.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        //a last image cut short while being written
+        byte[] partial = frame(Color.WHITE, "jpg");
+        mjpeg.write(partial, 0, partial.length / 2);
+        Path file = dir.resolve("feed.mjpg");
+        Files.write(file, mjpeg.toByteArray());
+
+        try (FrameSource source = FrameSource.open(file, false)) {
+            BufferedImage reuse = null;
+            for (Color color : colors) {
+                BufferedImage frame = source.nextFrame(reuse);
+                assertColor(color, frame);
+                reuse = frame;
+            }
+            assertNull(source.nextFrame(reuse));
+        }
+        try (FrameSource source = FrameSource.open(file, true)) {
+            for (int i = 0; i < 3; i++) {
+                source.nextFrame(null);
+            }
+            assertColor(Color.RED, source.nextFrame(null));
+        }
+    }
+
+    @Test
+    @DisplayName("An image with a damaged segment length is skipped and the next image still plays")
+    public void corruptSegment_resyncs() throws IOException {
+        ByteArrayOutputStream mjpeg = new ByteArrayOutputStream();
+        byte[] red = frame(Color.RED, "jpg");
+        mjpeg.write(red, 0, 2);
+        //a segment length below the two bytes of the length itself
+        mjpeg.write(new byte[]{(byte) 0xFF, (byte) 0xE1, 0, 1});
+        mjpeg.write(red, 2, red.length - 2);
+        mjpeg.write(frame(Color.GREEN, "jpg"));
+        Path file = dir.resolve("damaged.mjpg");
+        Files.write(file, mjpeg.toByteArray());
+
+        try (FrameSource source = FrameSource.open(file, false)) {
+            assertColor(Color.GREEN, source.nextFrame(null));
+            assertNull(source.nextFrame(null));
+        }
+    }
+
+    @Test
+    @DisplayName("A file without a complete image ends a looping feed instead of spinning")
+    public void emptyMjpeg_ends() throws IOException {
+        Path file = dir.resolve("empty.mjpg");
+        byte[] partial = frame(Color.WHITE, "jpg");
+        Files.write(file, Arrays.copyOf(partial, 100));
+        try (FrameSource source = FrameSource.open(file, true)) {
+            assertNull(source.nextFrame(null));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.udacity.catpoint.security.camera;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageDecodeServiceTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * @return a JPEG with a red left half and a blue right half
+     */
+    private Path picture(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, width / 2, height);
+        g.setColor(Color.BLUE);
+        g.fillRect(width / 2, 0, width - width / 2, height);
+        g.dispose();
+        Path file = dir.resolve("picture.jpg");
+        ImageIO.write(image, "jpg", file.toFile());
+        return file;
+    }
+
+    @Test
+    @DisplayName("Pictures are subsampled to no smaller than the requested size")
+    public void thumbnailAndAnalysis_subsampled() throws Exception {
+        Path file = picture(2600, 1950);
+        try (ImageDecodeService decodeService = new ImageDecodeService()) {
+            BufferedImage thumbnail = decodeService.thumbnail(file, 300, 225).get(10, TimeUnit.SECONDS);
+            assertEquals(325, thumbnail.getWidth());
+            assertEquals(244, thumbnail.getHeight());
+
+            BufferedImage analysis = decodeService.forAnalysis(file).get(10, TimeUnit.SECONDS);
+            assertEquals(650, analysis.getWidth());
+            assertEquals(488, analysis.getHeight());
+        }
+    }
+
+    @Test
+    @DisplayName("Only the region of interest is decoded, and a small picture is left at full size")
+    public void region_decoded() throws IOException {
+        Path file = picture(400, 300);
+        BufferedImage right = ImageDecodeService.read(file, 100, 100, new Rectangle(200, 0, 200, 300));
+        assertEquals(100, right.getWidth());
+        assertEquals(150, right.getHeight());
+        Color color = new Color(right.getRGB(50, 75));
+        assertTrue(color.getBlue() > 200 && color.getRed() < 50, "expected blue but was " + color);
+
+        BufferedImage whole = ImageDecodeService.read(file, 640, 480, null);
+        assertEquals(400, whole.getWidth());
+    }
+
+    @Test
+    @DisplayName("A missing or unreadable picture fails the future with an IOException")
+    public void badPicture_fails() throws IOException {
+        Files.writeString(dir.resolve("notes.jpg"), "not a picture");
+        try (ImageDecodeService decodeService = new ImageDecodeService()) {
+            ExecutionException missing = assertThrows(ExecutionException.class,
+                    () -> decodeService.forAnalysis(dir.resolve("missing.jpg")).get(10, TimeUnit.SECONDS));
+            assertTrue(missing.getCause() instanceof NoSuchFileException);
+
+            ExecutionException unreadable = assertThrows(ExecutionException.class,
+                    () -> decodeService.forAnalysis(dir.resolve("notes.jpg")).get(10, TimeUnit.SECONDS));
+            assertTrue(unreadable.getCause() instanceof IOException);
+        }
+    }
+}
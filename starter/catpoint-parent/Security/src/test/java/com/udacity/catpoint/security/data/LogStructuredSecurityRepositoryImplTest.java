@@ -0,0 +1,159 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogStructuredSecurityRepositoryImplTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("State written to the log survives a restart")
+    public void reopen_replaysLog() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        try (LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dir)) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            door.setActive(true);
+            repository.updateSensor(door);
+            repository.removeSensor(window);
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        }
+
+        try (LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dir)) {
+            assertEquals(1, repository.getSensors().size());
+            Sensor loaded = repository.getSensors().iterator().next();
+            assertEquals(door, loaded);
+            assertTrue(loaded.getActive());
+            assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+            assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        }
+    }
+
+    @Test
+    @DisplayName("Sensors are found by id, even after being renamed")
+    public void findSensor_byIdAfterRename() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        try (LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dir)) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            assertEquals("Door", repository.getSensors().iterator().next().getName());
+
+            door.setName("Zebra Door");
+            repository.updateSensor(door);
+            repository.updateSensorActive(window.getSensorId(), true);
+
+            assertSame(door, repository.findSensor(door.getSensorId()));
+            assertTrue(repository.findSensor(window.getSensorId()).getActive());
+            assertEquals("Window", repository.getSensors().iterator().next().getName());
+            assertEquals(2, repository.getSensors().size());
+
+            repository.removeSensor(door);
+            assertNull(repository.findSensor(door.getSensorId()));
+            assertEquals(1, repository.getSensors().size());
+        }
+        try (LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dir)) {
+            assertTrue(repository.findSensor(window.getSensorId()).getActive());
+        }
+    }
+
+    @Test
+    @DisplayName("Compaction folds the log into a snapshot that is loaded on restart")
+    public void compaction_truncatesLogAndKeepsState() throws IOException {
+        try (LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dir, 5, false)) {
+            for (int i = 0; i < 12; i++) {
+                repository.addSensor(new Sensor("Sensor " + i, SensorType.MOTION));
+            }
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        }
+        assertTrue(Files.exists(dir.resolve("security.snapshot")));
+        assertTrue(Files.size(dir.resolve("security.log")) < Files.size(dir.resolve("security.snapshot")));
+
+        try (LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dir)) {
+            assertEquals(12, repository.getSensors().size());
+            assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+        }
+    }
+
+    @Test
+    @DisplayName("A torn record at the end of the log is discarded")
+    public void tornTail_isTruncated() throws IOException {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        try (LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dir)) {
+            repository.addSensor(door);
+        }
+        Path log = dir.resolve("security.log");
+        long intactSize = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.APPEND)) {
+            //header claims a 100 byte payload, but the process "died" after three bytes
+            channel.write(ByteBuffer.allocate(11).putInt(100).putInt(42).put(new byte[]{1, 2, 3}).flip());
+        }
+
+        try (LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dir)) {
+            assertEquals(1, repository.getSensors().size());
+            assertEquals(intactSize, Files.size(log));
+            repository.setAlarmStatus(AlarmStatus.ALARM);
+        }
+        try (LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dir)) {
+            assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+        }
+    }
+
+    /**
+     * Frames a payload the way the log does: length, CRC32 of the payload, payload.
+     */
+    private static ByteBuffer record(int operation, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(1 + bytes.length).put((byte) operation).put(bytes).flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return ByteBuffer.allocate(8 + payload.remaining()).putInt(payload.remaining()).putInt((int) crc.getValue())
+                .put(payload).flip();
+    }
+
+    @Test
+    @DisplayName("A version 1 snapshot with JSON sensors is loaded and rewritten in the binary format")
+    public void jsonSnapshot_isMigrated() throws IOException {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        try (FileChannel channel = FileChannel.open(dir.resolve("security.snapshot"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putInt(0x43505353).putInt(1).flip());
+            channel.write(record(3, "PENDING_ALARM"));
+            channel.write(record(4, "ARMED_AWAY"));
+            channel.write(record(1, "{\"sensorId\":\"" + door.getSensorId()
+                    + "\",\"name\":\"Door\",\"active\":true,\"sensorType\":\"DOOR\"}"));
+        }
+
+        try (LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dir)) {
+            assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+            assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+            assertTrue(repository.findSensor(door.getSensorId()).getActive());
+            repository.compact();
+        }
+        try (FileChannel channel = FileChannel.open(dir.resolve("security.snapshot"), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            channel.read(header);
+            assertEquals(2, header.flip().getInt(4));
+        }
+        try (LogStructuredSecurityRepositoryImpl repository = new LogStructuredSecurityRepositoryImpl(dir)) {
+            assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+            assertEquals("Door", repository.findSensor(door.getSensorId()).getName());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorCodecTest {
+
+    @Test
+    @DisplayName("A sensor table decodes to equal sensors, storing each name once")
+    public void sensorTable_roundTrips() throws IOException {
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        door.setActive(true);
+        Sensor otherDoor = new Sensor("Front door", SensorType.DOOR);
+        Sensor motion = new Sensor("K\u00fcche \u2615", SensorType.MOTION);
+
+        byte[] table = SensorCodec.encodeSensors(List.of(door, otherDoor, motion));
+        List<Sensor> decoded = SensorCodec.decodeSensors(ByteBuffer.wrap(table));
+
+        assertEquals(List.of(door, otherDoor, motion), decoded);
+        assertTrue(decoded.get(0).getActive());
+        assertFalse(decoded.get(1).getActive());
+        assertEquals("K\u00fcche \u2615", decoded.get(2).getName());
+        assertEquals(SensorType.MOTION, decoded.get(2).getSensorType());
+        assertSame(decoded.get(0).getName(), decoded.get(1).getName());
+    }
+
+    @Test
+    @DisplayName("A single sensor round trips with its name inline")
+    public void singleSensor_roundTrips() throws IOException {
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        ByteBuffer buffer = ByteBuffer.allocate(SensorCodec.sensorLength(window));
+        SensorCodec.putSensor(buffer, window);
+        assertFalse(buffer.hasRemaining());
+
+        Sensor decoded = SensorCodec.getSensor(buffer.flip());
+        assertEquals(window.getSensorId(), decoded.getSensorId());
+        assertEquals("Window", decoded.getName());
+        assertEquals(SensorType.WINDOW, decoded.getSensorType());
+    }
+
+    @Test
+    @DisplayName("Truncated, unknown or out of range data is rejected")
+    public void badData_isRejected() {
+        byte[] table = SensorCodec.encodeSensors(List.of(new Sensor("Door", SensorType.DOOR)));
+        assertThrows(IOException.class, () -> SensorCodec.decodeSensors(ByteBuffer.wrap(Arrays.copyOf(table, table.length - 1))));
+
+        byte[] newerVersion = table.clone();
+        newerVersion[4] = 2;
+        assertThrows(IOException.class, () -> SensorCodec.decodeSensors(ByteBuffer.wrap(newerVersion)));
+
+        byte[] hugeCount = table.clone();
+        ByteBuffer.wrap(hugeCount).putInt(5, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> SensorCodec.decodeSensors(ByteBuffer.wrap(hugeCount)));
+
+        assertThrows(IOException.class, () -> SensorCodec.alarmStatus((byte) AlarmStatus.values().length));
+    }
+}
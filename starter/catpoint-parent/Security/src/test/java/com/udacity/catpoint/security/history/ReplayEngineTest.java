@@ -0,0 +1,211 @@
+package com.udacity.catpoint.security.history;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayEngineTest {
+
+    @TempDir
+    Path dir;
+
+    private final BufferedImage frame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private boolean nextVerdict;
+    private final SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(),
+            (image, threshold) -> nextVerdict);
+
+    /**
+     * Drives the service with a random mix of every kind of input.
+     */
+    private void randomTraffic(int inputs, long seed) {
+        Random random = new Random(seed);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < inputs; i++) {
+            int choice = random.nextInt(20);
+            if (choice == 0 || sensors.isEmpty()) {
+                Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[random.nextInt(SensorType.values().length)]);
+                sensors.add(sensor);
+                securityService.addSensor(sensor);
+            } else if (choice == 1 && sensors.size() > 1) {
+                securityService.removeSensor(sensors.remove(random.nextInt(sensors.size())));
+            } else if (choice < 4) {
+                securityService.setArmingStatus(ArmingStatus.values()[random.nextInt(ArmingStatus.values().length)]);
+            } else if (choice < 9) {
+                nextVerdict = random.nextBoolean();
+                securityService.processImage("camera " + random.nextInt(3), frame);
+            } else if (choice == 9) {
+                securityService.removeCamera("camera " + random.nextInt(3));
+            } else if (choice == 10) {
+                securityService.setAlarmStatus(AlarmStatus.values()[random.nextInt(AlarmStatus.values().length)]);
+            } else {
+                securityService.changeSensorActivationStatus(sensors.get(random.nextInt(sensors.size())),
+                        random.nextBoolean());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Replaying recorded traffic goes through the same alarm statuses, starting from the recorded state")
+    public void replay_reproducesAlarmStatuses() throws IOException {
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        securityService.addSensor(door);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        nextVerdict = true;
+        securityService.processImage("porch", frame);
+
+        Path log = dir.resolve("history.log");
+        long recorded;
+        try (EventLogWriter writer = EventLogWriter.start(securityService, log)) {
+            randomTraffic(5_000, 42);
+            recorded = writer.getEventCount();
+        }
+        //removing a camera that sent nothing is not an input, everything else is
+        assertTrue(recorded > 4_500);
+        assertTrue(Files.size(log) < recorded * 6, "log takes " + Files.size(log) + " bytes");
+
+        RecordedHistory history = RecordedHistory.read(log);
+        assertFalse(history.isTruncated());
+        assertEquals(ArmingStatus.ARMED_HOME, history.getArmingStatus());
+        assertEquals(AlarmStatus.ALARM, history.getAlarmStatus());
+        assertEquals(List.of("porch"), history.getCameras().subList(0, history.getInitialCameraCount()));
+        assertEquals(1, history.getInitialSensorCount());
+        assertEquals(recorded, history.getEvents().size());
+
+        ReplayEngine engine = new ReplayEngine(history);
+        for (int run = 0; run < 2; run++) {
+            ReplayReport report = engine.replay(ReplayEngine.Pacing.FULL_SPEED);
+            assertTrue(report.isIdentical(), report.toString());
+            assertEquals(recorded, report.eventCount());
+            assertTrue(report.alarmChanges() > 0);
+            assertTrue(report.eventsPerSecond() > 0);
+        }
+    }
+
+    @Test
+    @DisplayName("Original pacing waits as long between events as the recording did")
+    public void originalPacing_waits() throws Exception {
+        Path log = dir.resolve("history.log");
+        try (EventLogWriter writer = EventLogWriter.start(securityService, log)) {
+            securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            Thread.sleep(150);
+            securityService.setArmingStatus(ArmingStatus.DISARMED);
+        }
+        RecordedHistory history = RecordedHistory.read(log);
+        assertTrue(history.getEvents().get(1).nanos() >= TimeUnit.MILLISECONDS.toNanos(150));
+
+        ReplayEngine engine = new ReplayEngine(history);
+        ReplayReport paced = engine.replay(ReplayEngine.Pacing.ORIGINAL);
+        assertTrue(paced.isIdentical());
+        assertTrue(paced.elapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(150));
+        ReplayReport fast = engine.replay(ReplayEngine.Pacing.FULL_SPEED);
+        assertTrue(fast.elapsedNanos() < TimeUnit.MILLISECONDS.toNanos(150));
+    }
+
+    @Test
+    @DisplayName("A replay that ends in a different alarm status reports the first event that differs")
+    public void mismatch_reported() throws IOException {
+        Path log = dir.resolve("history.log");
+        try (EventLogWriter writer = EventLogWriter.start(securityService, log)) {
+            securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+            //a verdict the service never saw, claiming it raised the alarm
+            writer.catVerdict(securityService.getInputCount() + 1, "porch", false, AlarmStatus.ALARM);
+        }
+        ReplayReport report = new ReplayEngine(RecordedHistory.read(log)).replay(ReplayEngine.Pacing.FULL_SPEED);
+        assertFalse(report.isIdentical());
+        assertEquals(1, report.firstMismatch());
+        assertEquals(AlarmStatus.ALARM, report.expectedStatus());
+        assertEquals(AlarmStatus.NO_ALARM, report.actualStatus());
+    }
+
+    @Test
+    @DisplayName("A log cut off part way through a record is read up to the last whole event")
+    public void truncatedLog_readsWholeEvents() throws IOException {
+        Path log = dir.resolve("history.log");
+        try (EventLogWriter writer = EventLogWriter.start(securityService, log)) {
+            randomTraffic(200, 7);
+        }
+        byte[] data = Files.readAllBytes(log);
+        int complete = RecordedHistory.read(log).getEvents().size();
+        Files.write(log, Arrays.copyOf(data, data.length - 1));
+
+        RecordedHistory history = RecordedHistory.read(log);
+        assertTrue(history.isTruncated());
+        assertEquals(complete - 1, history.getEvents().size());
+        assertTrue(new ReplayEngine(history).replay(ReplayEngine.Pacing.FULL_SPEED).isIdentical());
+
+        Files.write(log, new byte[]{1, 2, 3, 4, 5});
+        assertThrows(IOException.class, () -> RecordedHistory.read(log));
+    }
+
+    @Test
+    @DisplayName("Inputs from many threads are logged in the order they took effect")
+    public void concurrentInputs_replayIdentically() throws Exception {
+        BufferedImage cat = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        SecurityService concurrent = new SecurityService(new InMemorySecurityRepositoryImpl(),
+                (image, threshold) -> image == cat);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+            sensors.add(sensor);
+            concurrent.addSensor(sensor);
+        }
+        concurrent.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        Path log = dir.resolve("history.log");
+        long recorded;
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try (EventLogWriter writer = EventLogWriter.start(concurrent, log)) {
+            List<Future<?>> done = new ArrayList<>();
+            for (int c = 0; c < 4; c++) {
+                int client = c;
+                done.add(clients.submit(() -> {
+                    Random random = new Random(client);
+                    for (int i = 0; i < 2_000; i++) {
+                        int choice = random.nextInt(10);
+                        if (choice == 0) {
+                            concurrent.setAlarmStatus(AlarmStatus.NO_ALARM);
+                        } else if (choice < 3) {
+                            concurrent.processImage("camera " + client, random.nextBoolean() ? cat : frame);
+                        } else {
+                            concurrent.changeSensorActivationStatus(sensors.get(random.nextInt(sensors.size())),
+                                    random.nextBoolean());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            recorded = writer.getEventCount();
+        } finally {
+            clients.shutdownNow();
+        }
+
+        RecordedHistory history = RecordedHistory.read(log);
+        assertEquals(recorded, history.getEvents().size());
+        ReplayReport report = new ReplayEngine(history).replay(ReplayEngine.Pacing.FULL_SPEED);
+        assertTrue(report.isIdentical(), report.toString());
+    }
+}
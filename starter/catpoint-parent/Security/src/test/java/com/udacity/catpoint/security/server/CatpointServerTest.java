@@ -0,0 +1,221 @@
+package com.udacity.catpoint.security.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.udacity.catpoint.security.data.*;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatpointServerTest {
+
+    private final SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(),
+            (image, threshold) -> true);
+    private CatpointServer server;
+
+    private record Response(int status, String body) {
+        JsonObject json() {
+            return JsonParser.parseString(body).getAsJsonObject();
+        }
+    }
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new CatpointServer(securityService, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4, 64);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    private Response call(String method, String path, String contentType, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", contentType);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        String text = in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        return new Response(status, text);
+    }
+
+    private Response json(String method, String path, String body) throws IOException {
+        return call(method, path, "application/json", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Sensors added and activated over HTTP change the status")
+    public void sensorEvents_changeStatus() throws IOException {
+        Response added = json("POST", "/sensors", "{\"name\": \"Front door\", \"sensorType\": \"DOOR\"}");
+        assertEquals(201, added.status());
+        String sensorId = added.json().get("sensorId").getAsString();
+
+        assertEquals(200, json("PUT", "/arming", "{\"armingStatus\": \"ARMED_AWAY\"}").status());
+        Response applied = json("POST", "/sensors/events",
+                "[{\"sensorId\": \"" + sensorId + "\", \"active\": true}, "
+                        + "{\"sensorId\": \"00000000-0000-0000-0000-000000000000\", \"active\": true}]");
+        assertEquals(1, applied.json().get("applied").getAsInt());
+        assertEquals(1, applied.json().getAsJsonArray("unknown").size());
+
+        JsonObject status = call("GET", "/status", null, null).json();
+        assertEquals("PENDING_ALARM", status.get("alarmStatus").getAsString());
+        assertEquals("ARMED_AWAY", status.get("armingStatus").getAsString());
+        assertEquals(1, status.get("activeSensorCount").getAsInt());
+
+        JsonArray sensors = JsonParser.parseString(call("GET", "/sensors", null, null).body()).getAsJsonArray();
+        assertTrue(sensors.get(0).getAsJsonObject().get("active").getAsBoolean());
+    }
+
+    @Test
+    @DisplayName("Malformed requests and wrong methods are rejected")
+    public void badRequests_areRejected() throws IOException {
+        assertEquals(400, json("PUT", "/arming", "{\"armingStatus\": \"ARMED_SOMEWHAT\"}").status());
+        assertEquals(400, json("POST", "/sensors/events", "[{\"sensorId\": \"not-a-uuid\", \"active\": true}]").status());
+        assertEquals(400, json("POST", "/sensors/events", "[{\"sensorId\": ").status());
+        assertEquals(405, call("DELETE", "/status", null, null).status());
+        assertEquals(ArmingStatus.DISARMED, securityService.getArmingStatus());
+    }
+
+    @Test
+    @DisplayName("Posted frames are classified for their camera")
+    public void postedImage_isClassified() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "png", png);
+        json("PUT", "/arming", "{\"armingStatus\": \"ARMED_HOME\"}");
+
+        assertEquals(202, call("POST", "/images?camera=garden", "image/png", png.toByteArray()).status());
+        for (int i = 0; i < 100 && !securityService.isCatDetected("garden"); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        assertEquals(400, call("POST", "/images", "image/png", new byte[]{1, 2, 3}).status());
+    }
+
+    @Test
+    @DisplayName("Requests beyond the queue are turned away with 503 instead of running on the accepting thread")
+    public void fullQueue_answers503() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SecurityService blocked = new SecurityService(new InMemorySecurityRepositoryImpl() {
+            @Override
+            public boolean addSensor(Sensor sensor) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.addSensor(sensor);
+            }
+        }, (image, threshold) -> true);
+        server.close();
+        //one thread and room for one waiting request
+        server = new CatpointServer(blocked, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, 1);
+        server.start();
+
+        ExecutorService clients = Executors.newFixedThreadPool(5);
+        try {
+            CompletionService<Integer> responses = new ExecutorCompletionService<>(clients);
+            String sensor = "{\"name\": \"Door\", \"sensorType\": \"DOOR\"}";
+            Future<Response> first = clients.submit(() -> json("POST", "/sensors", sensor));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 4; i++) {
+                responses.submit(() -> {
+                    HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:"
+                            + server.getPort() + "/sensors").openConnection();
+                    connection.setRequestMethod("POST");
+                    connection.setDoOutput(true);
+                    try (OutputStream out = connection.getOutputStream()) {
+                        out.write(sensor.getBytes(StandardCharsets.UTF_8));
+                    }
+                    int status = connection.getResponseCode();
+                    if (status == 503) {
+                        assertEquals("1", connection.getHeaderField("Retry-After"));
+                    }
+                    return status;
+                });
+            }
+            //all but the queued request are answered while the only handler thread is still busy
+            for (int i = 0; i < 3; i++) {
+                Future<Integer> done = responses.poll(5, TimeUnit.SECONDS);
+                assertNotNull(done);
+                assertEquals(503, done.get().intValue());
+            }
+            release.countDown();
+            assertEquals(201, first.get(5, TimeUnit.SECONDS).status());
+            assertEquals(201, responses.take().get().intValue());
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent batches are all applied")
+    public void concurrentBatches_allApplied() throws Exception {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+            securityService.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        //every batch switches all sensors on, so however the batches interleave each sensor ends up counted once
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int c = 0; c < 8; c++) {
+                results.add(clients.submit(() -> {
+                    int applied = 0;
+                    for (int batch = 0; batch < 20; batch++) {
+                        StringBuilder body = new StringBuilder("[");
+                        for (Sensor sensor : sensors) {
+                            body.append(body.length() > 1 ? "," : "")
+                                    .append("{\"sensorId\":\"").append(sensor.getSensorId()).append("\",\"active\":true}");
+                        }
+                        applied += json("POST", "/sensors/events", body.append("]").toString()).json().get("applied").getAsInt();
+                    }
+                    return applied;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(20 * sensors.size(), result.get().intValue());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        assertEquals(sensors.size(), securityService.getSensorStats().getActiveSensorCount());
+    }
+}
@@ -0,0 +1,185 @@
+package com.udacity.catpoint.security.server;
+
+import com.udacity.catpoint.security.data.*;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorFrameListenerTest {
+
+    private final SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(),
+            (image, threshold) -> false);
+    private final Sensor door = new Sensor("Door", SensorType.DOOR);
+    private final Sensor window = new Sensor("Window", SensorType.WINDOW);
+    private SensorFrameListener listener;
+
+    @BeforeEach
+    void start() throws IOException {
+        securityService.addSensor(door);
+        securityService.addSensor(window);
+        InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        listener = new SensorFrameListener(securityService, loopback, loopback);
+        listener.start();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        listener.close();
+    }
+
+    /**
+     * Reads acknowledgements until they cover the given number of frames.
+     *
+     * @return the last acknowledged timestamp
+     */
+    private static long awaitAcks(SocketChannel channel, int frames) throws IOException {
+        ByteBuffer ack = ByteBuffer.allocate(SensorFrameListener.ACK_SIZE);
+        int acknowledged = 0;
+        long lastTimestamp = -1;
+        while (acknowledged < frames) {
+            ack.clear();
+            while (ack.hasRemaining()) {
+                assertTrue(channel.read(ack) >= 0, "connection closed");
+            }
+            ack.flip();
+            acknowledged += ack.getInt() + ack.getInt();
+            lastTimestamp = ack.getLong();
+        }
+        assertEquals(frames, acknowledged);
+        return lastTimestamp;
+    }
+
+    @Test
+    @DisplayName("Frames over TCP are applied in order and acknowledged")
+    public void tcpFrames_appliedAndAcknowledged() throws IOException {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                listener.getTcpPort()))) {
+            ByteBuffer frames = ByteBuffer.allocate(SensorFrameListener.FRAME_SIZE * 4);
+            SensorFrameListener.putFrame(frames, door.getSensorId(), true, 1);
+            SensorFrameListener.putFrame(frames, window.getSensorId(), true, 2);
+            SensorFrameListener.putFrame(frames, UUID.randomUUID(), true, 3);
+            SensorFrameListener.putFrame(frames, window.getSensorId(), false, 4);
+            frames.flip();
+            //a frame split over two writes is put back together
+            frames.limit(SensorFrameListener.FRAME_SIZE + 7);
+            channel.write(frames);
+            frames.limit(frames.capacity());
+            channel.write(frames);
+
+            assertEquals(4, awaitAcks(channel, 4));
+        }
+        assertTrue(door.getActive());
+        assertFalse(window.getActive());
+        //two activations while armed raise the alarm; deactivating a sensor does not stand it down
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        assertEquals(4, listener.getFrameCount());
+        assertEquals(1, listener.getUnknownFrameCount());
+    }
+
+    @Test
+    @DisplayName("Repeated frames are accepted without changing anything")
+    public void heartbeats_changeNothing() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                listener.getTcpPort()))) {
+            ByteBuffer frames = ByteBuffer.allocate(SensorFrameListener.FRAME_SIZE * 100);
+            for (int i = 0; i < 100; i++) {
+                SensorFrameListener.putFrame(frames, door.getSensorId(), false, i);
+            }
+            channel.write(frames.flip());
+            assertEquals(99, awaitAcks(channel, 100));
+        }
+        assertFalse(door.getActive());
+        assertEquals(0, listener.getBatchCount());
+    }
+
+    @Test
+    @DisplayName("Frames in a datagram are applied and acknowledged to the sender")
+    public void udpFrames_appliedAndAcknowledged() throws IOException {
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), listener.getUdpPort()));
+            ByteBuffer frames = ByteBuffer.allocate(SensorFrameListener.FRAME_SIZE * 2);
+            SensorFrameListener.putFrame(frames, door.getSensorId(), true, 10);
+            SensorFrameListener.putFrame(frames, window.getSensorId(), true, 11);
+            channel.write(frames.flip());
+
+            ByteBuffer ack = ByteBuffer.allocate(SensorFrameListener.ACK_SIZE);
+            channel.read(ack);
+            ack.flip();
+            assertEquals(2, ack.getInt());
+            assertEquals(0, ack.getInt());
+            assertEquals(11, ack.getLong());
+        }
+        assertTrue(door.getActive());
+        assertTrue(window.getActive());
+    }
+
+    @Test
+    @DisplayName("Sensors added after the listener started are found")
+    public void newSensor_isFound() throws IOException {
+        Sensor hall = new Sensor("Hall", SensorType.MOTION);
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                listener.getTcpPort()))) {
+            channel.write(SensorFrameListener.putFrame(ByteBuffer.allocate(SensorFrameListener.FRAME_SIZE),
+                    door.getSensorId(), true, 1).flip());
+            awaitAcks(channel, 1);
+            securityService.addSensor(hall);
+            channel.write(SensorFrameListener.putFrame(ByteBuffer.allocate(SensorFrameListener.FRAME_SIZE),
+                    hall.getSensorId(), true, 2).flip());
+            awaitAcks(channel, 1);
+        }
+        assertTrue(hall.getActive());
+        assertEquals(0, listener.getUnknownFrameCount());
+    }
+
+    @Test
+    @DisplayName("A sensor swapped for another one is found, and frames for the removed one are not applied")
+    public void swappedSensor_lookupRefreshed() throws IOException {
+        Sensor hall = new Sensor("Hall", SensorType.MOTION);
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                listener.getTcpPort()))) {
+            channel.write(SensorFrameListener.putFrame(ByteBuffer.allocate(SensorFrameListener.FRAME_SIZE),
+                    door.getSensorId(), true, 1).flip());
+            awaitAcks(channel, 1);
+            //the sensor count is the same as when the lookup was built
+            securityService.removeSensor(window);
+            securityService.addSensor(hall);
+            ByteBuffer frames = ByteBuffer.allocate(SensorFrameListener.FRAME_SIZE * 2);
+            SensorFrameListener.putFrame(frames, hall.getSensorId(), true, 2);
+            SensorFrameListener.putFrame(frames, window.getSensorId(), true, 3);
+            channel.write(frames.flip());
+            awaitAcks(channel, 2);
+        }
+        assertTrue(hall.getActive());
+        assertFalse(window.getActive());
+        assertEquals(1, listener.getUnknownFrameCount());
+        assertEquals(2, securityService.getSensorStats().getActiveSensorCount());
+    }
+
+    @Test
+    @DisplayName("Closing the listener ends the stream of a connected gateway")
+    public void close_endsGatewayStreams() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                listener.getTcpPort()))) {
+            channel.write(SensorFrameListener.putFrame(ByteBuffer.allocate(SensorFrameListener.FRAME_SIZE),
+                    door.getSensorId(), true, 1).flip());
+            awaitAcks(channel, 1);
+            listener.close();
+            ByteBuffer in = ByteBuffer.allocate(SensorFrameListener.ACK_SIZE);
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals(-1, channel.read(in)));
+        }
+    }
+}
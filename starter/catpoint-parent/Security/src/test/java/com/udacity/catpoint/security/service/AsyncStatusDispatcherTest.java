@@ -0,0 +1,132 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncStatusDispatcherTest {
+
+    //runs deliveries only when the test asks for it
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final List<Object> received = new ArrayList<>();
+
+    private final StatusListener recorder = new StatusListener() {
+        @Override
+        public void notify(AlarmStatus status) {
+            received.add(status);
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            received.add(catDetected);
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            received.add("sensors");
+        }
+    };
+
+    private void runPendingTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+    }
+
+    @Test
+    @DisplayName("Nothing is delivered on the reporting thread")
+    public void publish_deliversOnExecutor() {
+        AsyncStatusDispatcher dispatcher = new AsyncStatusDispatcher(tasks::add, 8, AsyncStatusDispatcher.OverflowPolicy.DROP_OLDEST);
+        dispatcher.addStatusListener(recorder);
+        dispatcher.catDetected(true);
+        assertTrue(received.isEmpty());
+        assertEquals(1, dispatcher.getQueueDepth());
+
+        runPendingTasks();
+        assertEquals(List.of(true), received);
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    @Test
+    @DisplayName("Superseded alarm updates are coalesced without reordering the other updates")
+    public void alarmUpdates_areCoalesced() {
+        AsyncStatusDispatcher dispatcher = new AsyncStatusDispatcher(tasks::add, 8, AsyncStatusDispatcher.OverflowPolicy.DROP_OLDEST);
+        dispatcher.addStatusListener(recorder);
+        dispatcher.notify(AlarmStatus.PENDING_ALARM);
+        dispatcher.notify(AlarmStatus.ALARM);
+        dispatcher.sensorStatusChanged();
+        dispatcher.sensorStatusChanged();
+        dispatcher.catDetected(true);
+        dispatcher.notify(AlarmStatus.NO_ALARM);
+
+        runPendingTasks();
+        assertEquals(List.of(AlarmStatus.ALARM, "sensors", true, AlarmStatus.NO_ALARM), received);
+
+        received.clear();
+        dispatcher.notify(AlarmStatus.PENDING_ALARM);
+        dispatcher.catDetected(false);
+        dispatcher.notify(AlarmStatus.NO_ALARM);
+        runPendingTasks();
+        //the cat update sits between them, so the pending alarm it followed is still delivered first
+        assertEquals(List.of(AlarmStatus.PENDING_ALARM, false, AlarmStatus.NO_ALARM), received);
+    }
+
+    @Test
+    @DisplayName("A full mailbox applies the overflow policy")
+    public void fullMailbox_appliesOverflowPolicy() {
+        AsyncStatusDispatcher dropOldest = new AsyncStatusDispatcher(tasks::add, 2, AsyncStatusDispatcher.OverflowPolicy.DROP_OLDEST);
+        dropOldest.addStatusListener(recorder);
+        dropOldest.catDetected(true);
+        dropOldest.catDetected(false);
+        dropOldest.catDetected(true);
+        runPendingTasks();
+        assertEquals(List.of(false, true), received);
+        assertEquals(1, dropOldest.getDroppedEventCount());
+
+        received.clear();
+        AsyncStatusDispatcher dropNewest = new AsyncStatusDispatcher(tasks::add, 2, AsyncStatusDispatcher.OverflowPolicy.DROP_NEWEST);
+        dropNewest.addStatusListener(recorder);
+        dropNewest.catDetected(true);
+        dropNewest.catDetected(false);
+        dropNewest.catDetected(false);
+        runPendingTasks();
+        assertEquals(List.of(true, false), received);
+        assertEquals(1, dropNewest.getDroppedEventCount());
+    }
+
+    @Test
+    @DisplayName("Listeners can unregister from inside a callback")
+    public void removeListener_duringDispatch() {
+        AsyncStatusDispatcher dispatcher = new AsyncStatusDispatcher(tasks::add, 8, AsyncStatusDispatcher.OverflowPolicy.DROP_OLDEST);
+        dispatcher.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                received.add(status);
+                dispatcher.removeStatusListener(this);
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+                received.add(catDetected);
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+        dispatcher.notify(AlarmStatus.ALARM);
+        dispatcher.catDetected(true);
+        runPendingTasks();
+        dispatcher.catDetected(false);
+        runPendingTasks();
+        assertEquals(List.of(AlarmStatus.ALARM), received);
+    }
+}
@@ -0,0 +1,136 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FramePipelineTest {
+
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<Boolean> verdicts = new CopyOnWriteArrayList<>();
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    @Test
+    @DisplayName("A full queue drops the oldest waiting frames")
+    public void fullQueue_dropsOldest() {
+        List<BufferedImage> classified = new ArrayList<>();
+        FramePipeline pipeline = new FramePipeline(image -> classified.add(image), verdicts::add, tasks::add, 2, 1);
+        List<BufferedImage> images = new ArrayList<>();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            images.add(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+            results.add(pipeline.submit(images.get(i)));
+        }
+        assertEquals(1, tasks.size());
+        assertEquals(2, pipeline.getQueueDepth());
+        assertEquals(2, pipeline.getDroppedFrameCount());
+        assertTrue(results.get(0).isCancelled());
+        assertTrue(results.get(1).isCancelled());
+
+        runTasks();
+        assertEquals(List.of(images.get(2), images.get(3)), classified);
+        assertTrue(results.get(3).join());
+        assertEquals(List.of(true, true), verdicts);
+        assertEquals(0, pipeline.getQueueDepth());
+    }
+
+    @Test
+    @DisplayName("A late verdict for an older frame does not override a newer one")
+    public void lateVerdict_isNotApplied() throws Exception {
+        BufferedImage slowFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        CountDownLatch release = new CountDownLatch(1);
+        FramePipeline pipeline = new FramePipeline(image -> {
+            if (image != slowFrame) {
+                return false;
+            }
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }, verdicts::add, r -> new Thread(r).start(), 4, 2);
+
+        CompletableFuture<Boolean> slow = pipeline.submit(slowFrame);
+        CompletableFuture<Boolean> fast = pipeline.submit(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        assertFalse(fast.get(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertTrue(slow.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(false), verdicts);
+    }
+
+    @Test
+    @DisplayName("A failing classification fails its frame only")
+    public void classifierFailure_completesExceptionally() {
+        BufferedImage broken = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        FramePipeline pipeline = new FramePipeline(image -> {
+            if (image == broken) {
+                throw new IllegalStateException("service down");
+            }
+            return true;
+        }, verdicts::add, tasks::add, 4, 1);
+
+        CompletableFuture<Boolean> failed = pipeline.submit(broken);
+        CompletableFuture<Boolean> next = pipeline.submit(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        runTasks();
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertTrue(next.join());
+        assertEquals(List.of(true), verdicts);
+    }
+
+    @Test
+    @DisplayName("Frames queued when the executor is shut down are still classified")
+    public void shutdownExecutor_finishesQueuedFrames() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FramePipeline pipeline = new FramePipeline(image -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }, verdicts::add, pool, 32, 1);
+
+        //more frames than one task handles before it hands its thread back
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(pipeline.submit(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+        release.countDown();
+
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, pipeline.getQueueDepth());
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        //with no worker left to take them, frames submitted now fail instead of waiting forever
+        assertThrows(RejectedExecutionException.class,
+                () -> pipeline.submit(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)));
+        assertEquals(0, pipeline.getQueueDepth());
+    }
+}
@@ -0,0 +1,70 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityMetricsTest {
+
+    private final SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(),
+            (image, threshold) -> true);
+    private final SecurityMetrics metrics = securityService.getMetrics();
+
+    @Test
+    @DisplayName("Every status change is counted by its from and to status")
+    public void statusChanges_countedAsTransitions() {
+        Sensor sensor = new Sensor("Front door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(sensor, true);
+        securityService.changeSensorActivationStatus(sensor, false);
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+
+        assertEquals(1, metrics.getArmingStatusTransitions(ArmingStatus.DISARMED, ArmingStatus.ARMED_AWAY));
+        assertEquals(1, metrics.getArmingStatusTransitions(ArmingStatus.ARMED_AWAY, ArmingStatus.DISARMED));
+        assertEquals(1, metrics.getAlarmStatusTransitions(AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM));
+        assertEquals(1, metrics.getAlarmStatusTransitions(AlarmStatus.PENDING_ALARM, AlarmStatus.NO_ALARM));
+        assertEquals(0, metrics.getAlarmStatusTransitions(AlarmStatus.NO_ALARM, AlarmStatus.ALARM));
+        assertEquals(Long.valueOf(1), metrics.getAlarmStatusTransitions().get("NO_ALARM->PENDING_ALARM"));
+    }
+
+    @Test
+    @DisplayName("Repository writes and image service calls are timed")
+    public void calls_recordLatency() {
+        securityService.addSensor(new Sensor("Window", SensorType.WINDOW));
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.processImage(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+
+        assertEquals(1, metrics.getClassificationLatency().getCount());
+        //sensor added, arming status and alarm status written
+        assertEquals(3, metrics.getRepositoryWriteLatency().getCount());
+        assertTrue(metrics.getListenerDispatchLatency().getCount() > 0);
+        assertEquals(0, metrics.getFrameQueueDepth());
+    }
+
+    @Test
+    @DisplayName("Registered metrics can be read over JMX")
+    public void registeredMetrics_readableOverJmx() throws Exception {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        ObjectName name = metrics.register("metrics-test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            TabularData arming = (TabularData) server.getAttribute(name, "ArmingStatusTransitions");
+            assertEquals(1L, arming.get(new Object[]{"DISARMED->ARMED_HOME"}).get("value"));
+            CompositeData writes = (CompositeData) server.getAttribute(name, "RepositoryWriteLatency");
+            assertEquals(1L, writes.get("count"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
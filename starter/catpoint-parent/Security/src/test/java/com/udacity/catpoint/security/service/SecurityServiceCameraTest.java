@@ -0,0 +1,98 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.data.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityServiceCameraTest {
+
+    //the stand-in classifier tells cats apart by image width
+    private static final BufferedImage CAT = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+    private static final BufferedImage NO_CAT = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+    private final SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("The system sees a cat while any camera does")
+    public void catOnAnyCamera_keepsAlarm() {
+        SecurityService securityService = new SecurityService(repository, (image, threshold) -> image == CAT);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        securityService.processImage("front", CAT);
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        securityService.processImage("back", NO_CAT);
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        assertEquals(1, securityService.getCamerasSeeingCat());
+        assertTrue(securityService.isCatDetected("front"));
+        assertFalse(securityService.isCatDetected("back"));
+        assertEquals(Set.of("front", "back"), securityService.getCameraIds());
+
+        securityService.processImage("front", NO_CAT);
+        assertEquals(0, securityService.getCamerasSeeingCat());
+        assertFalse(securityService.isCatDetected());
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    @DisplayName("A removed camera stops counting and ignores late verdicts")
+    public void removeCamera_withdrawsVerdict() {
+        SecurityService securityService = new SecurityService(repository, (image, threshold) -> image == CAT);
+        securityService.processImage("front", CAT);
+        securityService.processImage("back", CAT);
+        assertEquals(2, securityService.getCamerasSeeingCat());
+
+        securityService.removeCamera("front");
+        assertEquals(1, securityService.getCamerasSeeingCat());
+        assertEquals(Set.of("back"), securityService.getCameraIds());
+        securityService.removeCamera("front");
+        assertEquals(1, securityService.getCamerasSeeingCat());
+    }
+
+    @Test
+    @DisplayName("Cameras are classified in parallel on the shared pool")
+    public void cameras_classifiedInParallel() throws Exception {
+        int cameraCount = 4;
+        CountDownLatch allInFlight = new CountDownLatch(cameraCount);
+        ImageService slowClassifier = (image, threshold) -> {
+            allInFlight.countDown();
+            try {
+                //only returns true if every camera's call was running at the same time
+                return allInFlight.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        };
+        SecurityService securityService = new SecurityService(repository, slowClassifier);
+        securityService.configureImageProcessing(pool, 2, 1);
+
+        List<CompletableFuture<Boolean>> verdicts = new ArrayList<>();
+        for (int i = 0; i < cameraCount; i++) {
+            verdicts.add(securityService.processImageAsync("camera " + i, CAT));
+        }
+        for (CompletableFuture<Boolean> verdict : verdicts) {
+            assertTrue(verdict.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(cameraCount, securityService.getCamerasSeeingCat());
+    }
+}
@@ -0,0 +1,331 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives one SecurityService from many threads at once and checks that it ends up exactly where
+ * the same operations applied one after the other would have left it.
+ */
+public class SecurityServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int SENSORS_PER_THREAD = 50;
+    private static final int OPERATIONS_PER_THREAD = 5_000;
+
+    private final SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+    private final SecurityService securityService = new SecurityService(repository, new FakeImageService());
+    private final AtomicReference<AlarmStatus> lastNotified = new AtomicReference<>();
+
+    /**
+     * One sensor operation a worker thread performs.
+     */
+    private record Toggle(Sensor sensor, boolean active) {
+    }
+
+    /**
+     * Sequential reference for the subset of the alarm rules these scenarios exercise.
+     */
+    private static final class Model {
+        AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+        ArmingStatus armingStatus;
+        int activeSensors;
+        final Map<Sensor, Boolean> active = new HashMap<>();
+
+        Model(ArmingStatus armingStatus) {
+            this.armingStatus = armingStatus;
+        }
+
+        void apply(Toggle toggle) {
+            boolean wasActive = active.getOrDefault(toggle.sensor(), false);
+            if (alarmStatus != AlarmStatus.ALARM && armingStatus != ArmingStatus.DISARMED && !wasActive && toggle.active()) {
+                alarmStatus = alarmStatus == AlarmStatus.NO_ALARM ? AlarmStatus.PENDING_ALARM : AlarmStatus.ALARM;
+            } else if (alarmStatus == AlarmStatus.PENDING_ALARM && wasActive && !toggle.active()) {
+                alarmStatus = AlarmStatus.NO_ALARM;
+            }
+            if (wasActive != toggle.active()) {
+                activeSensors += toggle.active() ? 1 : -1;
+            }
+            active.put(toggle.sensor(), toggle.active());
+        }
+    }
+
+    private List<List<Toggle>> workload(boolean randomToggles) {
+        Random random = new Random(42);
+        List<List<Toggle>> perThread = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<Sensor> owned = new ArrayList<>();
+            for (int i = 0; i < SENSORS_PER_THREAD; i++) {
+                Sensor sensor = new Sensor("Sensor " + t + "-" + i, SensorType.values()[i % SensorType.values().length]);
+                securityService.addSensor(sensor);
+                owned.add(sensor);
+            }
+            List<Toggle> operations = new ArrayList<>();
+            if (randomToggles) {
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    operations.add(new Toggle(owned.get(random.nextInt(owned.size())), random.nextBoolean()));
+                }
+            } else {
+                owned.forEach(sensor -> operations.add(new Toggle(sensor, true)));
+            }
+            perThread.add(operations);
+        }
+        return perThread;
+    }
+
+    private void runConcurrently(List<List<Toggle>> perThread) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<Toggle> operations : perThread) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (Toggle toggle : operations) {
+                        securityService.changeSensorActivationStatus(toggle.sensor(), toggle.active());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void assertMatches(Model model) {
+        assertEquals(model.alarmStatus, securityService.getAlarmStatus());
+        assertEquals(model.activeSensors, securityService.getSensorStats().getActiveSensorCount());
+        assertEquals(model.activeSensors, (int) repository.getSensors().stream().filter(Sensor::getActive).count());
+        int byType = securityService.getSensorStats().getActiveSensorsByType().values().stream().mapToInt(Integer::intValue).sum();
+        assertEquals(model.activeSensors, byType);
+        assertEquals(model.alarmStatus, repository.getAlarmStatus());
+        if (lastNotified.get() != null) {
+            assertEquals(model.alarmStatus, lastNotified.get());
+        }
+    }
+
+    private void listen() {
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                lastNotified.set(status);
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("Concurrent sensor toggles on a disarmed system lose no updates")
+    public void disarmedToggles_matchSequentialModel() throws Exception {
+        List<List<Toggle>> workload = workload(true);
+        runConcurrently(workload);
+
+        //each thread owns its sensors, so the final state does not depend on how threads interleave
+        Model model = new Model(ArmingStatus.DISARMED);
+        workload.forEach(operations -> operations.forEach(model::apply));
+        assertMatches(model);
+    }
+
+    @Test
+    @DisplayName("Concurrent activations on an armed system escalate to alarm exactly once")
+    public void armedActivations_matchSequentialModel() throws Exception {
+        listen();
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        List<List<Toggle>> workload = workload(false);
+        runConcurrently(workload);
+
+        Model model = new Model(ArmingStatus.ARMED_AWAY);
+        workload.forEach(operations -> operations.forEach(model::apply));
+        assertEquals(AlarmStatus.ALARM, model.alarmStatus);
+        assertMatches(model);
+
+        //standing every sensor down concurrently leaves an armed system in alarm
+        List<List<Toggle>> standDown = new ArrayList<>();
+        workload.forEach(operations -> standDown.add(operations.stream().map(t -> new Toggle(t.sensor(), false)).toList()));
+        runConcurrently(standDown);
+        standDown.forEach(operations -> operations.forEach(model::apply));
+        assertMatches(model);
+
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        assertEquals(AlarmStatus.NO_ALARM, lastNotified.get());
+    }
+
+    @Test
+    @DisplayName("Adding sensors twice and removing missing ones leaves the sensor counts matching the repository")
+    public void duplicateAddsAndRemoves_keepCountsInLine() throws Exception {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < SENSORS_PER_THREAD; i++) {
+            Sensor sensor = new Sensor("Shared " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 2 == 0);
+            sensors.add(sensor);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                Random random = new Random(t);
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS_PER_THREAD / 10; i++) {
+                        Sensor sensor = sensors.get(random.nextInt(sensors.size()));
+                        if (random.nextBoolean()) {
+                            securityService.addSensor(sensor);
+                        } else {
+                            securityService.removeSensor(sensor);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        SensorStats stats = securityService.getSensorStats();
+        assertEquals(repository.getSensors().size(), stats.getSensorCount());
+        assertEquals((int) repository.getSensors().stream().filter(Sensor::getActive).count(),
+                stats.getActiveSensorCount());
+    }
+
+    @Test
+    @DisplayName("Toggling sensors that have been removed does not bring them back")
+    public void togglesAfterRemoval_leaveSensorsRemoved() throws Exception {
+        List<List<Toggle>> workload = workload(true);
+        repository.getSensors().forEach(securityService::removeSensor);
+        runConcurrently(workload);
+
+        assertTrue(repository.getSensors().isEmpty());
+        assertEquals(0, securityService.getSensorStats().getSensorCount());
+        assertEquals(0, securityService.getSensorStats().getActiveSensorCount());
+    }
+
+    @Test
+    @DisplayName("A toggle that looked its sensor up just before the sensor was removed is not counted")
+    public void toggleRacingRemoval_notCounted() throws Exception {
+        CountDownLatch lookedUp = new CountDownLatch(1);
+        CountDownLatch removed = new CountDownLatch(1);
+        //holds the toggling thread between finding the sensor and applying the change
+        SecurityRepository slowLookups = new InMemorySecurityRepositoryImpl() {
+            @Override
+            public Sensor findSensor(UUID sensorId) {
+                Sensor sensor = super.findSensor(sensorId);
+                if (Thread.currentThread().getName().equals("toggle") && lookedUp.getCount() > 0) {
+                    lookedUp.countDown();
+                    try {
+                        removed.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return sensor;
+            }
+        };
+        SecurityService service = new SecurityService(slowLookups, new FakeImageService());
+        Sensor sensor = new Sensor("Porch", SensorType.MOTION);
+        service.addSensor(sensor);
+
+        Thread toggle = new Thread(() -> service.changeSensorActivationStatus(sensor, true), "toggle");
+        toggle.start();
+        assertTrue(lookedUp.await(5, TimeUnit.SECONDS));
+        service.removeSensor(sensor);
+        removed.countDown();
+        toggle.join(5_000);
+
+        SensorStats stats = service.getSensorStats();
+        assertEquals(0, stats.getSensorCount());
+        assertEquals(0, stats.getActiveSensorCount());
+        assertEquals(0, stats.getActiveSensorCount(SensorType.MOTION));
+    }
+
+    @Test
+    @DisplayName("Threads toggling separate copies of the same sensor lose no updates")
+    public void copiesOfOneSensor_lockedTogether() throws Exception {
+        Sensor stored = new Sensor("Hall", SensorType.MOTION);
+        securityService.addSensor(stored);
+        List<List<Toggle>> perThread = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            //what a request handler would decode from the wire: same id, different instance
+            Sensor copy = new Sensor(stored.getName(), stored.getSensorType());
+            copy.setSensorId(stored.getSensorId());
+            Random random = new Random(t);
+            List<Toggle> operations = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                operations.add(new Toggle(copy, random.nextBoolean()));
+            }
+            perThread.add(operations);
+        }
+        runConcurrently(perThread);
+
+        int active = stored.getActive() ? 1 : 0;
+        assertEquals(active, securityService.getSensorStats().getActiveSensorCount());
+        assertEquals(active, securityService.getSensorStats().getActiveSensorCount(SensorType.MOTION));
+    }
+
+    @Test
+    @DisplayName("Racing arming changes, cat verdicts and sensors settle on a consistent state")
+    public void mixedTraffic_settlesConsistently() throws Exception {
+        listen();
+        List<List<Toggle>> workload = workload(true);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> arming = pool.submit(() -> {
+                Random random = new Random(7);
+                for (int i = 0; i < 2_000; i++) {
+                    securityService.setArmingStatus(ArmingStatus.values()[random.nextInt(ArmingStatus.values().length)]);
+                }
+            });
+            Future<?> camera = pool.submit(() -> {
+                //FakeImageService ignores the image and answers at random
+                for (int i = 0; i < 2_000; i++) {
+                    securityService.processImage(null);
+                }
+            });
+            runConcurrently(workload);
+            arming.get();
+            camera.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int activeSensors = (int) repository.getSensors().stream().filter(Sensor::getActive).count();
+        assertEquals(activeSensors, securityService.getSensorStats().getActiveSensorCount());
+        assertEquals(securityService.getAlarmStatus(), repository.getAlarmStatus());
+        assertEquals(securityService.getArmingStatus(), repository.getArmingStatus());
+        assertEquals(securityService.getAlarmStatus(), lastNotified.get() == null ? AlarmStatus.NO_ALARM : lastNotified.get());
+    }
+}
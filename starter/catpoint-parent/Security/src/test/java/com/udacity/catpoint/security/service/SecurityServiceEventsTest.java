@@ -0,0 +1,81 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.*;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityServiceEventsTest {
+
+    private final SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(),
+            (image, threshold) -> false);
+
+    private static List<RecordedEvent> record(Runnable activity) throws Exception {
+        Path dump = Files.createTempFile("security", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.udacity.catpoint.SensorActivation");
+            recording.enable("com.udacity.catpoint.AlarmStatusChange");
+            recording.enable("com.udacity.catpoint.ArmingStatusChange");
+            recording.start();
+            activity.run();
+            recording.stop();
+            recording.dump(dump);
+            return RecordingFile.readAllEvents(dump);
+        } finally {
+            Files.delete(dump);
+        }
+    }
+
+    @Test
+    @DisplayName("Sensor activations and status changes are recorded as flight recorder events")
+    public void transitions_emitEvents() throws Exception {
+        Sensor sensor = new Sensor("Back door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+
+        List<RecordedEvent> events = record(() -> {
+            securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            securityService.changeSensorActivationStatus(sensor, true);
+        });
+
+        RecordedEvent arming = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.udacity.catpoint.ArmingStatusChange"))
+                .findFirst().orElseThrow();
+        assertEquals("DISARMED", arming.getString("previousStatus"));
+        assertEquals("ARMED_AWAY", arming.getString("status"));
+
+        RecordedEvent activation = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.udacity.catpoint.SensorActivation"))
+                .findFirst().orElseThrow();
+        assertEquals(sensor.getSensorId().toString(), activation.getString("sensorId"));
+        assertEquals("DOOR", activation.getString("sensorType"));
+        assertTrue(activation.getBoolean("active"));
+
+        RecordedEvent alarm = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.udacity.catpoint.AlarmStatusChange"))
+                .findFirst().orElseThrow();
+        assertEquals("NO_ALARM", alarm.getString("previousStatus"));
+        assertEquals("PENDING_ALARM", alarm.getString("status"));
+    }
+
+    @Test
+    @DisplayName("Nothing is recorded for changes that leave the state as it was")
+    public void unchangedState_emitsNothing() throws Exception {
+        Sensor sensor = new Sensor("Hall", SensorType.MOTION);
+        securityService.addSensor(sensor);
+
+        List<RecordedEvent> events = record(() -> {
+            securityService.changeSensorActivationStatus(sensor, false);
+            securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+        });
+
+        assertTrue(events.isEmpty());
+    }
+}
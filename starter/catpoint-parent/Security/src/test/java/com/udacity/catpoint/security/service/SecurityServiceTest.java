@@ -1,6 +1,7 @@
 package com.udacity.catpoint.security.service;
 
 import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.*;
 import junit.framework.TestCase;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,7 +15,12 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.doReturn;
@@ -30,10 +36,21 @@ public class SecurityServiceTest extends TestCase {
     Sensor sensor_window = new Sensor("Window", SensorType.WINDOW);
     Sensor sensor_motion = new Sensor("Motion", SensorType.MOTION);
     BufferedImage img = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+    //sensors the mocked repository finds by id; the service ignores events for any other sensor
+    Map<UUID, Sensor> storedSensors = new HashMap<>();
     @BeforeEach
     void init() {
+        stored(sensor_door);
+        stored(sensor_window);
+        stored(sensor_motion);
+        lenient().when(securityRepository.findSensor(any()))
+                .thenAnswer(invocation -> storedSensors.get(invocation.<UUID>getArgument(0)));
         securityService = new SecurityService(securityRepository, imageService);
     }
+    private Sensor stored(Sensor sensor) {
+        storedSensors.put(sensor.getSensorId(), sensor);
+        return sensor;
+    }
     //#1. Alarm is armed and a sensor becomes activated, put the system into pending alarm status.
     @Test
     @DisplayName("Test #1.1")
@@ -100,7 +117,7 @@ public class SecurityServiceTest extends TestCase {
         when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.PENDING_ALARM);
         Sensor sensor = new Sensor("Door", SensorType.DOOR);
         sensor.setActive(Boolean.TRUE);
-        Sensor sensor2 = new Sensor("Window", SensorType.WINDOW);
+        Sensor sensor2 = stored(new Sensor("Window", SensorType.WINDOW));
         securityService.changeSensorActivationStatus(sensor2, true);
         verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
     }
@@ -162,9 +179,9 @@ public class SecurityServiceTest extends TestCase {
     @DisplayName("Test #10.2 - ArmingStatus: ARMED_HOME")
     public void systemIsArmedHome_resetAllSensorsInactive() {
         doReturn(ArmingStatus.DISARMED).when(securityRepository).getArmingStatus();
-        Sensor door10 = new Sensor("Door", SensorType.DOOR);
-        Sensor window10 = new Sensor("Window", SensorType.WINDOW);
-        Sensor motion10 = new Sensor("Motion", SensorType.MOTION);
+        Sensor door10 = stored(new Sensor("Door", SensorType.DOOR));
+        Sensor window10 = stored(new Sensor("Window", SensorType.WINDOW));
+        Sensor motion10 = stored(new Sensor("Motion", SensorType.MOTION));
         securityService.changeSensorActivationStatus(door10, true);
         securityService.changeSensorActivationStatus(window10, true);
         securityService.changeSensorActivationStatus(motion10, true);
@@ -209,10 +226,70 @@ public class SecurityServiceTest extends TestCase {
 
     }
     @Test
+    @DisplayName("Test #sensorStats")
+    public void sensorActivationChanges_updateSensorStats() {
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        when(securityRepository.addSensor(any())).thenReturn(true);
+        when(securityRepository.removeSensor(any())).thenReturn(true);
+        securityService.addSensor(sensor_door);
+        securityService.addSensor(sensor_window);
+        securityService.addSensor(sensor_motion);
+        securityService.changeSensorActivationStatus(sensor_door, true);
+        securityService.changeSensorActivationStatus(sensor_window, true);
+        securityService.changeSensorActivationStatus(sensor_window, true);
+        securityService.removeSensor(sensor_door);
+
+        SensorStats stats = securityService.getSensorStats();
+        assertEquals(2, stats.getSensorCount());
+        assertEquals(1, stats.getActiveSensorCount());
+        assertEquals(0, stats.getActiveSensorCount(SensorType.DOOR));
+        assertEquals(1, stats.getActiveSensorCount(SensorType.WINDOW));
+    }
+    @Test
+    @DisplayName("Test #catNotDetectedWithActiveSensor")
+    public void noCatDetectedWhileSensorActive_keepAlarmStatus() {
+        when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(false);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        securityService.changeSensorActivationStatus(sensor_motion, true);
+        securityService.processImage(img);
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+    @Test
+    @DisplayName("Test #applySensorEvents")
+    public void batchOfSensorEvents_persistsAndNotifiesOnce() {
+        List<Object> notifications = new ArrayList<>();
+        securityService.addStatusListener(new StatusListener() {
+            public void notify(AlarmStatus status) { notifications.add(status); }
+            public void catDetected(boolean catDetected) { notifications.add(catDetected); }
+            public void sensorStatusChanged() { notifications.add("sensors"); }
+        });
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        securityService.applySensorEvents(List.of(
+                new SensorEvent(sensor_door, true),
+                new SensorEvent(sensor_window, true),
+                new SensorEvent(sensor_motion, false)));
+
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        verify(securityRepository, times(1)).updateSensors(Set.of(sensor_door, sensor_window));
+        assertEquals(List.of(AlarmStatus.ALARM, "sensors"), notifications);
+    }
+    @Test
+    @DisplayName("Test #processImageAsync")
+    public void asyncImageContainingCatWhileArmedHome_putSystemIntoAlarmStatus() {
+        when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(true);
+        doReturn(ArmingStatus.ARMED_HOME).when(securityRepository).getArmingStatus();
+        securityService.configureImageProcessing(Runnable::run, 1, 1);
+        assertTrue(securityService.processImageAsync(img).join());
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+        assertTrue(securityService.isCatDetected());
+    }
+    @Test
     void ifAlarmIsActiveAndSystemDisarmed_changeStatusPutToPending() {
         when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
         doReturn(AlarmStatus.ALARM).when(securityRepository).getAlarmStatus();
-        Sensor window12 = new Sensor("Window", SensorType.WINDOW);
+        Sensor window12 = stored(new Sensor("Window", SensorType.WINDOW));
         securityService.changeSensorActivationStatus(window12,false);
         verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.PENDING_ALARM);
     }